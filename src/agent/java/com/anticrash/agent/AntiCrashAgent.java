@@ -0,0 +1,71 @@
+package com.anticrash.agent;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AntiCrashProtector Java Agent 入口（可选，使用 mvn package -Pagent 构建）
+ * 用法：在启动参数中加入 -javaagent:plugins/AntiCrashProtector-版本.jar，插件 jar 同时作为 agent jar。
+ * 巡逻扫描总是与 tick 赛跑，LivingEntity.refreshDirtyAttributes 可能在两次扫描之间崩溃；
+ * agent 在类加载时改写该方法与属性同步方法，进入前校验脏属性集合，遍历出错时就地修复并跳过本次遍历，
+ * 不再抛出 "ReportedException: Ticking player"
+ */
+public final class AntiCrashAgent {
+
+    static final Logger LOGGER = Logger.getLogger("AntiCrashProtector-Agent");
+    // 钩子类所在的包，需要放入启动类加载器，服务端类才能解析到
+    private static final String HOOK_PACKAGE = "com/anticrash/agent/hook/";
+
+    private AntiCrashAgent() {
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        try {
+            instrumentation.appendToBootstrapClassLoaderSearch(extractHookJar());
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "无法加载 agent 钩子类，属性自修复未启用", e);
+            return;
+        }
+        instrumentation.addTransformer(new AttributeGuardTransformer(), false);
+        LOGGER.info("AntiCrashProtector agent 已加载: 将在类加载时加固 refreshDirtyAttributes 与属性同步");
+    }
+
+    /**
+     * 从 agent jar 中只取出钩子类，写入临时 jar 供启动类加载器使用
+     * 不能把整个插件 jar 加入启动类路径，否则插件主类会被启动类加载器抢先加载而找不到 Bukkit API
+     */
+    private static JarFile extractHookJar() throws Exception {
+        File source = new File(AntiCrashAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        File target = File.createTempFile("anticrash-agent-hooks", ".jar");
+        target.deleteOnExit();
+        int count = 0;
+        try (JarFile jar = new JarFile(source);
+             JarOutputStream out = new JarOutputStream(Files.newOutputStream(target.toPath()))) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().startsWith(HOOK_PACKAGE)) {
+                    continue;
+                }
+                out.putNextEntry(new JarEntry(entry.getName()));
+                try (InputStream in = jar.getInputStream(entry)) {
+                    in.transferTo(out);
+                }
+                out.closeEntry();
+                count++;
+            }
+        }
+        if (count == 0) {
+            throw new IllegalStateException(source + " 中找不到钩子类，请使用 mvn package -Pagent 构建");
+        }
+        return new JarFile(target);
+    }
+}
@@ -0,0 +1,109 @@
+package com.anticrash.agent;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.logging.Level;
+
+/**
+ * 改写两个遍历脏属性集合的方法（Paper 1.20.5+ 运行时为 Mojang 映射）：
+ * LivingEntity.refreshDirtyAttributes 与 ServerEntity.sendDirtyEntityData（构建属性更新包）
+ * 改写后：方法入口调用 AttributeSetGuard 校验并就地修复集合；整个原方法体包在 catch (NullPointerException) 中，
+ * 出错时交给钩子修复集合后直接返回，跳过本次遍历
+ * 钩子类只按名称引用，由启动类加载器加载，见 {@link AntiCrashAgent}
+ */
+final class AttributeGuardTransformer implements ClassFileTransformer {
+
+    private static final String HOOKS = "com/anticrash/agent/hook/AttributeSetGuard";
+    private static final String LIVING_ENTITY = "net/minecraft/world/entity/LivingEntity";
+    private static final String SERVER_ENTITY = "net/minecraft/server/level/ServerEntity";
+    private static final String NPE = "java/lang/NullPointerException";
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        String method;
+        String hook;
+        if (LIVING_ENTITY.equals(className)) {
+            method = "refreshDirtyAttributes";
+            hook = "Refresh";
+        } else if (SERVER_ENTITY.equals(className)) {
+            method = "sendDirtyEntityData";
+            hook = "Sync";
+        } else {
+            return null;
+        }
+        try {
+            byte[] result = instrument(classfileBuffer, className, method, "before" + hook, "on" + hook + "Failure");
+            if (result == null) {
+                AntiCrashAgent.LOGGER.warning("未找到目标方法，跳过改写: " + className.replace('/', '.') + "#" + method);
+            } else {
+                AntiCrashAgent.LOGGER.info("已加固: " + className.replace('/', '.') + "#" + method);
+            }
+            return result;
+        } catch (Throwable t) {
+            // 改写失败时保持原始字节码，绝不影响服务端启动
+            AntiCrashAgent.LOGGER.log(Level.WARNING, "改写失败，保持原样: " + className.replace('/', '.') + "#" + method, t);
+            return null;
+        }
+    }
+
+    /**
+     * @return 改写后的字节码；目标方法不存在时返回 null
+     */
+    static byte[] instrument(byte[] classfile, String owner, String methodName, String beforeHook, String failureHook) {
+        ClassNode node = new ClassNode();
+        // 展开栈帧，便于在处理器位置插入完整的 F_NEW 帧
+        new ClassReader(classfile).accept(node, ClassReader.EXPAND_FRAMES);
+        MethodNode target = null;
+        for (MethodNode method : node.methods) {
+            if (method.name.equals(methodName) && method.desc.equals("()V") && (method.access & Opcodes.ACC_STATIC) == 0
+                    && method.instructions.size() > 0) {
+                target = method;
+                break;
+            }
+        }
+        if (target == null) {
+            return null;
+        }
+
+        LabelNode start = new LabelNode();
+        LabelNode end = new LabelNode();
+        LabelNode handler = new LabelNode();
+
+        InsnList head = new InsnList();
+        head.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        head.add(new MethodInsnNode(Opcodes.INVOKESTATIC, HOOKS, beforeHook, "(Ljava/lang/Object;)V", false));
+        head.add(start);
+        target.instructions.insert(head);
+
+        // 原方法体以 return/throw 结束，不会落入处理器
+        InsnList tail = new InsnList();
+        tail.add(end);
+        tail.add(handler);
+        // 处理器只依赖局部变量 0 (this)，其余局部变量视为未定义
+        tail.add(new FrameNode(Opcodes.F_NEW, 1, new Object[]{owner}, 1, new Object[]{NPE}));
+        tail.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        tail.add(new MethodInsnNode(Opcodes.INVOKESTATIC, HOOKS, failureHook, "(Ljava/lang/Throwable;Ljava/lang/Object;)V", false));
+        tail.add(new InsnNode(Opcodes.RETURN));
+        target.instructions.add(tail);
+        // 追加在异常表末尾，原方法内部已有的 catch 优先匹配
+        target.tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, NPE));
+
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+}
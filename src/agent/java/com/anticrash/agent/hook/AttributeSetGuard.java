@@ -0,0 +1,324 @@
+package com.anticrash.agent.hook;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 被改写后的服务端方法调用的钩子（由启动类加载器加载，只能使用 JDK 类）
+ * 入口检查：脏属性集合非空时校验 fastutil ObjectOpenHashSet 内部不变量，不一致时就地重建；
+ * 失败处理：原方法遍历集合抛出 NPE 时重建集合并跳过本次遍历。
+ * 所有字段与方法在第一次调用时按运行时类解析并缓存为 MethodHandle；解析失败后钩子退化为空操作
+ * 插件通过反射读取 {@link #isActive()} 等统计数据，在 /anticrash status 中展示
+ */
+public final class AttributeSetGuard {
+
+    private static final Logger LOGGER = Logger.getLogger("AntiCrashProtector-Agent");
+    // 集合下标与钩子对应：0 = refreshDirtyAttributes 遍历的集合，1 = 属性更新包使用的集合
+    private static final String[] SET_FIELDS = {"attributesToUpdate", "attributesToSync"};
+    private static final int UPDATE = 0;
+    private static final int SYNC = 1;
+    private static final int MAX_SCAN_SLOTS = 1024;
+    // 失败日志：首次与之后每 100 次输出一次
+    private static final long LOG_EVERY = 100L;
+
+    private static final AtomicLong REPAIRS = new AtomicLong();
+    private static final AtomicLong SUPPRESSED = new AtomicLong();
+    private static volatile Accessors accessors;
+    private static volatile boolean resolveFailed;
+
+    private AttributeSetGuard() {
+    }
+
+    public static void beforeRefresh(Object livingEntity) {
+        guard(livingEntity, "refreshDirtyAttributes");
+    }
+
+    public static void onRefreshFailure(Throwable error, Object livingEntity) {
+        recover(error, livingEntity, UPDATE, "refreshDirtyAttributes");
+    }
+
+    public static void beforeSync(Object serverEntity) {
+        Accessors a = accessors;
+        if (a != null) {
+            guard(a.entityOf(serverEntity), "sendDirtyEntityData");
+        }
+    }
+
+    public static void onSyncFailure(Throwable error, Object serverEntity) {
+        Accessors a = accessors;
+        recover(error, a != null ? a.entityOf(serverEntity) : null, SYNC, "sendDirtyEntityData");
+    }
+
+    /**
+     * 钩子已解析成功并在工作
+     */
+    public static boolean isActive() {
+        return accessors != null;
+    }
+
+    /**
+     * 重建过的集合数量（入口检查与失败处理合计）
+     */
+    public static long getRepairCount() {
+        return REPAIRS.get();
+    }
+
+    /**
+     * 被拦截的遍历异常数量（每一次都对应一次原本会导致 tick 崩溃的异常）
+     */
+    public static long getSuppressedCount() {
+        return SUPPRESSED.get();
+    }
+
+    private static void guard(Object livingEntity, String site) {
+        if (livingEntity == null) {
+            return;
+        }
+        Accessors a = resolve(livingEntity);
+        if (a == null || !a.livingClass.isInstance(livingEntity)) {
+            return;
+        }
+        try {
+            Object map = (Object) a.getAttributes.invokeExact(livingEntity);
+            if (map == null) {
+                return;
+            }
+            for (int i = 0; i < a.setGetters.length; i++) {
+                Object set = (Object) a.setGetters[i].invokeExact(map);
+                // 绝大多数实体的脏集合在绝大多数 tick 都为空，此时迭代器不会读取任何槽位
+                if (set == null || !a.setClass.isInstance(set) || (int) a.size.invokeExact(set) == 0) {
+                    continue;
+                }
+                if (!a.isConsistent(set)) {
+                    a.rebuild(map, i, set, true);
+                    LOGGER.warning("入口检查发现结构不一致的属性集合，已就地重建: 位置=" + site + " 集合=" + SET_FIELDS[i]);
+                }
+            }
+        } catch (Throwable t) {
+            // 钩子自身绝不能让 tick 失败
+        }
+    }
+
+    private static void recover(Throwable error, Object livingEntity, int index, String site) {
+        long count = SUPPRESSED.incrementAndGet();
+        if (count == 1 || count % LOG_EVERY == 0) {
+            LOGGER.log(Level.WARNING, "已拦截脏属性集合遍历异常并跳过本次遍历 (第 " + count + " 次): 位置=" + site, error);
+        }
+        Accessors a = livingEntity != null ? resolve(livingEntity) : null;
+        if (a == null || !a.livingClass.isInstance(livingEntity)) {
+            return;
+        }
+        try {
+            Object map = (Object) a.getAttributes.invokeExact(livingEntity);
+            Object set = map != null ? (Object) a.setGetters[index].invokeExact(map) : null;
+            if (set == null) {
+                return;
+            }
+            // 结构损坏时保留仍可读取的元素；结构完好说明异常来自元素本身，丢弃本次待处理的属性避免每 tick 重复失败
+            boolean consistent = !a.setClass.isInstance(set) || a.isConsistent(set);
+            a.rebuild(map, index, set, !consistent);
+        } catch (Throwable t) {
+            // 忽略
+        }
+    }
+
+    private static Accessors resolve(Object livingEntity) {
+        Accessors current = accessors;
+        if (current != null || resolveFailed) {
+            return current;
+        }
+        synchronized (AttributeSetGuard.class) {
+            if (accessors == null && !resolveFailed) {
+                try {
+                    accessors = new Accessors(livingEntity.getClass());
+                    LOGGER.info("属性集合钩子已就绪: " + String.join(", ", SET_FIELDS));
+                } catch (Throwable t) {
+                    resolveFailed = true;
+                    LOGGER.log(Level.WARNING, "属性集合钩子解析失败，agent 退化为仅拦截异常", t);
+                }
+            }
+            return accessors;
+        }
+    }
+
+    /**
+     * 按运行时类解析出的访问句柄
+     */
+    private static final class Accessors {
+        private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+        private final Class<?> livingClass;
+        private final MethodHandle getAttributes;
+        private final MethodHandle[] setGetters = new MethodHandle[SET_FIELDS.length];
+        private final MethodHandle[] setSetters = new MethodHandle[SET_FIELDS.length];
+        private final Class<?> setClass;
+        private final MethodHandle newSet;
+        private final MethodHandle key;
+        private final MethodHandle size;
+        private final MethodHandle containsNull;
+        private final MethodHandle n;
+        private final MethodHandle mask;
+        private final MethodHandle maxFill;
+        private volatile MethodHandle entityField; // ServerEntity.entity，首次同步时解析
+
+        private Accessors(Class<?> entityClass) throws ReflectiveOperationException {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Method method = findMethod(entityClass, "getAttributes");
+            if (method == null) {
+                throw new NoSuchMethodException(entityClass.getName() + ".getAttributes()");
+            }
+            method.setAccessible(true);
+            this.livingClass = method.getDeclaringClass();
+            this.getAttributes = lookup.unreflect(method).asType(GETTER);
+
+            Class<?> mapClass = method.getReturnType();
+            for (int i = 0; i < SET_FIELDS.length; i++) {
+                Field field = findField(mapClass, SET_FIELDS[i]);
+                if (field == null || !Set.class.isAssignableFrom(field.getType())) {
+                    throw new NoSuchFieldException(mapClass.getName() + "." + SET_FIELDS[i]);
+                }
+                field.setAccessible(true);
+                setGetters[i] = lookup.unreflectGetter(field).asType(GETTER);
+                MethodHandle setter;
+                try {
+                    setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+                } catch (IllegalAccessException e) {
+                    setter = null; // 退化为 clear() + addAll()
+                }
+                setSetters[i] = setter;
+            }
+
+            this.setClass = Class.forName("it.unimi.dsi.fastutil.objects.ObjectOpenHashSet", false, mapClass.getClassLoader());
+            this.newSet = lookup.findConstructor(setClass, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+            this.key = internal(lookup, "key", Object[].class);
+            this.size = internal(lookup, "size", int.class);
+            this.containsNull = internal(lookup, "containsNull", boolean.class);
+            this.n = internal(lookup, "n", int.class);
+            this.mask = internal(lookup, "mask", int.class);
+            this.maxFill = internal(lookup, "maxFill", int.class);
+        }
+
+        private MethodHandle internal(MethodHandles.Lookup lookup, String name, Class<?> type) throws ReflectiveOperationException {
+            Field field = findField(setClass, name);
+            if (field == null || field.getType() != type) {
+                throw new NoSuchFieldException(setClass.getName() + "." + name);
+            }
+            field.setAccessible(true);
+            return lookup.unreflectGetter(field).asType(MethodType.methodType(type, Object.class));
+        }
+
+        private Object entityOf(Object serverEntity) {
+            if (serverEntity == null) {
+                return null;
+            }
+            try {
+                MethodHandle getter = entityField;
+                if (getter == null) {
+                    Field field = findField(serverEntity.getClass(), "entity");
+                    if (field == null) {
+                        return null;
+                    }
+                    field.setAccessible(true);
+                    getter = MethodHandles.lookup().unreflectGetter(field).asType(GETTER);
+                    entityField = getter;
+                }
+                return (Object) getter.invokeExact(serverEntity);
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        /**
+         * 与插件内 FastutilSetProbe 相同的不变量：迭代器越界读取 wrapped 的直接原因是 size 大于实际占用槽位数
+         */
+        private boolean isConsistent(Object set) throws Throwable {
+            Object[] keys = (Object[]) key.invokeExact(set);
+            int setSize = (int) size.invokeExact(set);
+            boolean hasNull = (boolean) containsNull.invokeExact(set);
+            int capacity = (int) n.invokeExact(set);
+            int setMask = (int) mask.invokeExact(set);
+            int setMaxFill = (int) maxFill.invokeExact(set);
+
+            if (keys == null || capacity <= 0 || (capacity & (capacity - 1)) != 0 || setMask != capacity - 1
+                    || keys.length != capacity + 1 || keys[capacity] != null) {
+                return false;
+            }
+            int expected = hasNull ? setSize - 1 : setSize;
+            if (expected < 0 || setSize > setMaxFill) {
+                return false;
+            }
+            if (capacity > MAX_SCAN_SLOTS) {
+                return true;
+            }
+            int occupied = 0;
+            for (int i = 0; i < capacity; i++) {
+                if (keys[i] != null && ++occupied > expected) {
+                    return false;
+                }
+            }
+            return occupied == expected;
+        }
+
+        /**
+         * 用新的集合替换损坏的集合
+         *
+         * @param keepElements 是否保留 key 数组中仍可读取的元素
+         */
+        @SuppressWarnings("unchecked")
+        private void rebuild(Object map, int index, Object set, boolean keepElements) throws Throwable {
+            List<Object> recovered = new ArrayList<>();
+            if (keepElements && setClass.isInstance(set)) {
+                Object[] keys = (Object[]) key.invokeExact(set);
+                if (keys != null) {
+                    for (Object element : keys) {
+                        if (element != null) {
+                            recovered.add(element);
+                        }
+                    }
+                }
+            }
+            MethodHandle setter = setSetters[index];
+            if (setter != null) {
+                Set<Object> fresh = (Set<Object>) (Object) newSet.invokeExact();
+                fresh.addAll(recovered);
+                setter.invokeExact(map, (Object) fresh);
+            } else {
+                Set<Object> existing = (Set<Object>) set;
+                existing.clear();
+                existing.addAll(recovered);
+            }
+            REPAIRS.incrementAndGet();
+        }
+    }
+
+    private static Field findField(Class<?> clazz, String name) {
+        while (clazz != null) {
+            try {
+                return clazz.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        return null;
+    }
+
+    private static Method findMethod(Class<?> clazz, String name) {
+        while (clazz != null) {
+            try {
+                return clazz.getDeclaredMethod(name);
+            } catch (NoSuchMethodException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,352 @@
+package com.anticrash.agent;
+
+import com.anticrash.agent.hook.AttributeSetGuard;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在合成的 LivingEntity / ServerEntity 上验证改写结果：
+ * 改写后的类能通过 JVM 校验，遍历损坏集合抛出的 NPE 被拦截，集合被重建
+ * 合成方法体与服务端一致：取出脏属性集合遍历后清空；方法体内额外保留多个局部变量，覆盖处理器处的 F_NEW 栈帧
+ */
+class AttributeGuardTransformerTest {
+
+    private static final String LIVING_ENTITY = "net/minecraft/world/entity/LivingEntity";
+    private static final String SERVER_ENTITY = "net/minecraft/server/level/ServerEntity";
+    private static final String MAP = Type.getInternalName(AttributeMap.class);
+    private static final String BODY = Type.getInternalName(Body.class);
+    private static final String SET = "java/util/Set";
+
+    // 钩子按第一次见到的实体类解析并缓存，所有用例共用同一组改写后的类
+    private static Class<?> livingEntity;
+    private static Class<?> serverEntity;
+
+    // 为 true 时合成方法体在入口检查之后、遍历之前破坏集合
+    private static boolean corruptInBody;
+    private static final List<Object> visited = new ArrayList<>();
+
+    /**
+     * 替代服务端的 AttributeMap，字段名与 Mojang 映射一致
+     */
+    public static final class AttributeMap {
+        public Set<Object> attributesToUpdate = new ObjectOpenHashSet<>();
+        public Set<Object> attributesToSync = new ObjectOpenHashSet<>();
+    }
+
+    @AfterEach
+    void resetBody() {
+        corruptInBody = false;
+        visited.clear();
+    }
+
+    @Test
+    void unguardedMethodCrashesOnCorruptedSet() throws Exception {
+        Class<?> original = define(null, LIVING_ENTITY, livingEntityClass());
+        AttributeMap map = new AttributeMap();
+        Object entity = original.getConstructor(AttributeMap.class).newInstance(map);
+        corruptInBody = true;
+
+        InvocationTargetException thrown = assertThrows(InvocationTargetException.class,
+                () -> original.getMethod("refreshDirtyAttributes").invoke(entity));
+        assertTrue(thrown.getCause() instanceof NullPointerException, "未改写时应重现 wrapped is null");
+    }
+
+    @Test
+    void failureInsideBodyIsSuppressedAndSetRepaired() throws Exception {
+        AttributeMap map = new AttributeMap();
+        Object entity = livingEntity().getConstructor(AttributeMap.class).newInstance(map);
+        Set<Object> corrupted = map.attributesToUpdate;
+        corruptInBody = true;
+        long suppressed = AttributeSetGuard.getSuppressedCount();
+        long repairs = AttributeSetGuard.getRepairCount();
+
+        livingEntity().getMethod("refreshDirtyAttributes").invoke(entity);
+
+        assertEquals(suppressed + 1, AttributeSetGuard.getSuppressedCount());
+        assertEquals(repairs + 1, AttributeSetGuard.getRepairCount());
+        assertTrue(AttributeSetGuard.isActive());
+        assertNotSame(corrupted, map.attributesToUpdate, "损坏的集合应被替换");
+        assertReadable(map.attributesToUpdate, 1);
+    }
+
+    @Test
+    void corruptedSetIsRebuiltBeforeIteration() throws Exception {
+        AttributeMap map = new AttributeMap();
+        Object entity = livingEntity().getConstructor(AttributeMap.class).newInstance(map);
+        map.attributesToUpdate.add("a");
+        map.attributesToUpdate.add("b");
+        corrupt(map.attributesToUpdate);
+        long suppressed = AttributeSetGuard.getSuppressedCount();
+        long repairs = AttributeSetGuard.getRepairCount();
+
+        livingEntity().getMethod("refreshDirtyAttributes").invoke(entity);
+
+        // 入口检查已修复集合，原方法体正常遍历并清空，不经过异常处理器
+        assertEquals(suppressed, AttributeSetGuard.getSuppressedCount());
+        assertEquals(repairs + 1, AttributeSetGuard.getRepairCount());
+        assertEquals(2, visited.size());
+        assertTrue(map.attributesToUpdate.isEmpty());
+    }
+
+    @Test
+    void healthySetIsLeftAlone() throws Exception {
+        AttributeMap map = new AttributeMap();
+        Object entity = livingEntity().getConstructor(AttributeMap.class).newInstance(map);
+        map.attributesToUpdate.add("a");
+        Set<Object> original = map.attributesToUpdate;
+        long repairs = AttributeSetGuard.getRepairCount();
+
+        livingEntity().getMethod("refreshDirtyAttributes").invoke(entity);
+
+        assertEquals(repairs, AttributeSetGuard.getRepairCount());
+        assertSame(original, map.attributesToUpdate);
+        assertEquals(List.of("a"), visited);
+    }
+
+    @Test
+    void syncFailureRepairsTheOwningEntitysSet() throws Exception {
+        AttributeMap map = new AttributeMap();
+        Object entity = livingEntity().getConstructor(AttributeMap.class).newInstance(map);
+        Object tracker = serverEntity().getConstructor(livingEntity()).newInstance(entity);
+        // 服务端先 tick 实体再同步，钩子此时已按实体类解析完成
+        livingEntity().getMethod("refreshDirtyAttributes").invoke(entity);
+        Set<Object> corrupted = map.attributesToSync;
+        corruptInBody = true;
+        long suppressed = AttributeSetGuard.getSuppressedCount();
+
+        serverEntity().getMethod("sendDirtyEntityData").invoke(tracker);
+
+        assertEquals(suppressed + 1, AttributeSetGuard.getSuppressedCount());
+        assertNotSame(corrupted, map.attributesToSync);
+        assertReadable(map.attributesToSync, 1);
+    }
+
+    @Test
+    void missingMethodIsNotInstrumented() {
+        byte[] classfile = livingEntityClass();
+        assertNull(AttributeGuardTransformer.instrument(classfile, LIVING_ENTITY, "tick", "beforeRefresh", "onRefreshFailure"));
+        assertNull(new AttributeGuardTransformer().transform(null, "net/minecraft/world/entity/Mob", null, null, classfile));
+    }
+
+    /**
+     * 由合成方法体调用（合成类位于其他类加载器，只能访问 public 类）
+     */
+    public static final class Body {
+        /**
+         * 按需破坏集合，然后交给原方法体遍历
+         */
+        public static void prepare(Set<Object> set) throws ReflectiveOperationException {
+            if (corruptInBody) {
+                set.add("x");
+                corrupt(set);
+            }
+        }
+
+        public static void visit(Object element) {
+            visited.add(element);
+        }
+    }
+
+    /**
+     * 制造与线上一致的损坏：size 大于实际占用槽位，迭代器越界后读取为 null 的 wrapped
+     */
+    private static void corrupt(Set<Object> set) throws ReflectiveOperationException {
+        Field size = ObjectOpenHashSet.class.getDeclaredField("size");
+        size.setAccessible(true);
+        size.setInt(set, size.getInt(set) + 1);
+    }
+
+    private static void assertReadable(Set<Object> set, int expectedSize) {
+        assertTrue(set instanceof ObjectOpenHashSet);
+        int count = 0;
+        for (Object element : set) {
+            assertNotNull(element);
+            count++;
+        }
+        assertEquals(expectedSize, count);
+        assertEquals(expectedSize, set.size());
+    }
+
+    private static synchronized Class<?> livingEntity() throws ReflectiveOperationException {
+        if (livingEntity == null) {
+            ClassLoader loader = new SyntheticLoader();
+            livingEntity = define(loader, LIVING_ENTITY, instrument(livingEntityClass(), LIVING_ENTITY, "refreshDirtyAttributes", "Refresh"));
+            serverEntity = define(loader, SERVER_ENTITY, instrument(serverEntityClass(), SERVER_ENTITY, "sendDirtyEntityData", "Sync"));
+        }
+        return livingEntity;
+    }
+
+    private static Class<?> serverEntity() throws ReflectiveOperationException {
+        livingEntity();
+        return serverEntity;
+    }
+
+    private static byte[] instrument(byte[] classfile, String owner, String method, String hook) {
+        byte[] result = AttributeGuardTransformer.instrument(classfile, owner, method, "before" + hook, "on" + hook + "Failure");
+        assertNotNull(result);
+        return result;
+    }
+
+    /**
+     * 定义并初始化类，触发 JVM 字节码校验
+     */
+    private static Class<?> define(ClassLoader loader, String name, byte[] classfile) throws ReflectiveOperationException {
+        SyntheticLoader target = loader instanceof SyntheticLoader ? (SyntheticLoader) loader : new SyntheticLoader();
+        Class<?> type = target.define(name.replace('/', '.'), classfile);
+        return Class.forName(type.getName(), true, target);
+    }
+
+    private static final class SyntheticLoader extends ClassLoader {
+        private SyntheticLoader() {
+            super(AttributeGuardTransformerTest.class.getClassLoader());
+        }
+
+        private Class<?> define(String name, byte[] classfile) {
+            return defineClass(name, classfile, 0, classfile.length);
+        }
+    }
+
+    /**
+     * public class LivingEntity {
+     *     private final AttributeMap attributes;
+     *     public AttributeMap getAttributes() { return attributes; }
+     *     public void refreshDirtyAttributes() {
+     *         Set set = getAttributes().attributesToUpdate;
+     *         prepare(set);
+     *         Iterator it = set.iterator();
+     *         while (it.hasNext()) { visit(it.next()); }
+     *         set.clear();
+     *     }
+     * }
+     */
+    private static byte[] livingEntityClass() {
+        ClassWriter writer = newWriter();
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, LIVING_ENTITY, null, "java/lang/Object", null);
+        writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "attributes", "L" + MAP + ";", null, null).visitEnd();
+
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(L" + MAP + ";)V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitVarInsn(Opcodes.ALOAD, 1);
+        init.visitFieldInsn(Opcodes.PUTFIELD, LIVING_ENTITY, "attributes", "L" + MAP + ";");
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor getter = writer.visitMethod(Opcodes.ACC_PUBLIC, "getAttributes", "()L" + MAP + ";", null, null);
+        getter.visitCode();
+        getter.visitVarInsn(Opcodes.ALOAD, 0);
+        getter.visitFieldInsn(Opcodes.GETFIELD, LIVING_ENTITY, "attributes", "L" + MAP + ";");
+        getter.visitInsn(Opcodes.ARETURN);
+        getter.visitMaxs(0, 0);
+        getter.visitEnd();
+
+        MethodVisitor refresh = writer.visitMethod(Opcodes.ACC_PUBLIC, "refreshDirtyAttributes", "()V", null, null);
+        refresh.visitCode();
+        refresh.visitVarInsn(Opcodes.ALOAD, 0);
+        refresh.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LIVING_ENTITY, "getAttributes", "()L" + MAP + ";", false);
+        refresh.visitFieldInsn(Opcodes.GETFIELD, MAP, "attributesToUpdate", "L" + SET + ";");
+        iterateAndClear(refresh, 1);
+        refresh.visitMaxs(0, 0);
+        refresh.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * public class ServerEntity {
+     *     private final LivingEntity entity;
+     *     public void sendDirtyEntityData() { 与 refreshDirtyAttributes 相同，遍历 attributesToSync }
+     * }
+     */
+    private static byte[] serverEntityClass() {
+        ClassWriter writer = newWriter();
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, SERVER_ENTITY, null, "java/lang/Object", null);
+        writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "entity", "L" + LIVING_ENTITY + ";", null, null).visitEnd();
+
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(L" + LIVING_ENTITY + ";)V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitVarInsn(Opcodes.ALOAD, 1);
+        init.visitFieldInsn(Opcodes.PUTFIELD, SERVER_ENTITY, "entity", "L" + LIVING_ENTITY + ";");
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor sync = writer.visitMethod(Opcodes.ACC_PUBLIC, "sendDirtyEntityData", "()V", null, null);
+        sync.visitCode();
+        // 额外的 int 局部变量，处理器处的栈帧必须把它视为未定义
+        sync.visitInsn(Opcodes.ICONST_0);
+        sync.visitVarInsn(Opcodes.ISTORE, 1);
+        sync.visitVarInsn(Opcodes.ALOAD, 0);
+        sync.visitFieldInsn(Opcodes.GETFIELD, SERVER_ENTITY, "entity", "L" + LIVING_ENTITY + ";");
+        sync.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LIVING_ENTITY, "getAttributes", "()L" + MAP + ";", false);
+        sync.visitFieldInsn(Opcodes.GETFIELD, MAP, "attributesToSync", "L" + SET + ";");
+        iterateAndClear(sync, 2);
+        sync.visitMaxs(0, 0);
+        sync.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * 栈顶为集合：存入 local，依次 prepare / 遍历 / clear，然后返回
+     */
+    private static void iterateAndClear(MethodVisitor method, int local) {
+        method.visitVarInsn(Opcodes.ASTORE, local);
+        method.visitVarInsn(Opcodes.ALOAD, local);
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, BODY, "prepare", "(L" + SET + ";)V", false);
+        method.visitVarInsn(Opcodes.ALOAD, local);
+        method.visitMethodInsn(Opcodes.INVOKEINTERFACE, SET, "iterator", "()Ljava/util/Iterator;", true);
+        method.visitVarInsn(Opcodes.ASTORE, local + 1);
+        Label loop = new Label();
+        Label done = new Label();
+        method.visitLabel(loop);
+        method.visitVarInsn(Opcodes.ALOAD, local + 1);
+        method.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z", true);
+        method.visitJumpInsn(Opcodes.IFEQ, done);
+        method.visitVarInsn(Opcodes.ALOAD, local + 1);
+        method.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;", true);
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, BODY, "visit", "(Ljava/lang/Object;)V", false);
+        method.visitJumpInsn(Opcodes.GOTO, loop);
+        method.visitLabel(done);
+        method.visitVarInsn(Opcodes.ALOAD, local);
+        method.visitMethodInsn(Opcodes.INVOKEINTERFACE, SET, "clear", "()V", true);
+        method.visitInsn(Opcodes.RETURN);
+    }
+
+    private static ClassWriter newWriter() {
+        return new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object"; // 合成类的局部变量只有接口与 Object 类型
+            }
+        };
+    }
+}
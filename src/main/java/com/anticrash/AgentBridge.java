@@ -0,0 +1,67 @@
+package com.anticrash;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * 可选 Java Agent 的状态读取
+ * agent 的钩子类位于启动类加载器，插件普通构建中不包含该类，因此只通过反射按名称访问
+ */
+public final class AgentBridge {
+
+    private static final String HOOK_CLASS = "com.anticrash.agent.hook.AttributeSetGuard";
+
+    private final MethodHandle isActive;
+    private final MethodHandle repairCount;
+    private final MethodHandle suppressedCount;
+
+    private AgentBridge(MethodHandle isActive, MethodHandle repairCount, MethodHandle suppressedCount) {
+        this.isActive = isActive;
+        this.repairCount = repairCount;
+        this.suppressedCount = suppressedCount;
+    }
+
+    /**
+     * 查找已加载的 agent；未通过 -javaagent 启动时返回 null
+     */
+    public static AgentBridge find() {
+        try {
+            Class<?> hooks = Class.forName(HOOK_CLASS, false, null);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            return new AgentBridge(
+                    lookup.findStatic(hooks, "isActive", MethodType.methodType(boolean.class)),
+                    lookup.findStatic(hooks, "getRepairCount", MethodType.methodType(long.class)),
+                    lookup.findStatic(hooks, "getSuppressedCount", MethodType.methodType(long.class)));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * 钩子已在服务端类上生效（首次 tick 后才会解析）
+     */
+    public boolean isActive() {
+        try {
+            return (boolean) isActive.invokeExact();
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    public long getRepairCount() {
+        try {
+            return (long) repairCount.invokeExact();
+        } catch (Throwable t) {
+            return 0L;
+        }
+    }
+
+    public long getSuppressedCount() {
+        try {
+            return (long) suppressedCount.invokeExact();
+        } catch (Throwable t) {
+            return 0L;
+        }
+    }
+}
@@ -1,23 +1,40 @@
 package com.anticrash;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * 插件指令处理器
- * 处理 /anticrash 及其子指令，如 reload, status, check, safety, repair
+ * 处理 /anticrash 及其子指令，如 reload, status, check, checks, mutations, packets, incidents, metrics, safety, repair
  */
 public class AntiCrashCommand implements CommandExecutor, TabCompleter {
 
+    // 异常事件查询最多显示的条数
+    private static final int INCIDENT_LIMIT = 15;
+    // 相对时间: 30m、12h、7d
+    private static final Pattern RELATIVE_TIME = Pattern.compile("(\\d+)([smhd])");
+    private static final DateTimeFormatter INCIDENT_TIME = DateTimeFormatter.ofPattern("MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
     private final AntiCrashPlugin plugin;
 
     public AntiCrashCommand(AntiCrashPlugin plugin) {
@@ -59,6 +76,21 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage(plugin.getPrefixedMessage("monitor-not-enabled"));
                 }
                 break;
+            case "checks":
+                sendCheckStats(sender, args); // 检查项耗时与命中率
+                break;
+            case "mutations":
+                sendMutationReport(sender, args); // 异步修改检测结果
+                break;
+            case "packets":
+                sendPacketReport(sender, args); // 属性包发送频率
+                break;
+            case "incidents":
+                sendIncidents(sender, args); // 查询异常事件记录
+                break;
+            case "metrics":
+                sendMetrics(sender, args); // 热点路径耗时
+                break;
             case "safety":
                 toggleSafety(sender); // 快速切换指令保护开关
                 break;
@@ -86,6 +118,295 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void sendCheckStats(CommandSender sender, String[] args) {
+        CheckRegistry registry = plugin.getCheckRegistry();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            registry.resetStats();
+            sender.sendMessage(ChatColor.GREEN + "检查项统计数据已重置");
+            return;
+        }
+        sender.sendMessage(ChatColor.GREEN + "====== 检查项统计 (按执行顺序) ======");
+        for (CheckRegistry.Registration registration : registry.getRegistrations()) {
+            sender.sendMessage(ChatColor.GRAY + registration.getId() + ChatColor.DARK_GRAY + " [" + registration.getOwner().getName() + "]" +
+                    ChatColor.DARK_GRAY + " 耗时: " + ChatColor.AQUA + registration.getAverageCostNanos() + "ns/次" +
+                    ChatColor.DARK_GRAY + " | 执行: " + ChatColor.AQUA + registration.getInvocations() +
+                    ChatColor.DARK_GRAY + " | 命中率: " + ChatColor.AQUA + String.format("%.2f%%", registration.getHitRate() * 100.0));
+        }
+        sender.sendMessage(ChatColor.GREEN + "==================================");
+    }
+
+    private void sendMutationReport(CommandSender sender, String[] args) {
+        ModifierMutationDetector detector = plugin.getMutationDetector();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            detector.reset();
+            sender.sendMessage(ChatColor.GREEN + "异步修改检测记录已清空");
+            return;
+        }
+        sender.sendMessage(ChatColor.GREEN + "====== 异步修改检测 ======");
+        sender.sendMessage(ChatColor.GRAY + "状态: " + (detector.isEnabled() ? ChatColor.GREEN + "运行中" : ChatColor.RED + "未开启 (diagnostics.mutation-detector.enabled)") +
+                ChatColor.DARK_GRAY + " | 违规写入: " + ChatColor.AQUA + detector.getViolationCount());
+        for (ModifierMutationDetector.Culprit culprit : detector.getCulprits()) {
+            sender.sendMessage(ChatColor.YELLOW + culprit.getOwner() + ChatColor.DARK_GRAY + " 采样: " + ChatColor.AQUA + culprit.getSamples() +
+                    ChatColor.DARK_GRAY + " | 线程: " + ChatColor.WHITE + culprit.getLastThread() +
+                    ChatColor.DARK_GRAY + " | 属性: " + ChatColor.WHITE + culprit.getLastAttribute() + " (" + culprit.getLastOperation() + ")");
+        }
+        sender.sendMessage(ChatColor.GREEN + "========================");
+    }
+
+    private void sendPacketReport(CommandSender sender, String[] args) {
+        AttributePacketInterceptor interceptor = plugin.getAttributePacketInterceptor();
+        if (interceptor == null || !interceptor.isRegistered()) {
+            sender.sendMessage(ChatColor.RED + "属性包拦截器未运行 (需要 ProtocolLib 且 packet-interception.enabled 为 true)");
+            return;
+        }
+        AttributePacketStats stats = interceptor.getStats();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            stats.reset();
+            interceptor.getValidators().resetStats();
+            sender.sendMessage(ChatColor.GREEN + "数据包统计数据已重置");
+            return;
+        }
+        long seconds = Math.max(1L, (System.currentTimeMillis() - stats.getSince()) / 1000L);
+        sender.sendMessage(ChatColor.GREEN + "====== 属性包统计 (最近 " + seconds + " 秒) ======");
+        sender.sendMessage(ChatColor.GRAY + "总数: " + ChatColor.AQUA + stats.getPackets() +
+                ChatColor.DARK_GRAY + " | 合并条目: " + ChatColor.AQUA + stats.getCoalescedEntries() +
+                ChatColor.DARK_GRAY + " | 整包合并: " + ChatColor.AQUA + stats.getCoalescedPackets() +
+                ChatColor.DARK_GRAY + " | 清洗: " + ChatColor.AQUA + stats.getSanitizedPackets());
+        sender.sendMessage(ChatColor.YELLOW + "接收最多的玩家:");
+        for (AttributePacketStats.Snapshot snapshot : stats.getTopReceivers(5)) {
+            sendPacketCounter(sender, snapshot);
+        }
+        sender.sendMessage(ChatColor.YELLOW + "属性变化最频繁的实体:");
+        for (AttributePacketStats.Snapshot snapshot : stats.getTopEntities(5)) {
+            sendPacketCounter(sender, snapshot);
+        }
+        sender.sendMessage(ChatColor.YELLOW + "数据包检查器:");
+        for (PacketValidatorRegistry.Registration registration : interceptor.getValidators().getRegistrations()) {
+            if (!registration.isEnabled()) {
+                sender.sendMessage(ChatColor.GRAY + "  " + registration.getId() + ChatColor.RED + " 已关闭");
+                continue;
+            }
+            sender.sendMessage(ChatColor.WHITE + "  " + registration.getId() +
+                    ChatColor.DARK_GRAY + " 耗时: " + ChatColor.AQUA + registration.getAverageCostNanos() + "ns/包" +
+                    ChatColor.DARK_GRAY + " | 检查: " + ChatColor.AQUA + registration.getInvocations() +
+                    ChatColor.DARK_GRAY + " | 改写: " + ChatColor.AQUA + registration.getRewritten() +
+                    ChatColor.DARK_GRAY + " | 取消: " + ChatColor.AQUA + registration.getCancelled() +
+                    ChatColor.DARK_GRAY + " | 预算耗尽: " + ChatColor.AQUA + registration.getExhausted() + " (预算 " + registration.getBudget() + ")");
+        }
+        sender.sendMessage(ChatColor.GRAY + "提示: 配合 /anticrash mutations 可定位修改属性的插件");
+        sender.sendMessage(ChatColor.GREEN + "==================================");
+    }
+
+    private void sendPacketCounter(CommandSender sender, AttributePacketStats.Snapshot snapshot) {
+        sender.sendMessage(ChatColor.WHITE + "  " + snapshot.getLabel() +
+                ChatColor.DARK_GRAY + " 当前: " + ChatColor.AQUA + snapshot.getRate() + "/秒" +
+                ChatColor.DARK_GRAY + " | 峰值: " + ChatColor.AQUA + snapshot.getPeakRate() + "/秒" +
+                ChatColor.DARK_GRAY + " | 总计: " + ChatColor.AQUA + snapshot.getTotal());
+    }
+
+    private void sendMetrics(CommandSender sender, String[] args) {
+        PluginMetrics metrics = plugin.getMetrics();
+        LogManager logManager = plugin.getLogManager();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            logManager.getQueueLatency().reset();
+            sender.sendMessage(ChatColor.GREEN + "耗时统计数据已重置");
+            return;
+        }
+        long seconds = Math.max(1L, (System.currentTimeMillis() - metrics.getSince()) / 1000L);
+        sender.sendMessage(ChatColor.GREEN + "====== 耗时统计 (最近 " + seconds + " 秒) ======");
+        if (!metrics.isEnabled()) {
+            sender.sendMessage(ChatColor.RED + "统计未开启 (diagnostics.metrics.enabled)");
+        }
+        MetricsEndpoint endpoint = plugin.getMetricsEndpoint();
+        sender.sendMessage(ChatColor.GRAY + "Prometheus 接口: " + (endpoint.isRunning()
+                ? ChatColor.GREEN + "http://127.0.0.1:" + endpoint.getPort() + "/metrics"
+                : ChatColor.YELLOW + "未开启 (diagnostics.metrics.http.enabled)"));
+        sendLatency(sender, "每 tick 总耗时", metrics.getTickSnapshot());
+        for (PluginMetrics.Timer timer : PluginMetrics.Timer.values()) {
+            sendLatency(sender, timer.getLabel(), metrics.getSnapshot(timer));
+        }
+        sendLatency(sender, "日志队列等待", logManager.getQueueLatency().snapshot());
+        sender.sendMessage(ChatColor.YELLOW + "按异常类型 (发现 / 修复):");
+        for (IssueType type : IssueType.values()) {
+            sender.sendMessage(ChatColor.WHITE + "  " + getIssueLabel(type) +
+                    ChatColor.DARK_GRAY + " 发现: " + ChatColor.AQUA + metrics.getDetections(type) +
+                    ChatColor.DARK_GRAY + " | 修复: " + ChatColor.AQUA + metrics.getRepairs(type));
+        }
+        sender.sendMessage(ChatColor.GRAY + "提示: 各检查项的单独耗时见 /anticrash checks");
+        sender.sendMessage(ChatColor.GREEN + "==================================");
+    }
+
+    private void sendLatency(CommandSender sender, String label, LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() == 0L) {
+            sender.sendMessage(ChatColor.WHITE + label + ChatColor.DARK_GRAY + " 无数据");
+            return;
+        }
+        sender.sendMessage(ChatColor.WHITE + label +
+                ChatColor.DARK_GRAY + " p50: " + ChatColor.AQUA + formatNanos(snapshot.getP50()) +
+                ChatColor.DARK_GRAY + " | p99: " + ChatColor.AQUA + formatNanos(snapshot.getP99()) +
+                ChatColor.DARK_GRAY + " | 最大: " + ChatColor.AQUA + formatNanos(snapshot.getMax()) +
+                ChatColor.DARK_GRAY + " | 平均: " + ChatColor.AQUA + formatNanos(snapshot.getMean()) +
+                ChatColor.DARK_GRAY + " | 次数: " + ChatColor.AQUA + snapshot.getCount());
+    }
+
+    private String formatNanos(long nanos) {
+        if (nanos < 1_000L) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000L) {
+            return String.format("%.1fµs", nanos / 1_000.0);
+        }
+        return String.format("%.2fms", nanos / 1_000_000.0);
+    }
+
+    private void sendIncidents(CommandSender sender, String[] args) {
+        IncidentStore store = plugin.getIncidentStore();
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.GRAY + "已记录 " + ChatColor.AQUA + store.getTotal() + ChatColor.GRAY + " 条异常事件 (" +
+                    store.getPlayerCount() + " 名玩家, " + store.getSegmentCount() + " 个段文件)" +
+                    (store.isEnabled() ? "" : ChatColor.RED + " 记录未开启 (incidents.enabled)"));
+            sender.sendMessage(ChatColor.YELLOW + "用法: /anticrash incidents <玩家|类型> [30m|12h|7d|yyyy-MM-dd]");
+            return;
+        }
+        long since = 0L;
+        if (args.length > 2) {
+            since = parseSince(args[2]);
+            if (since < 0L) {
+                sender.sendMessage(ChatColor.RED + "无法识别的时间: " + args[2] + " (示例: 30m、12h、7d、2024-05-01)");
+                return;
+            }
+        }
+
+        IssueType type = null;
+        for (IssueType candidate : IssueType.values()) {
+            if (candidate.name().equalsIgnoreCase(args[1])) {
+                type = candidate;
+            }
+        }
+        long start = System.nanoTime();
+        IncidentStore.Result result;
+        String target;
+        if (type != null) {
+            result = store.queryType(1 << type.ordinal(), since, INCIDENT_LIMIT);
+            target = getIssueLabel(type);
+        } else {
+            UUID playerId = resolvePlayer(args[1]);
+            if (playerId == null) {
+                sender.sendMessage(ChatColor.RED + "找不到玩家或异常类型: " + args[1]);
+                return;
+            }
+            result = store.queryPlayer(playerId, since, INCIDENT_LIMIT);
+            target = args[1];
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        sender.sendMessage(ChatColor.GREEN + "====== 异常事件: " + target + (since > 0L ? " (自 " + INCIDENT_TIME.format(Instant.ofEpochMilli(since)) + ")" : "") + " ======");
+        sender.sendMessage(ChatColor.GRAY + "匹配: " + ChatColor.AQUA + result.getMatched() +
+                ChatColor.DARK_GRAY + " | 读取记录: " + ChatColor.AQUA + result.getScanned() +
+                ChatColor.DARK_GRAY + " | 耗时: " + ChatColor.AQUA + String.format("%.2fms", millis));
+        for (IncidentStore.Incident incident : result.getIncidents()) {
+            List<String> labels = new ArrayList<>();
+            for (IssueType issue : incident.getIssues()) {
+                labels.add(getIssueLabel(issue));
+            }
+            List<String> outcome = new ArrayList<>();
+            outcome.add(incident.isRepaired() ? "已修复" : "未修复");
+            if (incident.isTeleported()) outcome.add("已传送");
+            if (incident.isCommandBlocked()) outcome.add("已阻止指令");
+            if (incident.isKicked()) outcome.add("已踢出");
+            sender.sendMessage(ChatColor.DARK_GRAY + INCIDENT_TIME.format(Instant.ofEpochMilli(incident.getTimestamp())) + " " +
+                    ChatColor.WHITE + getPlayerName(incident.getPlayerId()) + " " +
+                    (incident.isSevere() ? ChatColor.RED : ChatColor.YELLOW) + String.join("、", labels) +
+                    ChatColor.DARK_GRAY + " | " + ChatColor.GRAY + getContextLabel(incident.getContext()) +
+                    ChatColor.DARK_GRAY + " | " + ChatColor.GRAY + String.join(" ", outcome));
+        }
+        if (result.getMatched() > result.getIncidents().size()) {
+            sender.sendMessage(ChatColor.GRAY + "仅显示最新的 " + result.getIncidents().size() + " 条");
+        }
+        sender.sendMessage(ChatColor.GREEN + "==================================");
+    }
+
+    /**
+     * 解析查询起始时间：相对时间 (30m、12h、7d) 或本地日期 (yyyy-MM-dd)
+     * @return 毫秒时间戳，无法识别时返回 -1
+     */
+    private long parseSince(String text) {
+        Matcher matcher = RELATIVE_TIME.matcher(text.toLowerCase(Locale.ROOT));
+        if (matcher.matches()) {
+            long amount;
+            try {
+                amount = Long.parseLong(matcher.group(1));
+            } catch (NumberFormatException e) {
+                return -1L;
+            }
+            long unit;
+            switch (matcher.group(2)) {
+                case "s":
+                    unit = 1000L;
+                    break;
+                case "m":
+                    unit = 60_000L;
+                    break;
+                case "h":
+                    unit = 3_600_000L;
+                    break;
+                default:
+                    unit = 86_400_000L;
+                    break;
+            }
+            return Math.max(0L, System.currentTimeMillis() - Math.min(amount, Long.MAX_VALUE / unit) * unit);
+        }
+        try {
+            return LocalDate.parse(text).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * 按在线玩家、本地缓存的离线玩家或 UUID 解析玩家，不会发起网络查询
+     */
+    private UUID resolvePlayer(String name) {
+        Player online = Bukkit.getPlayerExact(name);
+        if (online != null) {
+            return online.getUniqueId();
+        }
+        OfflinePlayer cached = Bukkit.getOfflinePlayerIfCached(name);
+        if (cached != null) {
+            return cached.getUniqueId();
+        }
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String getPlayerName(UUID playerId) {
+        String name = Bukkit.getOfflinePlayer(playerId).getName();
+        return name != null ? name : playerId.toString();
+    }
+
+    private String getIssueLabel(IssueType issue) {
+        return plugin.getMessage("issue-labels." + issue.name().toLowerCase(Locale.ROOT));
+    }
+
+    private String getContextLabel(PlayerMonitor.RepairContext context) {
+        if (context == null) {
+            return "未知";
+        }
+        switch (context) {
+            case AUTO:
+                return "自动检查";
+            case MANUAL:
+                return "手动检查";
+            case COMMAND:
+            default:
+                return "指令前检查";
+        }
+    }
+
     private void toggleSafety(CommandSender sender) {
         boolean current = plugin.getConfig().getBoolean("command-protection.enabled");
         boolean newState = !current;
@@ -100,15 +421,16 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
     private void sendStatus(CommandSender sender) {
         sender.sendMessage(ChatColor.GREEN + "=== AntiCrashProtector 状态详情 ===");
         sender.sendMessage(ChatColor.GRAY + "插件版本: " + ChatColor.WHITE + plugin.getDescription().getVersion());
+        MonitorSettings settings = plugin.getSettings();
         
         // 总开关
-        boolean isEnabled = plugin.getConfig().getBoolean("enabled", true);
-        boolean debugMode = plugin.getConfig().getBoolean("debug-mode", false);
+        boolean isEnabled = settings.isEnabled();
+        boolean debugMode = settings.isDebugMode();
         sender.sendMessage(ChatColor.GRAY + "总开关: " + (isEnabled ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭") + 
                           ChatColor.GRAY + " | 调试模式: " + (debugMode ? ChatColor.GREEN + "开启" : ChatColor.YELLOW + "关闭"));
 
         // 指令拦截模块
-        boolean cmdProtectEnabled = plugin.getConfig().getBoolean("command-protection.enabled", true);
+        boolean cmdProtectEnabled = settings.isCommandProtectionEnabled();
         boolean isCommandInterceptorRunning = plugin.getCommandInterceptor() != null;
         
         String cmdStatusText;
@@ -122,9 +444,9 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GRAY + "指令拦截: " + cmdStatusText);
         
         if (isCommandInterceptorRunning) {
-            long cooldown = plugin.getConfig().getLong("command-protection.cooldown", 1000);
-            long delay = plugin.getConfig().getLong("command-protection.delay-ticks", 20);
-            List<String> cmds = plugin.getConfig().getStringList("command-protection.protected-commands");
+            long cooldown = settings.getCooldownMs();
+            long delay = settings.getDelayTicks();
+            List<String> cmds = settings.getProtectedCommandList();
             
             sender.sendMessage(ChatColor.DARK_GRAY + "  - 冷却时间: " + ChatColor.AQUA + cooldown + "ms");
             sender.sendMessage(ChatColor.DARK_GRAY + "  - 延迟执行: " + ChatColor.AQUA + delay + " ticks");
@@ -132,7 +454,7 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
         }
 
         // 属性数据包拦截模块
-        boolean packetInterceptionEnabled = plugin.getConfig().getBoolean("packet-interception.enabled", true);
+        boolean packetInterceptionEnabled = settings.isPacketInterceptionEnabled();
         boolean hasProtocolLib = plugin.getServer().getPluginManager().getPlugin("ProtocolLib") != null;
         boolean isPacketInterceptorRunning = plugin.getAttributePacketInterceptor() != null && 
                                               plugin.getAttributePacketInterceptor().isRegistered();
@@ -151,11 +473,27 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
         
         if (hasProtocolLib && isPacketInterceptorRunning) {
             sender.sendMessage(ChatColor.DARK_GRAY + "  - 拦截目标: " + ChatColor.WHITE + "属性更新数据包");
+            sender.sendMessage(ChatColor.DARK_GRAY + "  - 处理模式: " + ChatColor.WHITE + (plugin.getAttributePacketInterceptor().isAsync() ? "异步 (ProtocolLib 异步线程)" : "同步 (发包线程)") + " | 每玩家每 tick 最多检查一次");
             sender.sendMessage(ChatColor.DARK_GRAY + "  - 功能说明: " + ChatColor.WHITE + "在发送属性包前检查并修复损坏数据");
         }
+        NmsAttributeAccessor nms = plugin.getNmsAttributeAccessor();
+        if (nms != null) {
+            sender.sendMessage(ChatColor.DARK_GRAY + "  - 深度修复 (NMS): " + (nms.isAvailable() ? ChatColor.GREEN + "可用"
+                    : ChatColor.YELLOW + "不可用 (" + nms.getFailureReason() + ")"));
+        }
+        AgentBridge agent = plugin.getAgentBridge();
+        sender.sendMessage(ChatColor.GRAY + "Java Agent: " + (agent == null ? ChatColor.YELLOW + "未加载" :
+                (agent.isActive() ? ChatColor.GREEN + "运行中" : ChatColor.YELLOW + "已加载 (等待首次 tick)") +
+                ChatColor.DARK_GRAY + " | 重建集合: " + ChatColor.AQUA + agent.getRepairCount() +
+                ChatColor.DARK_GRAY + " | 拦截异常: " + ChatColor.AQUA + agent.getSuppressedCount()));
+        LogManager logManager = plugin.getLogManager();
+        sender.sendMessage(ChatColor.GRAY + "日志写入: " + ChatColor.WHITE + "已写入 " + ChatColor.AQUA + logManager.getWrittenCount() +
+                ChatColor.DARK_GRAY + " | 队列: " + ChatColor.AQUA + logManager.getQueueSize() + "/" + logManager.getQueueCapacity() +
+                ChatColor.DARK_GRAY + " | 丢弃: " + (logManager.getDroppedCount() > 0 ? ChatColor.RED : ChatColor.AQUA) + logManager.getDroppedCount() +
+                ChatColor.DARK_GRAY + " | 合并重复: " + ChatColor.AQUA + plugin.getLogDeduplicator().getSuppressedCount());
 
         // 自动监控模块
-        boolean monitorEnabled = plugin.getConfig().getBoolean("monitoring.enabled", true);
+        boolean monitorEnabled = settings.isMonitoringEnabled();
         boolean isMonitoringRunning = plugin.getPlayerMonitor() != null && plugin.getPlayerMonitor().isMonitoring();
         
         String monitorStatusText;
@@ -169,40 +507,56 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GRAY + "自动监控: " + monitorStatusText);
         
         if (isMonitoringRunning) {
-             long interval = plugin.getConfig().getLong("monitoring.check-interval", 100);
-             sender.sendMessage(ChatColor.DARK_GRAY + "  - 扫描频率: " + ChatColor.AQUA + interval + " ticks/次");
-             sender.sendMessage(ChatColor.DARK_GRAY + "  - 监控检查项: " + getCheckList());
+             PlayerMonitor monitor = plugin.getPlayerMonitor();
+             if (settings.isRiskEnabled()) {
+                 sender.sendMessage(ChatColor.DARK_GRAY + "  - 扫描频率: " + ChatColor.AQUA + settings.getRiskMinInterval() + "-" + settings.getRiskMaxInterval() + " ticks/次" +
+                                   ChatColor.DARK_GRAY + " (按风险调整) | 高风险玩家: " + ChatColor.AQUA + monitor.getRiskTracker().countAtLeast(0.5));
+             } else {
+                 long interval = settings.getCheckInterval();
+                 sender.sendMessage(ChatColor.DARK_GRAY + "  - 扫描频率: " + ChatColor.AQUA + interval + " ticks/次");
+             }
+             sender.sendMessage(ChatColor.DARK_GRAY + "  - 扫描预算: " + ChatColor.AQUA + (monitor.getLastBudgetNanos() / 1000) + "μs/tick" +
+                               ChatColor.DARK_GRAY + " | 覆盖时限: " + ChatColor.AQUA + settings.getSlaTicks() + " ticks" +
+                               ChatColor.DARK_GRAY + " | 待扫描: " + ChatColor.AQUA + monitor.getPendingScanCount());
+             if (plugin.getPlatformScheduler().isFolia()) {
+                 sender.sendMessage(ChatColor.DARK_GRAY + "  - 区域线程扫描: " + ChatColor.AQUA + (monitor.getEstimatedScanNanos() / 1000) + "μs/玩家" +
+                                   ChatColor.DARK_GRAY + " (每分发一名玩家按该值计入预算)");
+             }
+             sender.sendMessage(ChatColor.DARK_GRAY + "  - 异步判定: " + (settings.isAsyncEvaluation()
+                     ? ChatColor.GREEN + "开启 (" + settings.getEvaluationThreads() + " 线程)"
+                     : ChatColor.YELLOW + "关闭 (主线程判定)"));
+             sender.sendMessage(ChatColor.DARK_GRAY + "  - 监控检查项: " + getCheckList(settings));
              
              // 阈值显示
-             int minY = plugin.getConfig().getInt("repair.thresholds.y-min", -64);
-             int maxY = plugin.getConfig().getInt("repair.thresholds.y-max", 320);
+             int minY = settings.getYMin();
+             int maxY = settings.getYMax();
              sender.sendMessage(ChatColor.DARK_GRAY + "  - 坐标阈值: " + ChatColor.AQUA + "Y[" + minY + " ~ " + maxY + "]");
 
-             double minHealth = plugin.getConfig().getDouble("repair.thresholds.health-min", 0.1);
-             double maxHealth = plugin.getConfig().getDouble("repair.thresholds.health-max", 2048.0);
+             double minHealth = settings.getHealthMin();
+             double maxHealth = settings.getHealthMax();
              sender.sendMessage(ChatColor.DARK_GRAY + "  - 生命阈值: " + ChatColor.AQUA + minHealth + " ~ " + maxHealth);
 
-             double speedMin = plugin.getConfig().getDouble("repair.thresholds.speed-min", 0.0);
-             double speedMax = plugin.getConfig().getDouble("repair.thresholds.speed-max", 1.0);
+             double speedMin = settings.getSpeedMin();
+             double speedMax = settings.getSpeedMax();
              sender.sendMessage(ChatColor.DARK_GRAY + "  - 速度范围: " + ChatColor.AQUA + speedMin + " ~ " + speedMax);
 
-             double damageMin = plugin.getConfig().getDouble("repair.thresholds.damage-min", 0.0);
-             double damageMax = plugin.getConfig().getDouble("repair.thresholds.damage-max", 2048.0);
+             double damageMin = settings.getDamageMin();
+             double damageMax = settings.getDamageMax();
              sender.sendMessage(ChatColor.DARK_GRAY + "  - 伤害范围: " + ChatColor.AQUA + damageMin + " ~ " + damageMax);
              
              // 修复策略
-             boolean autoRepair = plugin.getConfig().getBoolean("repair.auto-repair", true);
-             boolean safeTeleport = plugin.getConfig().getBoolean("repair.safe-teleport", true);
-             boolean blockOnSevere = plugin.getConfig().getBoolean("repair.block-command-on-severe", true);
-             boolean kickUnrepairable = plugin.getConfig().getBoolean("repair.kick-if-unrepairable", false);
+             boolean autoRepair = settings.isAutoRepair();
+             boolean safeTeleport = settings.isSafeTeleport();
+             boolean blockOnSevere = settings.isBlockCommandOnSevere();
+             boolean kickUnrepairable = settings.isKickIfUnrepairable();
 
              sender.sendMessage(ChatColor.GRAY + "修复策略:");
              sender.sendMessage(ChatColor.DARK_GRAY + "  - 自动修复: " + (autoRepair ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭 (仅报告)"));
              sender.sendMessage(ChatColor.DARK_GRAY + "  - 安全传送: " + (safeTeleport ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
              
              if (safeTeleport) {
-                 boolean tpSevereOnly = plugin.getConfig().getBoolean("repair.teleport-on-severe-only", true);
-                 boolean preferSafeLoc = plugin.getConfig().getBoolean("repair.prefer-last-safe-location", true);
+                 boolean tpSevereOnly = settings.isTeleportOnSevereOnly();
+                 boolean preferSafeLoc = settings.isPreferLastSafeLocation();
                  sender.sendMessage(ChatColor.DARK_GRAY + "    - 仅严重异常时传送: " + (tpSevereOnly ? ChatColor.GREEN + "是" : ChatColor.YELLOW + "否 (始终传送)"));
                  sender.sendMessage(ChatColor.DARK_GRAY + "    - 优先回退安全位置: " + (preferSafeLoc ? ChatColor.GREEN + "是" : ChatColor.YELLOW + "否 (传送到出生点)"));
              }
@@ -213,15 +567,15 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GREEN + "==================================");
     }
 
-    private String getCheckList() {
+    private String getCheckList(MonitorSettings settings) {
         List<String> checks = new ArrayList<>();
         // 生命值检查是硬编码在核心逻辑中的，始终开启
         checks.add("生命值");
-        if (plugin.getConfig().getBoolean("monitoring.checks.location", true)) checks.add("坐标");
-        if (plugin.getConfig().getBoolean("monitoring.checks.attributes", true)) checks.add("核心属性(全)");
-        if (plugin.getConfig().getBoolean("monitoring.checks.effects", true)) checks.add("药水效果");
-        if (plugin.getConfig().getBoolean("monitoring.checks.inventory", true)) checks.add("物品栏");
-        if (plugin.getConfig().getBoolean("monitoring.checks.vehicle", true)) checks.add("载具");
+        if (settings.isCheckLocation()) checks.add("坐标");
+        if (settings.isCheckAttributes()) checks.add("核心属性(全)");
+        if (settings.isCheckEffects()) checks.add("药水效果");
+        if (settings.isCheckInventory()) checks.add("物品栏");
+        if (settings.isCheckVehicle()) checks.add("载具");
         return String.join(", ", checks);
     }
 
@@ -230,6 +584,11 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "/anticrash reload " + ChatColor.WHITE + "- 重载配置文件");
         sender.sendMessage(ChatColor.YELLOW + "/anticrash status " + ChatColor.WHITE + "- 查看插件状态");
         sender.sendMessage(ChatColor.YELLOW + "/anticrash check " + ChatColor.WHITE + "- 手动检查所有玩家");
+        sender.sendMessage(ChatColor.YELLOW + "/anticrash checks [reset] " + ChatColor.WHITE + "- 查看检查项耗时与命中率");
+        sender.sendMessage(ChatColor.YELLOW + "/anticrash mutations [reset] " + ChatColor.WHITE + "- 查看异步修改属性的插件");
+        sender.sendMessage(ChatColor.YELLOW + "/anticrash packets [reset] " + ChatColor.WHITE + "- 查看属性包发送频率与数据包检查器统计");
+        sender.sendMessage(ChatColor.YELLOW + "/anticrash incidents <玩家|类型> [时间] " + ChatColor.WHITE + "- 查询异常事件记录");
+        sender.sendMessage(ChatColor.YELLOW + "/anticrash metrics [reset] " + ChatColor.WHITE + "- 查看诊断、修复、指令拦截等热点路径耗时");
         sender.sendMessage(ChatColor.YELLOW + "/anticrash safety " + ChatColor.WHITE + "- 切换安全模式");
         sender.sendMessage(ChatColor.YELLOW + "/anticrash repair " + ChatColor.WHITE + "- 尝试自我修复");
     }
@@ -237,11 +596,33 @@ public class AntiCrashCommand implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            List<String> subCommands = Arrays.asList("reload", "status", "check", "safety", "repair");
+            List<String> subCommands = Arrays.asList("reload", "status", "check", "checks", "mutations", "packets", "incidents", "metrics", "safety", "repair");
             return subCommands.stream()
                     .filter(s -> s.startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         }
+        if (args.length == 2 && (args[0].equalsIgnoreCase("checks") || args[0].equalsIgnoreCase("mutations")
+                || args[0].equalsIgnoreCase("packets") || args[0].equalsIgnoreCase("metrics"))
+                && "reset".startsWith(args[1].toLowerCase())) {
+            return new ArrayList<>(Arrays.asList("reset"));
+        }
+        if (args[0].equalsIgnoreCase("incidents")) {
+            List<String> candidates = new ArrayList<>();
+            if (args.length == 2) {
+                for (IssueType type : IssueType.values()) {
+                    candidates.add(type.name().toLowerCase(Locale.ROOT));
+                }
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    candidates.add(player.getName());
+                }
+            } else if (args.length == 3) {
+                candidates.addAll(Arrays.asList("1h", "12h", "1d", "7d"));
+            }
+            String prefix = args[args.length - 1].toLowerCase(Locale.ROOT);
+            return candidates.stream()
+                    .filter(s -> s.toLowerCase(Locale.ROOT).startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
         return new ArrayList<>();
     }
 }
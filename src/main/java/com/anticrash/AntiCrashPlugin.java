@@ -22,7 +22,25 @@ public class AntiCrashPlugin extends JavaPlugin {
     private CommandInterceptor commandInterceptor;
     private PlayerMonitor playerMonitor;
     private LogManager logManager;
+    private LogDeduplicator logDeduplicator;
+    private PlatformScheduler.TaskHandle dedupeTask;
+    private final PluginMetrics metrics = new PluginMetrics();
+    private PlatformScheduler.TaskHandle metricsTask;
+    private MetricsEndpoint metricsEndpoint;
+    private IncidentStore incidentStore;
     private AttributePacketInterceptor attributePacketInterceptor;
+    private PlatformScheduler platformScheduler;
+    private CheckRegistry checkRegistry;
+    private final ModifierFingerprintCache fingerprintCache = new ModifierFingerprintCache();
+    private final AttributePresenceIndex attributeIndex = new AttributePresenceIndex();
+    private NmsAttributeAccessor nmsAttributeAccessor;
+    private FastutilSetProbe fastutilSetProbe;
+    private ItemSizeMeter itemSizeMeter;
+    private ModifierMutationDetector mutationDetector;
+    private final PlayerSlotTable playerSlots = new PlayerSlotTable();
+    private AgentBridge agentBridge;
+    // 编译后的配置快照，重载时整体替换
+    private volatile MonitorSettings settings;
 
     /**
      * 获取插件单例实例
@@ -42,9 +60,31 @@ public class AntiCrashPlugin extends JavaPlugin {
         reloadConfig();           // 重新载入内存
         
         // 2. 初始化核心模块
+        this.platformScheduler = PlatformScheduler.create(this); // Paper 主线程调度 / Folia 区域调度
         this.logManager = new LogManager(this); // 日志管理（独立线程）
+        this.logDeduplicator = new LogDeduplicator(this); // 重复日志合并，每秒输出到期的汇总
+        this.dedupeTask = platformScheduler.runGlobalTimer(() -> logDeduplicator.sweep(false), 20L, 20L);
+        this.metricsTask = platformScheduler.runGlobalTimer(metrics::onTick, 1L, 1L); // 每 tick 汇总热点路径耗时
+        this.metricsEndpoint = new MetricsEndpoint(this); // Prometheus 指标接口（默认关闭）
+        this.incidentStore = new IncidentStore(this); // 异常事件记录（启动时重建索引）
+        this.checkRegistry = new CheckRegistry(this); // 检查项注册表（内置检查由 PlayerMonitor 注册）
+        getServer().getPluginManager().registerEvents(checkRegistry, this);
+        getServer().getPluginManager().registerEvents(attributeIndex, this); // 玩家属性存在索引
+        getServer().getPluginManager().registerEvents(playerSlots, this); // 玩家槽位（数据包热路径使用）
         
         getLogger().info("正在启动 AntiCrashProtector v" + getDescription().getVersion() + "...");
+        if (platformScheduler.isFolia()) {
+            getLogger().info("[核心] 检测到 Folia 服务端，扫描与修复将分发到玩家所在的区域线程执行");
+        }
+        this.nmsAttributeAccessor = NmsAttributeAccessor.resolve(getLogger()); // 启动时一次性解析 NMS 字段
+        this.fastutilSetProbe = FastutilSetProbe.resolve(getLogger());
+        this.itemSizeMeter = ItemSizeMeter.resolve(getLogger()); // 物品网络编码体积测量
+        this.agentBridge = AgentBridge.find();
+        if (agentBridge != null) {
+            getLogger().info("[核心] 检测到 AntiCrashProtector Java Agent，refreshDirtyAttributes 遍历异常将被就地修复");
+        }
+        this.mutationDetector = new ModifierMutationDetector(this); // 异步修改检测（默认关闭）
+        getServer().getPluginManager().registerEvents(mutationDetector, this);
 
         // 3. 注册指令执行器和补全器
         AntiCrashCommand cmdExecutor = new AntiCrashCommand(this);
@@ -60,6 +100,9 @@ public class AntiCrashPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (mutationDetector != null) {
+            mutationDetector.shutdown(); // 还原被替换的修饰符集合
+        }
         if (playerMonitor != null) {
             playerMonitor.stopMonitoring();
         }
@@ -72,6 +115,27 @@ public class AntiCrashPlugin extends JavaPlugin {
             attributePacketInterceptor = null;
         }
         
+        if (incidentStore != null) {
+            incidentStore.close();
+        }
+        if (dedupeTask != null) {
+            dedupeTask.cancel();
+            dedupeTask = null;
+        }
+        if (metricsTask != null) {
+            metricsTask.cancel();
+            metricsTask = null;
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+        }
+        if (logDeduplicator != null) {
+            logDeduplicator.sweep(true); // 补写尚未输出的重复计数
+        }
+        if (logManager != null) {
+            logManager.shutdown(); // 写完队列中剩余的日志
+        }
+        
         instance = null;
         getLogger().info("AntiCrashProtector 已停止");
     }
@@ -87,23 +151,128 @@ public class AntiCrashPlugin extends JavaPlugin {
     public LogManager getLogManager() {
         return logManager;
     }
+
+    /**
+     * 获取热点路径耗时统计
+     */
+    public PluginMetrics getMetrics() {
+        return metrics;
+    }
+
+    public MetricsEndpoint getMetricsEndpoint() {
+        return metricsEndpoint;
+    }
+
+    public LogDeduplicator getLogDeduplicator() {
+        return logDeduplicator;
+    }
+
+    public IncidentStore getIncidentStore() {
+        return incidentStore;
+    }
+
+    /**
+     * 获取属性修饰符指纹缓存，巡逻扫描、传送/退出预检查与属性包拦截共用
+     */
+    public ModifierFingerprintCache getFingerprintCache() {
+        return fingerprintCache;
+    }
+
+    /**
+     * 获取玩家属性存在索引，所有属性扫描只访问玩家实际拥有的属性
+     */
+    public AttributePresenceIndex getAttributeIndex() {
+        return attributeIndex;
+    }
+
+    /**
+     * 获取玩家槽位表，数据包线程按槽位索引基本类型数组
+     */
+    public PlayerSlotTable getPlayerSlots() {
+        return playerSlots;
+    }
+
+    /**
+     * 获取 NMS 属性访问层，用于深度修复损坏的修饰符集合
+     */
+    public NmsAttributeAccessor getNmsAttributeAccessor() {
+        return nmsAttributeAccessor;
+    }
+
+    /**
+     * 获取 fastutil 集合探针，用于直接校验脏属性集合的内部结构
+     */
+    public FastutilSetProbe getFastutilSetProbe() {
+        return fastutilSetProbe;
+    }
+
+    /**
+     * 获取物品体积测量器，用于按未压缩的网络编码检查超大物品
+     */
+    public ItemSizeMeter getItemSizeMeter() {
+        return itemSizeMeter;
+    }
+
+    /**
+     * 获取异步修改检测器
+     */
+    public ModifierMutationDetector getMutationDetector() {
+        return mutationDetector;
+    }
+
+    /**
+     * 获取可选 Java Agent 的状态，未通过 -javaagent 启动时为 null
+     */
+    public AgentBridge getAgentBridge() {
+        return agentBridge;
+    }
+
+    /**
+     * 获取检查项注册表，第三方插件可通过它注册自定义检查
+     */
+    public CheckRegistry getCheckRegistry() {
+        return checkRegistry;
+    }
     
     public AttributePacketInterceptor getAttributePacketInterceptor() {
         return attributePacketInterceptor;
     }
 
+    public PlatformScheduler getPlatformScheduler() {
+        return platformScheduler;
+    }
+
+    /**
+     * 获取当前生效的配置快照
+     */
+    public MonitorSettings getSettings() {
+        return settings;
+    }
+
     /**
      * 打印调试日志
      * 仅在 config.yml 中 debug-mode 为 true 时输出
      */
     public void debugLog(String message) {
-        if (getConfig().getBoolean("debug-mode", false)) {
+        MonitorSettings current = settings;
+        if (current != null && current.isDebugMode()) {
             getLogger().info("[DEBUG] " + message);
         }
     }
 
     public void applyConfig(boolean log) {
-        boolean enabled = getConfig().getBoolean("enabled", true);
+        // 先编译新的配置快照并原子替换，后续模块统一读取该快照
+        MonitorSettings current = MonitorSettings.compile(getConfig());
+        this.settings = current;
+        fingerprintCache.applySettings(current);
+        mutationDetector.applySettings(current);
+        logManager.applySettings(current); // 日志滚动与保留策略
+        logDeduplicator.applySettings(current);
+        metrics.applySettings(current);
+        metricsEndpoint.applySettings(current);
+        incidentStore.applySettings(current);
+
+        boolean enabled = current.isEnabled();
         debugLog("正在应用配置... 总开关: " + enabled);
         if (!enabled) {
             if (playerMonitor != null) {
@@ -119,12 +288,10 @@ public class AntiCrashPlugin extends JavaPlugin {
             return;
         }
 
-        boolean commandProtectionEnabled = getConfig().getBoolean("command-protection.enabled", true);
+        boolean commandProtectionEnabled = current.isCommandProtectionEnabled();
         if (commandProtectionEnabled) {
             if (commandInterceptor == null) {
                 commandInterceptor = new CommandInterceptor(this);
-            } else {
-                commandInterceptor.loadConfig(); // 关键：重载时刷新指令列表
             }
             if (log) {
                 getLogger().info("[核心] 命令安全拦截模块已同步最新配置");
@@ -139,7 +306,7 @@ public class AntiCrashPlugin extends JavaPlugin {
         } else {
             playerMonitor.loadConfig(); // 重载时刷新监控频率
         }
-        boolean monitoringEnabled = getConfig().getBoolean("monitoring.enabled", true);
+        boolean monitoringEnabled = current.isMonitoringEnabled();
         if (monitoringEnabled) {
             playerMonitor.startMonitoring();
             if (log) {
@@ -157,8 +324,8 @@ public class AntiCrashPlugin extends JavaPlugin {
             if (attributePacketInterceptor == null) {
                 attributePacketInterceptor = new AttributePacketInterceptor(this);
             }
-            if (getConfig().getBoolean("packet-interception.enabled", true)) {
-                attributePacketInterceptor.register();
+            if (current.isPacketInterceptionEnabled()) {
+                attributePacketInterceptor.applySettings(current); // 模式或检查器变化时重新注册
                 if (log) {
                     getLogger().info("[核心] 属性数据包拦截器已启用 (需 ProtocolLib)");
                 }
@@ -0,0 +1,92 @@
+package com.anticrash;
+
+import org.bukkit.attribute.Attribute;
+
+/**
+ * 属性检查 (Core Attribute Integrity Check)
+ * 针对 1.21+ 常见的 ClientboundUpdateAttributesPacket NPE 崩溃，
+ * 检查所有注册属性的 NaN/Infinity 非法值，以及采集时发现的修饰符集合内部损坏
+ * 属性值异常只需修复，不传送
+ */
+public class AttributeCheck implements PlayerCheck {
+
+    @Override
+    public String getId() {
+        return "attributes";
+    }
+
+    @Override
+    public int getSubsystems() {
+        return DirtyTracker.ATTRIBUTES;
+    }
+
+    @Override
+    public boolean isEnabled(MonitorSettings settings) {
+        return settings.isCheckAttributes();
+    }
+
+    @Override
+    public void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        String name = snapshot.getName();
+        double speedMax = settings.getSpeedMax();
+        double speedMin = settings.getSpeedMin();
+        double damageMax = settings.getDamageMax();
+        double damageMin = settings.getDamageMin();
+        double minHealth = settings.getHealthMin();
+        double maxHealth = settings.getHealthMax();
+
+        for (int i = 0; i < PlayerSnapshot.getAttributeCount(); i++) {
+            byte state = snapshot.getAttributeState(i);
+            if (state == PlayerSnapshot.ATTR_ABSENT) continue;
+            Attribute attr = PlayerSnapshot.getAttribute(i);
+
+            if (state == PlayerSnapshot.ATTR_INSTANCE_NPE) {
+                // 属性实例本身的 NPE（如 getValue() 时内部集合损坏）
+                diagnosis.report(IssueType.ATTRIBUTES, false,
+                        "属性实例访问时发生 NPE: 玩家=" + name + " 属性=" + attr.name() + " 信息=" + snapshot.getAttributeError(i));
+                continue;
+            }
+
+            double val = snapshot.getAttributeValue(i);
+            double base = snapshot.getAttributeBase(i);
+
+            // 核心有效性校验：拦截所有可能导致发包崩溃的非有限数值
+            if (!Double.isFinite(val) || !Double.isFinite(base)) {
+                diagnosis.report(IssueType.ATTRIBUTES, false,
+                        "检测到高危非法属性值 (NaN/Inf): 玩家=" + name + " 属性=" + attr.name() + " Value=" + val + " Base=" + base);
+            }
+
+            int modifierCount = snapshot.getModifierCount(i);
+            for (int m = 0; m < modifierCount; m++) {
+                double amount = snapshot.getModifierAmount(i, m);
+                if (!Double.isFinite(amount)) {
+                    diagnosis.report(IssueType.ATTRIBUTES, false,
+                            "检测到属性修饰符数值异常: 玩家=" + name + " 属性=" + attr.name() + " Amount=" + amount);
+                }
+            }
+
+            // 这是针对 fastutil ObjectOpenHashSet "wrapped is null" 崩溃的关键检测
+            if (state == PlayerSnapshot.ATTR_MODIFIERS_NPE) {
+                diagnosis.report(IssueType.ATTRIBUTES, false,
+                        "检测到属性修饰符集合内部结构损坏 (NPE): 玩家=" + name + " 属性=" + attr.name() + " 异常=" + snapshot.getAttributeError(i));
+            } else if (state == PlayerSnapshot.ATTR_MODIFIERS_ERROR) {
+                diagnosis.report(IssueType.ATTRIBUTES, false,
+                        "属性修饰符检查异常: 玩家=" + name + " 属性=" + attr.name() + " 异常=" + snapshot.getAttributeError(i));
+            }
+
+            // 针对核心属性的业务范围约束，防止数值溢出引发的逻辑异常
+            if (attr == Attribute.GENERIC_MOVEMENT_SPEED && (val > speedMax || val < speedMin)) {
+                diagnosis.report(IssueType.ATTRIBUTES, false,
+                        "发现移动速度异常: 玩家=" + name + " Value=" + val + " 范围=[" + speedMin + "," + speedMax + "] Base=" + base);
+            }
+            if (attr == Attribute.GENERIC_MAX_HEALTH && (val > maxHealth || val < minHealth)) {
+                diagnosis.report(IssueType.ATTRIBUTES, false,
+                        "发现最大生命值异常: 玩家=" + name + " Value=" + val + " 范围=[" + minHealth + "," + maxHealth + "] Base=" + base);
+            }
+            if (attr == Attribute.GENERIC_ATTACK_DAMAGE && (val > damageMax || val < damageMin)) {
+                diagnosis.report(IssueType.ATTRIBUTES, false,
+                        "发现攻击伤害异常: 玩家=" + name + " Value=" + val + " 范围=[" + damageMin + "," + damageMax + "] Base=" + base);
+            }
+        }
+    }
+}
@@ -3,45 +3,91 @@ package com.anticrash;
 import com.comphenix.protocol.PacketType;
 import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.async.AsyncListenerHandler;
 import com.comphenix.protocol.events.ListenerPriority;
 import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.wrappers.WrappedAttribute;
 import org.bukkit.Bukkit;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
-import org.bukkit.attribute.AttributeModifier;
 import org.bukkit.entity.Player;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Level;
 
 /**
  * 属性数据包拦截器
  * 在服务器发送属性更新包之前检查数据完整性，防止 fastutil 内部损坏导致的崩溃
+ * 每个属性包都会清洗载荷：NaN/Infinity/越界数值被限制或丢弃后就地写回，不再取消整个数据包，避免客户端属性不同步
+ * 记录每名玩家、每个实体的属性包发送频率；同一 tick 内发给同一玩家、同一实体的重复属性条目会被合并：
+ * 同一个数据包对象会发给所有追踪该实体的玩家，合并结果只写入该接收者的数据包副本；
+ * 已发出的条目由 MONITOR 优先级的监听器在其他插件处理完之后记录，被取消的数据包不计入
+ * 同一玩家每 tick 只做一次 O(1) 集合探测：按当前 tick 编号写入玩家槽位，比较并交换即可去重
+ * 载荷异常且属于玩家自身时，需要调用 Bukkit API 的修饰符检查汇总到每 tick 一次的任务中，在拥有该玩家的线程上执行
+ * 异步模式下数据包在 ProtocolLib 异步线程处理；AsynchronousManager 在异步监听器处理完成前暂缓发送数据包，
+ * 因此两种模式的清洗、合并与取消都作用于实际发出的数据包，行为完全一致
+ * 其他出站数据包（实体元数据、传送、物品）与入站数据包（移动、书本、创造模式物品）交给 {@link PacketValidatorRegistry} 中的检查器，
+ * 每个数据包的检查有预算上限
  */
 public class AttributePacketInterceptor {
 
+    // 清理下线玩家与消失实体统计数据的间隔
+    private static final int PRUNE_INTERVAL_TICKS = 1200;
+    
     private final AntiCrashPlugin plugin;
     private final ProtocolManager protocolManager;
     private boolean registered = false;
-    private final Set<UUID> recentlyChecked = ConcurrentHashMap.newKeySet();
+    private PacketAdapter listener;
+    // 记录实际发出的属性条目，与 listener 使用相同的同步/异步模式
+    private PacketAdapter sentRecorder;
+    // 其他出站/入站数据包的检查器；检查有预算上限，始终在网络线程同步执行
+    private final PacketValidatorRegistry validators;
+    private PacketAdapter validatorListener;
+    private volatile AsyncListenerHandler asyncHandler;
+    private AsyncListenerHandler asyncRecorderHandler;
+    private PlatformScheduler.TaskHandle drainTask;
+    // 按玩家槽位记录最近一次检查的 tick
+    private volatile AtomicLongArray lastCheckedTick = new AtomicLongArray(64);
+    // 属性包载荷异常、等待在拥有该玩家的线程上检查的玩家
+    private final Set<UUID> pendingChecks = ConcurrentHashMap.newKeySet();
+    private final AttributePacketStats stats = new AttributePacketStats();
+    // 每名接收者本 tick 已发出的属性条目，用于合并重复数据包
+    private final Map<UUID, SentAttributeLedger> sentThisTick = new ConcurrentHashMap<>();
+    private int drainRuns;
     
     public AttributePacketInterceptor(AntiCrashPlugin plugin) {
         this.plugin = plugin;
         this.protocolManager = ProtocolLibrary.getProtocolManager();
+        this.validators = new PacketValidatorRegistry(plugin);
+    }
+    
+    /**
+     * 应用配置：同步/异步模式或启用的检查器类型变化时重新注册监听器
+     */
+    public void applySettings(MonitorSettings settings) {
+        Set<PacketType> activeTypes = validators.getActiveTypes();
+        validators.applySettings(settings);
+        if (registered && (isAsync() != settings.isPacketInterceptionAsync() || !activeTypes.equals(validators.getActiveTypes()))) {
+            unregister();
+        }
+        register();
     }
     
     public void register() {
         if (registered) return;
         
         try {
-            protocolManager.addPacketListener(new PacketAdapter(
+            boolean async = plugin.getSettings().isPacketInterceptionAsync();
+            listener = new PacketAdapter(
                 plugin,
                 ListenerPriority.LOWEST,
                 PacketType.Play.Server.UPDATE_ATTRIBUTES
@@ -53,69 +99,389 @@ public class AttributePacketInterceptor {
                     Player player = event.getPlayer();
                     if (player == null || !player.isOnline()) return;
                     
-                    if (recentlyChecked.contains(player.getUniqueId())) {
+                    sanitizePayload(event, player);
+                    if (!event.isCancelled()) {
+                        coalesce(event, player);
+                    }
+                    if (event.isCancelled() || !firstInTick(player)) {
                         return;
                     }
                     
-                    recentlyChecked.add(player.getUniqueId());
-                    Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                        recentlyChecked.remove(player.getUniqueId());
-                    }, 1L);
+                    // 脏属性集合结构探测：O(1) 读取内部字段，不遍历集合
+                    probeDirtySets(player);
+                }
+            };
+            
+            sentRecorder = new PacketAdapter(
+                plugin,
+                ListenerPriority.MONITOR,
+                PacketType.Play.Server.UPDATE_ATTRIBUTES
+            ) {
+                @Override
+                public void onPacketSending(PacketEvent event) {
+                    if (event.isCancelled()) return;
                     
-                    if (checkAndRepairPlayerAttributes(player)) {
-                        event.setCancelled(true);
-                        logWarn("已拦截并发送损坏的属性包，已修复玩家属性: " + player.getName());
-                    }
+                    Player player = event.getPlayer();
+                    if (player == null) return;
+                    
+                    recordSent(event.getPacket(), player);
                 }
-            });
+            };
+            
+            if (async) {
+                try {
+                    // 异步监听器按优先级依次处理，记录器排在最后；处理完成前数据包暂缓发送
+                    asyncHandler = protocolManager.getAsynchronousManager().registerAsyncHandler(listener);
+                    asyncRecorderHandler = protocolManager.getAsynchronousManager().registerAsyncHandler(sentRecorder);
+                    asyncHandler.start();
+                    asyncRecorderHandler.start();
+                } catch (Exception e) {
+                    unregisterAsyncHandlers();
+                    plugin.getLogger().log(Level.WARNING, "无法注册异步属性包监听器，改用同步模式", e);
+                }
+            }
+            if (asyncHandler == null) {
+                protocolManager.addPacketListener(listener);
+                protocolManager.addPacketListener(sentRecorder);
+            }
+            registerValidators();
+            drainTask = plugin.getPlatformScheduler().runGlobalTimer(this::drainPendingChecks, 1L, 1L);
             
             registered = true;
-            plugin.getLogger().info("[核心] 属性数据包拦截器已启用 - 可防止 MMO 插件导致的属性崩溃");
+            plugin.getLogger().info("[核心] 属性数据包拦截器已启用 - 可防止 MMO 插件导致的属性崩溃" + (asyncHandler != null ? " (异步模式)" : ""));
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "无法注册属性数据包拦截器", e);
         }
     }
     
+    private void registerValidators() {
+        Set<PacketType> types = validators.getActiveTypes();
+        if (types.isEmpty()) {
+            return;
+        }
+        validatorListener = new PacketAdapter(plugin, ListenerPriority.LOWEST, types) {
+            @Override
+            public void onPacketSending(PacketEvent event) {
+                if (event.isCancelled()) return;
+                
+                Player player = event.getPlayer();
+                if (player == null || !player.isOnline()) return;
+                
+                validatePacket(event, player);
+            }
+            
+            @Override
+            public void onPacketReceiving(PacketEvent event) {
+                if (event.isCancelled()) return;
+                
+                Player player = event.getPlayer();
+                if (player == null) return;
+                
+                // 入站数据包在网络线程解码后检查，被取消的数据包不会进入主线程
+                validatePacket(event, player);
+            }
+        };
+        protocolManager.addPacketListener(validatorListener);
+        plugin.getLogger().info("[核心] 数据包检查器已启用: " + types.size() + " 种数据包");
+    }
+    
+    private void validatePacket(PacketEvent event, Player player) {
+        if (validators.validate(event, plugin.getSettings())) {
+            // 数据包描述的是接收者自身，源数据需要在拥有该玩家的线程上修复
+            pendingChecks.add(player.getUniqueId());
+        }
+    }
+    
     public void unregister() {
         if (!registered) return;
         
         try {
-            protocolManager.removePacketListeners(plugin);
+            if (validatorListener != null) {
+                protocolManager.removePacketListener(validatorListener);
+                validatorListener = null;
+            }
+            if (asyncHandler != null) {
+                unregisterAsyncHandlers();
+            } else {
+                protocolManager.removePacketListener(listener);
+                protocolManager.removePacketListener(sentRecorder);
+            }
+            if (drainTask != null) {
+                drainTask.cancel();
+                drainTask = null;
+            }
+            pendingChecks.clear();
+            sentThisTick.clear();
             registered = false;
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "注销属性数据包拦截器时出错", e);
         }
     }
     
+    private void unregisterAsyncHandlers() {
+        if (asyncHandler != null) {
+            protocolManager.getAsynchronousManager().unregisterAsyncHandler(asyncHandler);
+            asyncHandler = null;
+        }
+        if (asyncRecorderHandler != null) {
+            protocolManager.getAsynchronousManager().unregisterAsyncHandler(asyncRecorderHandler);
+            asyncRecorderHandler = null;
+        }
+    }
+    
     public boolean isRegistered() {
         return registered;
     }
     
+    public boolean isAsync() {
+        return asyncHandler != null;
+    }
+    
+    public AttributePacketStats getStats() {
+        return stats;
+    }
+    
+    public PacketValidatorRegistry getValidators() {
+        return validators;
+    }
+    
+    /**
+     * 本 tick 是否首次检查该玩家，无锁：同一 tick 内并发到达的数据包只有一个能成功交换
+     */
+    private boolean firstInTick(Player player) {
+        int slot = plugin.getPlayerSlots().slotOf(player.getUniqueId());
+        long tick = plugin.getPlatformScheduler().getCurrentTick();
+        AtomicLongArray ticks = lastCheckedTick;
+        if (slot >= ticks.length()) {
+            ticks = growTo(slot);
+        }
+        long last = ticks.get(slot);
+        return last != tick && ticks.compareAndSet(slot, last, tick);
+    }
+    
+    private synchronized AtomicLongArray growTo(int slot) {
+        AtomicLongArray current = lastCheckedTick;
+        if (slot < current.length()) {
+            return current;
+        }
+        // 只在在线人数创新高时扩容；扩容期间写入旧数组的记录丢失最多导致一次重复检查
+        AtomicLongArray grown = new AtomicLongArray(Math.max(slot + 1, current.length() * 2));
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        lastCheckedTick = grown;
+        return grown;
+    }
+    
+    /**
+     * 清洗数据包内的属性快照并就地写回，只读取数据包载荷
+     * 同一个数据包对象会发送给所有追踪该实体的玩家，清洗结果与接收者无关，重复执行不会再改变载荷
+     */
+    private void sanitizePayload(PacketEvent event, Player player) {
+        PacketContainer packet = event.getPacket();
+        List<WrappedAttribute> attributes;
+        try {
+            attributes = packet.getAttributeCollectionModifier().read(0);
+        } catch (Exception e) {
+            return;
+        }
+        AttributePayloadSanitizer.Result result = AttributePayloadSanitizer.sanitize(attributes, plugin.getSettings());
+        if (result == null) {
+            return;
+        }
+        List<WrappedAttribute> sanitized = result.getAttributes();
+        
+        int entityId = packet.getIntegers().read(0);
+        boolean self = entityId == player.getEntityId();
+        stats.recordSanitized();
+        if (sanitized.isEmpty()) {
+            // 所有条目都已丢弃，空属性包没有意义
+            event.setCancelled(true);
+        } else {
+            packet.getAttributeCollectionModifier().write(0, sanitized);
+        }
+        logWarn("已清洗属性包中的异常数值: 接收者=" + player.getName() + " 实体ID=" + entityId
+            + (self ? " (自身)" : "") + " 问题=" + String.join("; ", result.getFindings())
+            + (sanitized.isEmpty() ? " (整包已取消)" : ""));
+        if (self) {
+            // 载荷来自玩家自身的属性表，回到拥有该玩家的线程修复源数据
+            pendingChecks.add(player.getUniqueId());
+        }
+    }
+    
+    /**
+     * 记录发送频率，并去掉本 tick 内已向该玩家发送过、且内容完全相同的属性条目
+     * 只去掉完全相同的条目，客户端最终看到的属性值与不合并时一致；整个数据包都是重复内容时只取消该接收者的事件
+     * 这里只比较不记录，发出的条目由 {@link #recordSent} 在其他监听器处理完之后记录
+     */
+    private void coalesce(PacketEvent event, Player player) {
+        PacketContainer packet = event.getPacket();
+        int entityId;
+        List<WrappedAttribute> attributes;
+        try {
+            entityId = packet.getIntegers().read(0);
+            attributes = packet.getAttributeCollectionModifier().read(0);
+        } catch (Exception e) {
+            return;
+        }
+        UUID uuid = player.getUniqueId();
+        stats.record(uuid, player.getName(), entityId, entityId == player.getEntityId());
+        if (attributes == null || attributes.isEmpty() || !plugin.getSettings().isPacketCoalescing()) {
+            return;
+        }
+        
+        SentAttributeLedger sent = sentThisTick.get(uuid);
+        if (sent == null) {
+            return;
+        }
+        long tick = plugin.getPlatformScheduler().getCurrentTick();
+        List<WrappedAttribute> remaining = null;
+        synchronized (sent) {
+            if (!sent.hasSent(tick, entityId)) {
+                return;
+            }
+            for (int i = 0; i < attributes.size(); i++) {
+                WrappedAttribute attribute = attributes.get(i);
+                boolean duplicate = sent.isDuplicate(tick, entityId, attribute.getAttributeKey(),
+                        attribute.getBaseValue(), attribute.getModifiers());
+                if (duplicate && remaining == null) {
+                    remaining = new ArrayList<>(attributes.subList(0, i));
+                } else if (!duplicate && remaining != null) {
+                    remaining.add(attribute);
+                }
+            }
+        }
+        if (remaining == null) {
+            return;
+        }
+        int dropped = attributes.size() - remaining.size();
+        if (remaining.isEmpty()) {
+            event.setCancelled(true);
+        } else {
+            // 数据包对象由所有接收者共享，只改写该接收者的副本
+            PacketContainer copy = packet.shallowClone();
+            copy.getAttributeCollectionModifier().write(0, remaining);
+            event.setPacket(copy);
+        }
+        stats.recordCoalesced(dropped, remaining.isEmpty());
+    }
+    
+    /**
+     * 记录最终发给该玩家的属性条目（MONITOR 优先级，其他插件已处理完毕且未取消）
+     * 与 {@link #coalesce} 之间的竞争最多导致一次漏合并，不会丢弃未发出的条目
+     */
+    private void recordSent(PacketContainer packet, Player player) {
+        if (!plugin.getSettings().isPacketCoalescing()) {
+            return;
+        }
+        int entityId;
+        List<WrappedAttribute> attributes;
+        try {
+            entityId = packet.getIntegers().read(0);
+            attributes = packet.getAttributeCollectionModifier().read(0);
+        } catch (Exception e) {
+            return;
+        }
+        if (attributes == null || attributes.isEmpty()) {
+            return;
+        }
+        long tick = plugin.getPlatformScheduler().getCurrentTick();
+        SentAttributeLedger sent = sentThisTick.computeIfAbsent(player.getUniqueId(), k -> new SentAttributeLedger());
+        synchronized (sent) {
+            for (int i = 0; i < attributes.size(); i++) {
+                WrappedAttribute attribute = attributes.get(i);
+                sent.record(tick, entityId, attribute.getAttributeKey(), attribute.getBaseValue(), attribute.getModifiers());
+            }
+        }
+    }
+    
+    /**
+     * 数据包线程上的 O(1) 集合探测；读取结果可能与主线程的修改竞争，正常的属性变动也会让探测结果不一致，
+     * 因此这里只作为触发条件，回到拥有该玩家的线程复核，确认后才记录日志并重建
+     */
+    private void probeDirtySets(Player player) {
+        FastutilSetProbe setProbe = plugin.getFastutilSetProbe();
+        if (setProbe.probe(player) <= 0) {
+            return;
+        }
+        plugin.getPlatformScheduler().runForEntity(player, () -> {
+            int confirmed = setProbe.probe(player);
+            if (confirmed <= 0) {
+                return; // 数据包线程读到的是修改中的中间状态
+            }
+            int repaired = setProbe.repair(player);
+            if (repaired > 0) {
+                logWarn("属性包检查发现并重建了结构不一致的属性集合: 玩家=" + player.getName()
+                    + " 集合=" + setProbe.describe(confirmed) + " 数量=" + repaired);
+                plugin.getFingerprintCache().invalidate(player.getUniqueId());
+            }
+        });
+    }
+    
+    /**
+     * 每 tick 汇总处理数据包载荷异常的玩家（Paper 主线程 / Folia 全局区域线程）
+     */
+    private void drainPendingChecks() {
+        if (++drainRuns % PRUNE_INTERVAL_TICKS == 0) {
+            stats.prune();
+            sentThisTick.keySet().removeIf(uuid -> Bukkit.getPlayer(uuid) == null);
+        }
+        if (pendingChecks.isEmpty()) {
+            return;
+        }
+        PlatformScheduler scheduler = plugin.getPlatformScheduler();
+        Iterator<UUID> iterator = pendingChecks.iterator();
+        while (iterator.hasNext()) {
+            UUID uuid = iterator.next();
+            iterator.remove();
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null || !player.isOnline()) {
+                continue;
+            }
+            scheduler.runForEntityFromGlobal(player, () -> checkModifiersOnOwner(player));
+        }
+    }
+    
+    private void checkModifiersOnOwner(Player player) {
+        if (!player.isOnline()) {
+            return;
+        }
+        PluginMetrics metrics = plugin.getMetrics();
+        long start = metrics.start();
+        boolean repaired;
+        try {
+            repaired = checkAndRepairPlayerAttributes(player);
+        } finally {
+            metrics.stop(PluginMetrics.Timer.PACKET_CHECK, start);
+        }
+        if (repaired) {
+            // 修复后的属性会随下一次属性包同步给客户端
+            logWarn("属性包检查发现损坏数据，已修复玩家属性: " + player.getName());
+        }
+        // 数值越界、坐标异常由常规检查按配置处理
+        plugin.getPlayerMonitor().checkSinglePlayer(player, false);
+    }
+    
     private boolean checkAndRepairPlayerAttributes(Player player) {
         boolean hasCorruption = false;
         
-        for (Attribute attr : Attribute.values()) {
+        ModifierFingerprintCache fingerprints = plugin.getFingerprintCache();
+        UUID uuid = player.getUniqueId();
+        Attribute[] attributes = Attribute.values();
+        // 只访问玩家实际拥有的属性
+        for (int i : plugin.getAttributeIndex().get(player)) {
+            Attribute attr = attributes[i];
             try {
                 AttributeInstance attrInstance = player.getAttribute(attr);
                 if (attrInstance == null) continue;
                 
                 try {
-                    Collection<AttributeModifier> modifiers = attrInstance.getModifiers();
-                    if (modifiers != null) {
-                        for (AttributeModifier modifier : modifiers) {
-                            if (modifier == null) continue;
-                            try {
-                                modifier.getAmount();
-                                modifier.getName();
-                                modifier.getOperation();
-                            } catch (NullPointerException npe) {
-                                throw npe;
-                            }
-                        }
-                    }
+                    // 指纹未变化的属性跳过修饰符遍历
+                    fingerprints.verify(uuid, i, attrInstance);
                 } catch (NullPointerException npe) {
                     logWarn("属性包检查发现损坏的修饰符集合: 玩家=" + player.getName() + " 属性=" + attr.name());
                     hasCorruption = true;
+                    fingerprints.invalidate(uuid, i);
                     repairAttributeDeep(attrInstance, attr, player);
                 }
             } catch (Exception attrEx) {
@@ -136,45 +502,16 @@ public class AttributePacketInterceptor {
             // 忽略
         }
         
-        try {
-            Object craftAttrInstance = attrInstance;
-            Field handleField = craftAttrInstance.getClass().getDeclaredField("handle");
-            handleField.setAccessible(true);
-            Object nmsAttributeInstance = handleField.get(craftAttrInstance);
-            
-            if (nmsAttributeInstance != null) {
-                Field modifiersField = null;
-                Class<?> clazz = nmsAttributeInstance.getClass();
-                while (clazz != null && modifiersField == null) {
-                    try {
-                        modifiersField = clazz.getDeclaredField("modifiers");
-                    } catch (NoSuchFieldException e) {
-                        clazz = clazz.getSuperclass();
-                    }
-                }
-                
-                if (modifiersField != null) {
-                    modifiersField.setAccessible(true);
-                    Object modifiersObj = modifiersField.get(nmsAttributeInstance);
-                    
-                    if (modifiersObj != null) {
-                        try {
-                            Method clearMethod = modifiersObj.getClass().getMethod("clear");
-                            clearMethod.invoke(modifiersObj);
-                            logWarn("已通过反射清空损坏的修饰符集合: 玩家=" + player.getName() + " 属性=" + attr.name());
-                        } catch (Exception clearEx) {
-                            modifiersField.set(nmsAttributeInstance, null);
-                            logWarn("已通过反射置空损坏的修饰符集合: 玩家=" + player.getName() + " 属性=" + attr.name());
-                        }
-                    }
-                }
-            }
-        } catch (Exception reflectEx) {
-            // 反射失败时静默处理
+        int cleared = plugin.getNmsAttributeAccessor().clearModifiers(attrInstance);
+        if (cleared > 0) {
+            logWarn("已通过反射清空损坏的修饰符集合: 玩家=" + player.getName() + " 属性=" + attr.name() + " 集合数=" + cleared);
         }
     }
     
     private void logWarn(String message) {
+        if (!plugin.getLogDeduplicator().admit("WARN", message)) {
+            return;
+        }
         plugin.getLogger().warning(message);
         plugin.getLogManager().log("WARN", message);
     }
@@ -0,0 +1,227 @@
+package com.anticrash;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 属性更新包发送频率统计
+ * 按接收玩家与属性所属实体分别计数，记录最近一秒的发送量与峰值，供 /anticrash packets 找出刷包来源
+ * 计数在数据包线程上更新，每次只锁住对应的单个计数器
+ */
+public class AttributePacketStats {
+
+    // 超过该时间未再收到数据包的计数器在清理时移除
+    private static final long IDLE_MILLIS = 60_000L;
+
+    private final Map<UUID, Counter> receivers = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> entities = new ConcurrentHashMap<>();
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder coalescedPackets = new LongAdder();
+    private final LongAdder coalescedEntries = new LongAdder();
+    private final LongAdder sanitizedPackets = new LongAdder();
+    private volatile long since = System.currentTimeMillis();
+
+    /**
+     * 记录一个属性包
+     *
+     * @param selfPacket 属性属于接收者自身
+     */
+    public void record(UUID receiver, String receiverName, int entityId, boolean selfPacket) {
+        long now = System.currentTimeMillis();
+        packets.increment();
+        // 每个属性包都会调用，先 get 再 computeIfAbsent，计数器已存在时不创建捕获 lambda
+        Counter counter = receivers.get(receiver);
+        if (counter == null) {
+            counter = receivers.computeIfAbsent(receiver, k -> new Counter(receiverName));
+        }
+        counter.hit(now);
+        Integer entityKey = entityId; // 两次查找共用一次装箱
+        Counter entity = entities.get(entityKey);
+        if (entity == null) {
+            entity = entities.computeIfAbsent(entityKey, k -> new Counter("实体#" + k));
+        }
+        // 只在实体首次归属该玩家或玩家名变化时重建标签
+        if (selfPacket && !receiverName.equals(entity.owner)) {
+            entity.owner = receiverName;
+            entity.label = receiverName + " (实体#" + entityId + ")";
+        }
+        entity.hit(now);
+    }
+
+    /**
+     * 记录合并掉的属性条目
+     *
+     * @param wholePacket 整个数据包都是重复内容，已取消
+     */
+    public void recordCoalesced(int entries, boolean wholePacket) {
+        coalescedEntries.add(entries);
+        if (wholePacket) {
+            coalescedPackets.increment();
+        }
+    }
+
+    public void recordSanitized() {
+        sanitizedPackets.increment();
+    }
+
+    /**
+     * 按最近一秒发送量排序的接收玩家
+     */
+    public List<Snapshot> getTopReceivers(int limit) {
+        return top(receivers, limit);
+    }
+
+    /**
+     * 按最近一秒发送量排序的实体
+     */
+    public List<Snapshot> getTopEntities(int limit) {
+        return top(entities, limit);
+    }
+
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    public long getCoalescedPackets() {
+        return coalescedPackets.sum();
+    }
+
+    public long getCoalescedEntries() {
+        return coalescedEntries.sum();
+    }
+
+    public long getSanitizedPackets() {
+        return sanitizedPackets.sum();
+    }
+
+    /**
+     * 统计开始时间（毫秒）
+     */
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * 移除长时间没有数据包的计数器（已下线的玩家、已消失的实体）
+     */
+    public void prune() {
+        long cutoff = System.currentTimeMillis() - IDLE_MILLIS;
+        receivers.values().removeIf(counter -> counter.lastSeen < cutoff);
+        entities.values().removeIf(counter -> counter.lastSeen < cutoff);
+    }
+
+    public void reset() {
+        receivers.clear();
+        entities.clear();
+        packets.reset();
+        coalescedPackets.reset();
+        coalescedEntries.reset();
+        sanitizedPackets.reset();
+        since = System.currentTimeMillis();
+    }
+
+    private static List<Snapshot> top(Map<?, Counter> counters, int limit) {
+        long now = System.currentTimeMillis();
+        // 先取快照再排序，避免排序过程中计数变化
+        List<Snapshot> result = new ArrayList<>(counters.size());
+        for (Counter counter : counters.values()) {
+            result.add(new Snapshot(counter.label, counter.getRate(now), counter.peakRate, counter.total.sum()));
+        }
+        result.sort(Comparator.comparingInt(Snapshot::getRate)
+                .thenComparingInt(Snapshot::getPeakRate)
+                .thenComparingLong(Snapshot::getTotal)
+                .reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * 单个玩家或实体的发送计数
+     */
+    private static final class Counter {
+        private volatile String label;
+        // 实体属于某名玩家时的玩家名，用于判断标签是否需要更新
+        private volatile String owner;
+        private final LongAdder total = new LongAdder();
+        private long windowSecond;
+        private int windowCount;
+        private int lastRate;
+        private volatile int peakRate;
+        private volatile long lastSeen;
+
+        private Counter(String label) {
+            this.label = label;
+        }
+
+        private void hit(long now) {
+            total.increment();
+            lastSeen = now;
+            long second = now / 1000L;
+            synchronized (this) {
+                if (second != windowSecond) {
+                    // 上一个窗口若不是紧邻的前一秒，说明中间有空档，最近一秒发送量为 0
+                    lastRate = second == windowSecond + 1 ? windowCount : 0;
+                    windowSecond = second;
+                    windowCount = 0;
+                }
+                if (++windowCount > peakRate) {
+                    peakRate = windowCount;
+                }
+            }
+        }
+
+        /**
+         * 最近一个完整秒内的发送量
+         */
+        private synchronized int getRate(long now) {
+            long second = now / 1000L;
+            if (second == windowSecond + 1) {
+                return windowCount;
+            }
+            return second == windowSecond ? lastRate : 0;
+        }
+    }
+
+    /**
+     * 计数器的只读快照
+     */
+    public static final class Snapshot {
+        private final String label;
+        private final int rate;
+        private final int peakRate;
+        private final long total;
+
+        private Snapshot(String label, int rate, int peakRate, long total) {
+            this.label = label;
+            this.rate = rate;
+            this.peakRate = peakRate;
+            this.total = total;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * 最近一个完整秒内的发送量
+         */
+        public int getRate() {
+            return rate;
+        }
+
+        /**
+         * 统计期间单秒发送量的峰值
+         */
+        public int getPeakRate() {
+            return peakRate;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.anticrash;
+
+import com.comphenix.protocol.wrappers.WrappedAttribute;
+import com.comphenix.protocol.wrappers.WrappedAttributeModifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 属性更新包载荷清洗
+ * 只读取数据包内的属性快照（基础值与修饰符数值），不访问玩家当前的属性表：
+ * - 修饰符数值为 NaN/Infinity：只丢弃该修饰符
+ * - 基础值为 NaN/Infinity：丢弃该属性条目，客户端保留上一次同步的值
+ * - 移动速度/最大生命值/攻击伤害的最终值超出配置范围：改写为基础值 = 限制后的最终值、无修饰符
+ * 正常数据包不产生任何分配：先只读检查每个条目，发现问题时才创建结果、复制列表并记录问题描述
+ */
+public final class AttributePayloadSanitizer {
+
+    private AttributePayloadSanitizer() {
+    }
+
+    /**
+     * 清洗结果：清洗后的属性列表与发现的问题描述
+     */
+    public static final class Result {
+        private final List<WrappedAttribute> attributes;
+        private final List<String> findings = new ArrayList<>(2);
+
+        private Result(int capacity) {
+            this.attributes = new ArrayList<>(capacity);
+        }
+
+        /**
+         * 清洗后的新列表，可能为空（所有条目都被丢弃）
+         */
+        public List<WrappedAttribute> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * 发现的问题描述，调用方用于日志
+         */
+        public List<String> getFindings() {
+            return findings;
+        }
+    }
+
+    /**
+     * 清洗属性快照列表
+     *
+     * @return 清洗结果；载荷完全正常时返回 null
+     */
+    public static Result sanitize(List<WrappedAttribute> attributes, MonitorSettings settings) {
+        if (attributes == null) {
+            return null;
+        }
+        Result result = null;
+        for (int i = 0; i < attributes.size(); i++) {
+            WrappedAttribute attribute = attributes.get(i);
+            if (result == null) {
+                if (isClean(attribute, settings)) {
+                    continue;
+                }
+                // 首次发现问题时复制之前的正常条目
+                result = new Result(attributes.size());
+                for (int j = 0; j < i; j++) {
+                    result.attributes.add(attributes.get(j));
+                }
+            }
+            WrappedAttribute cleaned = sanitize(attribute, settings, result.findings);
+            if (cleaned != null) {
+                result.attributes.add(cleaned);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只读检查条目是否正常，判定条件与 {@link #sanitize(WrappedAttribute, MonitorSettings, List)} 一致
+     */
+    private static boolean isClean(WrappedAttribute attribute, MonitorSettings settings) {
+        if (attribute == null) {
+            return true; // 与清洗时一致：空条目本身不算问题，只在列表被复制时顺带去掉
+        }
+        if (!Double.isFinite(attribute.getBaseValue())) {
+            return false;
+        }
+        Set<WrappedAttributeModifier> modifiers = attribute.getModifiers();
+        if (modifiers != null) {
+            for (WrappedAttributeModifier modifier : modifiers) {
+                if (isBroken(modifier)) {
+                    return false;
+                }
+            }
+        }
+        String key = attribute.getAttributeKey();
+        if (key == null) {
+            return true;
+        } else if (key.endsWith("movement_speed")) {
+            return inRange(attribute.getFinalValue(), settings.getSpeedMin(), settings.getSpeedMax());
+        } else if (key.endsWith("max_health")) {
+            return inRange(attribute.getFinalValue(), settings.getHealthMin(), settings.getHealthMax());
+        } else if (key.endsWith("attack_damage")) {
+            return inRange(attribute.getFinalValue(), settings.getDamageMin(), settings.getDamageMax());
+        }
+        return true;
+    }
+
+    private static boolean inRange(double value, double min, double max) {
+        return Double.isFinite(value) && value >= min && value <= max;
+    }
+
+    /**
+     * @return 原对象表示正常；null 表示丢弃该条目；其他为改写后的条目
+     */
+    private static WrappedAttribute sanitize(WrappedAttribute attribute, MonitorSettings settings, List<String> findings) {
+        if (attribute == null) {
+            return null;
+        }
+        String key = attribute.getAttributeKey();
+        double base = attribute.getBaseValue();
+        if (!Double.isFinite(base)) {
+            findings.add("属性=" + key + " 基础值=" + base + " (已丢弃条目)");
+            return null;
+        }
+
+        Set<WrappedAttributeModifier> modifiers = attribute.getModifiers();
+        boolean brokenModifier = false;
+        if (modifiers != null) {
+            for (WrappedAttributeModifier modifier : modifiers) {
+                if (isBroken(modifier)) {
+                    brokenModifier = true;
+                    break;
+                }
+            }
+        }
+        WrappedAttribute current = attribute;
+        if (brokenModifier) {
+            List<WrappedAttributeModifier> kept = new ArrayList<>(modifiers.size());
+            for (WrappedAttributeModifier modifier : modifiers) {
+                if (isBroken(modifier)) {
+                    findings.add("属性=" + key + " 修饰符=" + (modifier == null ? "null" : modifier.getName() + " Amount=" + modifier.getAmount()) + " (已丢弃修饰符)");
+                } else {
+                    kept.add(modifier);
+                }
+            }
+            current = WrappedAttribute.newBuilder(attribute).modifiers(kept).build();
+        }
+
+        double min;
+        double max;
+        if (key == null) {
+            return current;
+        } else if (key.endsWith("movement_speed")) {
+            min = settings.getSpeedMin();
+            max = settings.getSpeedMax();
+        } else if (key.endsWith("max_health")) {
+            min = settings.getHealthMin();
+            max = settings.getHealthMax();
+        } else if (key.endsWith("attack_damage")) {
+            min = settings.getDamageMin();
+            max = settings.getDamageMax();
+        } else {
+            return current;
+        }
+        double value = current.getFinalValue();
+        if (inRange(value, min, max)) {
+            return current;
+        }
+        double clamped = Double.isFinite(value) ? Math.max(min, Math.min(max, value)) : Math.max(min, Math.min(max, base));
+        findings.add("属性=" + key + " 最终值=" + value + " 范围=[" + min + "," + max + "] (已限制为 " + clamped + ")");
+        return WrappedAttribute.newBuilder(current).baseValue(clamped).modifiers(new ArrayList<>()).build();
+    }
+
+    private static boolean isBroken(WrappedAttributeModifier modifier) {
+        return modifier == null || !Double.isFinite(modifier.getAmount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.anticrash;
+
+import org.bukkit.attribute.Attribute;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 玩家属性存在索引
+ * 注册表中的很多属性玩家根本不具备（如坐骑、生物专用属性），逐个调用 getAttribute 探测既浪费又需要吞掉异常。
+ * 该索引在玩家加入时探测一次，记录玩家实际拥有的属性序号，所有扫描器共用，只访问真实存在的属性实例；
+ * 重生或切换世界时失效，下次访问时重新探测
+ * 索引只保存序号而不保存 AttributeInstance 本身，实例仍在每次扫描时获取，避免持有重生前的旧实体数据
+ */
+public class AttributePresenceIndex implements Listener {
+
+    private static final Attribute[] ATTRIBUTES = Attribute.values();
+
+    private final Map<UUID, int[]> presentIndices = new ConcurrentHashMap<>();
+
+    /**
+     * 获取玩家实际拥有的属性序号（按 Attribute 序号升序），未建立索引时立即探测
+     * 必须在拥有该玩家的线程上调用
+     */
+    public int[] get(Player player) {
+        UUID uuid = player.getUniqueId();
+        int[] indices = presentIndices.get(uuid);
+        if (indices == null) {
+            indices = probe(player);
+            if (player.isOnline()) {
+                presentIndices.put(uuid, indices);
+            }
+        }
+        return indices;
+    }
+
+    public void invalidate(UUID uuid) {
+        presentIndices.remove(uuid);
+    }
+
+    public void clear() {
+        presentIndices.clear();
+    }
+
+    /**
+     * 已建立索引的玩家数（用于状态展示）
+     */
+    public int size() {
+        return presentIndices.size();
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        presentIndices.put(player.getUniqueId(), probe(player));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // MONITOR 优先级：退出时的属性预检查 (LOWEST) 仍可使用索引
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    private static int[] probe(Player player) {
+        int[] indices = new int[ATTRIBUTES.length];
+        int count = 0;
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            try {
+                if (player.getAttribute(ATTRIBUTES[i]) != null) {
+                    indices[count++] = i;
+                }
+            } catch (IllegalArgumentException e) {
+                // 该版本不支持此属性，视为不存在
+            } catch (RuntimeException e) {
+                // 其他异常（如内部数据损坏）保留该属性，交给扫描器诊断与修复
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+}
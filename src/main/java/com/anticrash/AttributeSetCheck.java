@@ -0,0 +1,51 @@
+package com.anticrash;
+
+import org.bukkit.entity.Player;
+
+/**
+ * 脏属性集合结构检查：通过 {@link FastutilSetProbe} 直接校验 AttributeMap 内部集合的不变量，
+ * 在 refreshDirtyAttributes 遍历到损坏集合之前发现问题，不依赖遍历抛出 NPE
+ */
+public class AttributeSetCheck implements PlayerCheck {
+
+    private static final String EXTRA_KEY = "anticrash:attribute-sets";
+
+    private final FastutilSetProbe probe;
+
+    public AttributeSetCheck(FastutilSetProbe probe) {
+        this.probe = probe;
+    }
+
+    @Override
+    public String getId() {
+        return "attribute-sets";
+    }
+
+    @Override
+    public int getSubsystems() {
+        return DirtyTracker.ATTRIBUTES;
+    }
+
+    @Override
+    public boolean isEnabled(MonitorSettings settings) {
+        return settings.isCheckAttributes() && probe.isAvailable();
+    }
+
+    @Override
+    public void capture(Player player, PlayerSnapshot snapshot) {
+        int corrupted = probe.probe(player);
+        if (corrupted > 0) {
+            // 只在发现问题时写入，正常玩家不产生额外分配
+            snapshot.putExtra(EXTRA_KEY, corrupted);
+        }
+    }
+
+    @Override
+    public void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        Object corrupted = snapshot.getExtra(EXTRA_KEY);
+        if (corrupted instanceof Integer) {
+            diagnosis.report(IssueType.ATTRIBUTES, false,
+                    "检测到属性集合内部结构不一致 (fastutil): 玩家=" + snapshot.getName() + " 集合=" + probe.describe((Integer) corrupted));
+        }
+    }
+}
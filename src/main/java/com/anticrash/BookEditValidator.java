@@ -0,0 +1,94 @@
+package com.anticrash;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import org.bukkit.entity.Player;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 书本编辑包检查（入站）
+ * 页数、单页长度、标题长度超过原版上限，或所有页面的 UTF-8 总字节数超过 max-book-bytes 时在网络线程丢弃，
+ * 超大书本不会写入物品组件、也不会随物品同步给其他玩家。每检查一页消耗 1 点预算
+ */
+public class BookEditValidator implements PacketValidator {
+
+    // 原版书本限制
+    private static final int MAX_PAGES = 100;
+    private static final int MAX_PAGE_LENGTH = 1024;
+    private static final int MAX_TITLE_LENGTH = 32;
+
+    @Override
+    public String getId() {
+        return "book-edit";
+    }
+
+    @Override
+    public Set<PacketType> getPacketTypes() {
+        return Collections.singleton(PacketType.Play.Client.B_EDIT);
+    }
+
+    @Override
+    public int getDefaultBudget() {
+        return MAX_PAGES;
+    }
+
+    @Override
+    public Result validate(PacketContainer packet, Player player, ValidationContext context) {
+        Optional<?> title = packet.getSpecificModifier(Optional.class).read(0);
+        if (title != null && title.isPresent() && String.valueOf(title.get()).length() > MAX_TITLE_LENGTH) {
+            context.report("标题长度=" + String.valueOf(title.get()).length());
+            return Result.CANCELLED;
+        }
+        List<?> pages = packet.getSpecificModifier(List.class).read(0);
+        if (pages == null) {
+            return Result.PASS;
+        }
+        if (pages.size() > MAX_PAGES) {
+            context.report("页数=" + pages.size());
+            return Result.CANCELLED;
+        }
+        int maxBytes = context.getSettings().getMaxBookBytes();
+        long totalBytes = 0;
+        for (Object page : pages) {
+            if (!context.spend(1)) {
+                break;
+            }
+            String text = String.valueOf(page);
+            if (text.length() > MAX_PAGE_LENGTH) {
+                context.report("单页长度=" + text.length());
+                return Result.CANCELLED;
+            }
+            totalBytes += utf8Length(text);
+            if (totalBytes > maxBytes) {
+                context.report("总字节数超过 " + maxBytes + " (页数=" + pages.size() + ")");
+                return Result.CANCELLED;
+            }
+        }
+        return Result.PASS;
+    }
+
+    /**
+     * 不分配数组计算 UTF-8 编码长度
+     */
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,92 @@
+package com.anticrash;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Paper / Spigot 调度实现
+ * 所有同步任务都在服务器主线程执行
+ */
+public class BukkitPlatformScheduler implements PlatformScheduler {
+
+    private final Plugin plugin;
+
+    public BukkitPlatformScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isFolia() {
+        return false;
+    }
+
+    @Override
+    public long getCurrentTick() {
+        return Bukkit.getCurrentTick();
+    }
+
+    @Override
+    public TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        BukkitTask bukkitTask = Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+        return new TaskHandle() {
+            @Override
+            public void cancel() {
+                bukkitTask.cancel();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return bukkitTask.isCancelled();
+            }
+        };
+    }
+
+    @Override
+    public void runGlobalLater(Runnable task, long delayTicks) {
+        Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        Bukkit.getScheduler().runTask(plugin, () -> runIfPresent(entity, task));
+    }
+
+    @Override
+    public void runForEntityLater(Entity entity, Runnable task, long delayTicks) {
+        Bukkit.getScheduler().runTaskLater(plugin, () -> runIfPresent(entity, task), delayTicks);
+    }
+
+    /**
+     * 与 Folia 实体调度器一致：执行时实体已被移除则丢弃任务
+     */
+    private static void runIfPresent(Entity entity, Runnable task) {
+        if (!isRetired(entity)) {
+            task.run();
+        }
+    }
+
+    /**
+     * 实体是否已从世界移除
+     * 玩家以是否在线判断（死亡等待重生的玩家仍属于该实体，任务照常执行），其他实体以 isValid 判断
+     */
+    static boolean isRetired(Entity entity) {
+        if (entity instanceof Player) {
+            return !((Player) entity).isOnline();
+        }
+        return !entity.isValid();
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+    }
+
+    @Override
+    public void teleport(Entity entity, Location target) {
+        entity.teleport(target);
+    }
+}
@@ -0,0 +1,216 @@
+package com.anticrash;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * 检查项注册表与执行引擎
+ * 每个检查项单独统计纳秒耗时与命中率，并定期按 "平均耗时 / 命中率" 重新排序：
+ * 廉价且更容易发现问题的检查优先执行，发现严重异常后立即停止剩余检查（已确定需要传送修复）
+ * 执行可能发生在多个后台判定线程，统计使用 LongAdder，执行顺序数组整体替换
+ */
+public class CheckRegistry implements Listener {
+
+    // 每执行多少次诊断重新排序一次
+    private static final long REORDER_INTERVAL = 1024L;
+
+    private final AntiCrashPlugin plugin;
+    private final List<Registration> registrations = new ArrayList<>();
+    private volatile Registration[] ordered = new Registration[0];
+    private final AtomicLong runs = new AtomicLong();
+
+    /**
+     * 已注册的检查项及其统计数据
+     */
+    public static final class Registration {
+        private final Plugin owner;
+        private final PlayerCheck check;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder costNanos = new LongAdder();
+        private double rank;
+
+        private Registration(Plugin owner, PlayerCheck check) {
+            this.owner = owner;
+            this.check = check;
+        }
+
+        public String getId() {
+            return check.getId();
+        }
+
+        public Plugin getOwner() {
+            return owner;
+        }
+
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public double getHitRate() {
+            long count = invocations.sum();
+            return count == 0 ? 0.0 : (double) hits.sum() / count;
+        }
+
+        public long getAverageCostNanos() {
+            long count = invocations.sum();
+            return count == 0 ? 0L : costNanos.sum() / count;
+        }
+
+        /**
+         * 排序依据：平均耗时 / 命中率，命中率加入平滑避免未命中的检查被无限后置
+         */
+        private double computeRank() {
+            long count = invocations.sum();
+            double hitRate = (hits.sum() + 1.0) / (count + 2.0);
+            return getAverageCostNanos() / hitRate;
+        }
+    }
+
+    public CheckRegistry(AntiCrashPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 注册检查项，插件卸载时自动注销
+     * @throws IllegalArgumentException 检查项 ID 已被注册
+     */
+    public synchronized void register(Plugin owner, PlayerCheck check) {
+        for (Registration registration : registrations) {
+            if (registration.getId().equalsIgnoreCase(check.getId())) {
+                throw new IllegalArgumentException("检查项 ID 已被注册: " + check.getId());
+            }
+        }
+        registrations.add(new Registration(owner, check));
+        reorder();
+        if (owner != plugin) {
+            plugin.getLogger().info("已注册第三方检查项: " + check.getId() + " (来自 " + owner.getName() + ")");
+        }
+    }
+
+    public synchronized boolean unregister(String id) {
+        boolean removed = registrations.removeIf(registration -> registration.getId().equalsIgnoreCase(id));
+        if (removed) {
+            reorder();
+        }
+        return removed;
+    }
+
+    public synchronized void unregisterAll(Plugin owner) {
+        if (registrations.removeIf(registration -> registration.owner == owner)) {
+            reorder();
+        }
+    }
+
+    /**
+     * 当前执行顺序下的检查项列表（用于展示）
+     */
+    public List<Registration> getRegistrations() {
+        return Arrays.asList(ordered.clone());
+    }
+
+    /**
+     * 在拥有该玩家的线程上调用检查项的额外采集逻辑
+     */
+    public void capture(Player player, PlayerSnapshot snapshot, MonitorSettings settings) {
+        for (Registration registration : ordered) {
+            if (!shouldRun(registration.check, snapshot, settings)) {
+                continue;
+            }
+            try {
+                registration.check.capture(player, snapshot);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "检查项采集数据异常: 检查项=" + registration.getId() + " 玩家=" + player.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 按当前顺序执行所有适用的检查项
+     * 只读取快照与配置快照，可在任意线程调用
+     */
+    public void run(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        for (Registration registration : ordered) {
+            PlayerCheck check = registration.check;
+            if (!shouldRun(check, snapshot, settings)) {
+                continue;
+            }
+            int reportsBefore = diagnosis.getReportCount();
+            long start = System.nanoTime();
+            try {
+                check.check(snapshot, settings, diagnosis);
+            } catch (Exception e) {
+                diagnosis.fail(check.getId(), e);
+            }
+            registration.costNanos.add(System.nanoTime() - start);
+            registration.invocations.increment();
+            if (diagnosis.getReportCount() > reportsBefore) {
+                registration.hits.increment();
+            }
+            if (diagnosis.isSevere()) {
+                break; // 严重异常已确定需要传送修复，剩余检查留待下次扫描
+            }
+        }
+        if (runs.incrementAndGet() % REORDER_INTERVAL == 0) {
+            synchronized (this) {
+                reorder();
+            }
+        }
+    }
+
+    /**
+     * 清空所有统计数据，执行顺序恢复为注册顺序
+     */
+    public synchronized void resetStats() {
+        for (Registration registration : registrations) {
+            registration.invocations.reset();
+            registration.hits.reset();
+            registration.costNanos.reset();
+        }
+        reorder();
+    }
+
+    @EventHandler
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() != plugin) {
+            unregisterAll(event.getPlugin());
+        }
+    }
+
+    private boolean shouldRun(PlayerCheck check, PlayerSnapshot snapshot, MonitorSettings settings) {
+        int required = check.getSubsystems();
+        if (required != 0 && (required & snapshot.getSubsystems()) == 0) {
+            return false;
+        }
+        // 已死亡玩家只执行声明了 appliesToDead 的检查，避免误判
+        if ((snapshot.isDead() || snapshot.getHealth() <= 0.0) && !check.appliesToDead()) {
+            return false;
+        }
+        return check.isEnabled(settings);
+    }
+
+    private void reorder() {
+        Registration[] next = registrations.toArray(new Registration[0]);
+        for (Registration registration : next) {
+            registration.rank = registration.computeRank();
+        }
+        // 排序稳定，统计数据为空时保持注册顺序
+        Arrays.sort(next, Comparator.comparingDouble(registration -> registration.rank));
+        ordered = next;
+    }
+}
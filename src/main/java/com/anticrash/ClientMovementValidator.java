@@ -0,0 +1,73 @@
+package com.anticrash;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.reflect.StructureModifier;
+import org.bukkit.entity.Player;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 客户端移动包检查（入站）
+ * 玩家移动/转头包与载具移动包的坐标或角度为 NaN/Infinity、坐标超出范围时在网络线程直接丢弃，
+ * 异常数值不会进入服务端状态，也就不需要事后由坐标检查发现并传送修复。
+ * 水平坐标上限为 repair.thresholds.coordinate-max，垂直坐标上限与原版一致；固定消耗 1 点预算
+ */
+public class ClientMovementValidator implements PacketValidator {
+
+    // 原版 ServerGamePacketListenerImpl 对垂直坐标的限制
+    private static final double Y_MAX = 2.0E7;
+
+    private static final Set<PacketType> TYPES = new HashSet<>(List.of(
+            PacketType.Play.Client.POSITION,
+            PacketType.Play.Client.POSITION_LOOK,
+            PacketType.Play.Client.LOOK,
+            PacketType.Play.Client.VEHICLE_MOVE
+    ));
+
+    @Override
+    public String getId() {
+        return "client-movement";
+    }
+
+    @Override
+    public Set<PacketType> getPacketTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public int getDefaultBudget() {
+        return 1;
+    }
+
+    @Override
+    public Result validate(PacketContainer packet, Player player, ValidationContext context) {
+        if (!context.spend(1)) {
+            return Result.PASS;
+        }
+        // 只转头的数据包同样带有坐标字段，值为 0
+        StructureModifier<Double> doubles = packet.getDoubles();
+        if (doubles.size() >= 3) {
+            double x = doubles.read(0);
+            double y = doubles.read(1);
+            double z = doubles.read(2);
+            double coordinateMax = context.getSettings().getCoordinateMax();
+            if (!Double.isFinite(x) || !Double.isFinite(y) || !Double.isFinite(z)
+                    || Math.abs(x) > coordinateMax || Math.abs(z) > coordinateMax || Math.abs(y) > Y_MAX) {
+                context.report("坐标 X=" + x + " Y=" + y + " Z=" + z);
+                return Result.CANCELLED;
+            }
+        }
+        StructureModifier<Float> floats = packet.getFloat();
+        for (int i = 0; i < floats.size() && i < 2; i++) {
+            float angle = floats.read(i);
+            if (!Float.isFinite(angle)) {
+                context.report("角度=" + angle);
+                return Result.CANCELLED;
+            }
+        }
+        return Result.PASS;
+    }
+}
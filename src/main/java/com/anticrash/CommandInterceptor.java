@@ -10,14 +10,11 @@ import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
-import org.bukkit.scheduler.BukkitRunnable;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 /**
@@ -27,10 +24,7 @@ import java.util.logging.Level;
 public class CommandInterceptor implements Listener {
 
     private final AntiCrashPlugin plugin;
-    private final Set<String> protectedCommands;
     private final Set<UUID> processingPlayers;
-    private long delayTicks;
-    private long cooldownMs;
     private final Map<UUID, Long> lastCommandTime;
     
     /**
@@ -56,29 +50,13 @@ public class CommandInterceptor implements Listener {
 
     public CommandInterceptor(AntiCrashPlugin plugin) {
         this.plugin = plugin;
-        this.processingPlayers = new HashSet<>();
-        this.protectedCommands = new HashSet<>();
-        this.lastCommandTime = new HashMap<>();
-        
-        loadConfig();
+        // Folia 上不同玩家的指令事件可能在不同区域线程并发触发
+        this.processingPlayers = ConcurrentHashMap.newKeySet();
+        this.lastCommandTime = new ConcurrentHashMap<>();
         
         Bukkit.getPluginManager().registerEvents(this, plugin);
     }
 
-    public void loadConfig() {
-        protectedCommands.clear();
-        List<String> configCommands = plugin.getConfig().getStringList("command-protection.protected-commands");
-        for (String cmd : configCommands) {
-            // 规范化指令格式，确保包含斜杠且为小写
-            String normalized = cmd.startsWith("/") ? cmd.toLowerCase() : "/" + cmd.toLowerCase();
-            protectedCommands.add(normalized);
-        }
-        
-        // 现在这些自定义设置也可以热重载了！
-        this.delayTicks = plugin.getConfig().getLong("command-protection.delay-ticks", 2L);
-        this.cooldownMs = plugin.getConfig().getLong("command-protection.cooldown", 1000L);
-    }
-
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         // 清理缓存，防止内存泄漏
@@ -89,6 +67,16 @@ public class CommandInterceptor implements Listener {
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onCommandPreprocess(PlayerCommandPreprocessEvent event) {
+        PluginMetrics metrics = plugin.getMetrics();
+        long start = metrics.start();
+        try {
+            interceptCommand(event);
+        } finally {
+            metrics.stop(PluginMetrics.Timer.COMMAND_PREPROCESS, start);
+        }
+    }
+
+    private void interceptCommand(PlayerCommandPreprocessEvent event) {
         Player player = event.getPlayer();
         String message = event.getMessage();
         
@@ -102,8 +90,9 @@ public class CommandInterceptor implements Listener {
             return;
         }
 
-        // 1. 检查该指令是否在保护名单中
-        if (isProtectedCommand(command)) {
+        // 1. 检查该指令是否在保护名单中（指令列表、冷却等均来自当前配置快照，重载后即时生效）
+        MonitorSettings settings = plugin.getSettings();
+        if (settings.isProtectedCommand(command)) {
             plugin.debugLog("检测到高危指令: " + command + " (玩家: " + player.getName() + ")");
             
             // 权限绕过检查：拥有绕过权限的玩家不触发保护
@@ -115,7 +104,7 @@ public class CommandInterceptor implements Listener {
             long now = System.currentTimeMillis();
             if (lastCommandTime.containsKey(player.getUniqueId())) {
                 long lastTime = lastCommandTime.get(player.getUniqueId());
-                if (now - lastTime < cooldownMs) {
+                if (now - lastTime < settings.getCooldownMs()) {
                     event.setCancelled(true);
                     return;
                 }
@@ -135,14 +124,10 @@ public class CommandInterceptor implements Listener {
             // 3. 拦截原事件，转入安全执行流程（带临时抗性保护和延迟执行）
             event.setCancelled(true);
             player.sendMessage(plugin.getPrefixedMessage("command-processing"));
-            executeCommandSafely(player, message);
+            executeCommandSafely(player, message, settings);
         }
     }
 
-    private boolean isProtectedCommand(String command) {
-        return protectedCommands.contains(command);
-    }
-
     private SafetyResult performSafetyCheck(Player player) {
         try {
             if (player == null || !player.isOnline()) return SafetyResult.blocked(false);
@@ -159,8 +144,9 @@ public class CommandInterceptor implements Listener {
                 return SafetyResult.blocked(false);
             }
             
-            int minY = plugin.getConfig().getInt("repair.thresholds.y-min", -64);
-            int maxY = plugin.getConfig().getInt("repair.thresholds.y-max", 320);
+            MonitorSettings settings = plugin.getSettings();
+            int minY = settings.getYMin();
+            int maxY = settings.getYMax();
             if (loc.getY() < minY || loc.getY() > maxY) {
                 logWarn("指令前置检查发现坐标越界: 玩家=" + player.getName() + " Y=" + loc.getY() + " 范围=[" + minY + "," + maxY + "]");
                 return SafetyResult.blocked(false);
@@ -174,11 +160,17 @@ public class CommandInterceptor implements Listener {
     }
 
     private void logWarn(String message) {
+        if (!plugin.getLogDeduplicator().admit("WARN", message)) {
+            return;
+        }
         plugin.getLogger().warning(message);
         plugin.getLogManager().log("WARN", message);
     }
 
     private void logError(String message, Throwable e) {
+        if (!plugin.getLogDeduplicator().admit("ERROR", message)) {
+            return;
+        }
         plugin.getLogger().log(Level.SEVERE, message, e);
         plugin.getLogManager().log("ERROR", message);
     }
@@ -187,7 +179,7 @@ public class CommandInterceptor implements Listener {
         return Double.isFinite(d) && !Double.isNaN(d);
     }
 
-    private void executeCommandSafely(Player player, String commandLine) {
+    private void executeCommandSafely(Player player, String commandLine, MonitorSettings settings) {
         // 步骤1：应用临时保护效果
         try {
             player.addPotionEffect(new PotionEffect(PotionEffectType.RESISTANCE, 60, 255, true, false));
@@ -195,38 +187,36 @@ public class CommandInterceptor implements Listener {
             // 忽略药水效果错误，不影响核心功能
         }
 
-        // 步骤2：延迟执行
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!player.isOnline()) return;
-
-                try {
-                    // 关键：加入白名单
-                    processingPlayers.add(player.getUniqueId());
-                    
-                    // 执行命令
-                    if (commandLine.startsWith("/")) {
-                        player.performCommand(commandLine.substring(1));
-                    } else {
-                        player.performCommand(commandLine);
-                    }
-                    
-                    plugin.debugLog("指令安全执行完成: " + player.getName() + " -> " + commandLine);
-                    
-                } catch (Exception e) {
-                    String errorMsg = "命令安全执行失败: 玩家=" + player.getName() + " 指令=" + commandLine + " 异常=" + e.getMessage();
-                    logError(errorMsg, e);
-                    player.sendMessage(plugin.getPrefixedMessage("command-error"));
-                    
-                    if (plugin.getConfig().getBoolean("repair.safe-teleport", true)) {
-                        player.teleport(player.getWorld().getSpawnLocation());
-                    }
-                } finally {
-                    // 步骤3：立即移除白名单
-                    processingPlayers.remove(player.getUniqueId());
+        // 步骤2：延迟执行（在玩家所在线程执行，兼容 Folia）
+        PlatformScheduler scheduler = plugin.getPlatformScheduler();
+        scheduler.runForEntityLater(player, () -> {
+            if (!player.isOnline()) return;
+
+            try {
+                // 关键：加入白名单
+                processingPlayers.add(player.getUniqueId());
+                
+                // 执行命令
+                if (commandLine.startsWith("/")) {
+                    player.performCommand(commandLine.substring(1));
+                } else {
+                    player.performCommand(commandLine);
+                }
+                
+                plugin.debugLog("指令安全执行完成: " + player.getName() + " -> " + commandLine);
+                
+            } catch (Exception e) {
+                String errorMsg = "命令安全执行失败: 玩家=" + player.getName() + " 指令=" + commandLine + " 异常=" + e.getMessage();
+                logError(errorMsg, e);
+                player.sendMessage(plugin.getPrefixedMessage("command-error"));
+                
+                if (settings.isSafeTeleport()) {
+                    scheduler.teleport(player, player.getWorld().getSpawnLocation());
                 }
+            } finally {
+                // 步骤3：立即移除白名单
+                processingPlayers.remove(player.getUniqueId());
             }
-        }.runTaskLater(plugin, delayTicks);
+        }, settings.getDelayTicks());
     }
 }
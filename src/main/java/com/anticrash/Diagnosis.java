@@ -0,0 +1,137 @@
+package com.anticrash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一次诊断的结果
+ * 检查项只负责登记发现的问题与日志文本，日志输出与修复由 {@link PlayerMonitor} 统一完成
+ * 异常类型以位掩码记录，对象可通过 {@link #reset()} 复用，正常玩家的诊断不产生任何分配
+ */
+public final class Diagnosis {
+
+    private static final IssueType[] ISSUE_TYPES = IssueType.values();
+
+    private int issueMask;
+    // 日志文本，仅在发现问题时创建，复用时保留容量
+    private List<String> findings;
+    private boolean severe; // 是否属于严重异常（需要传送修复）
+    private int reportCount;
+    private String failedCheck;
+    private Throwable failure;
+
+    /**
+     * 登记一个问题
+     * @param type 异常类型
+     * @param severe 是否为需要传送修复的严重异常
+     * @param message 日志文本
+     */
+    public void report(IssueType type, boolean severe, String message) {
+        issueMask |= 1 << type.ordinal();
+        if (severe) {
+            this.severe = true;
+        }
+        if (findings == null) {
+            findings = new ArrayList<>(2);
+        }
+        findings.add(message);
+        reportCount++;
+    }
+
+    /**
+     * 登记检查项自身抛出的异常，按严重的未知异常处理
+     */
+    public void fail(String checkId, Throwable error) {
+        issueMask |= 1 << IssueType.GENERAL.ordinal();
+        severe = true;
+        reportCount++;
+        if (failure == null) {
+            failedCheck = checkId;
+            failure = error;
+        }
+    }
+
+    public boolean hasIssues() {
+        return issueMask != 0;
+    }
+
+    public boolean hasIssue(IssueType type) {
+        return (issueMask & (1 << type.ordinal())) != 0;
+    }
+
+    /**
+     * 异常类型位掩码，第 n 位对应 {@link IssueType} 序号 n
+     */
+    public int getIssueMask() {
+        return issueMask;
+    }
+
+    /**
+     * 转换为集合（仅用于提示与日志，会产生分配）
+     */
+    public Set<IssueType> getIssues() {
+        EnumSet<IssueType> issues = EnumSet.noneOf(IssueType.class);
+        for (IssueType type : ISSUE_TYPES) {
+            if (hasIssue(type)) {
+                issues.add(type);
+            }
+        }
+        return issues;
+    }
+
+    public boolean isSevere() {
+        return severe;
+    }
+
+    /**
+     * 已登记的问题数量（含检查项异常），用于统计检查项命中率
+     */
+    public int getReportCount() {
+        return reportCount;
+    }
+
+    public List<String> getFindings() {
+        return findings == null ? Collections.emptyList() : findings;
+    }
+
+    /**
+     * 清空结果以便复用
+     */
+    public void reset() {
+        issueMask = 0;
+        severe = false;
+        reportCount = 0;
+        failedCheck = null;
+        failure = null;
+        if (findings != null) {
+            findings.clear();
+        }
+    }
+
+    /**
+     * 复制一份独立的结果，用于把复用对象中的异常结果交给其他线程或延迟处理
+     */
+    public Diagnosis copy() {
+        Diagnosis copy = new Diagnosis();
+        copy.issueMask = issueMask;
+        copy.severe = severe;
+        copy.reportCount = reportCount;
+        copy.failedCheck = failedCheck;
+        copy.failure = failure;
+        if (findings != null && !findings.isEmpty()) {
+            copy.findings = new ArrayList<>(findings);
+        }
+        return copy;
+    }
+
+    public String getFailedCheck() {
+        return failedCheck;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,137 @@
+package com.anticrash;
+
+import com.destroystokyo.paper.event.player.PlayerArmorChangeEvent;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDismountEvent;
+import org.bukkit.event.entity.EntityMountEvent;
+import org.bukkit.event.entity.EntityPotionEffectEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 玩家脏标记追踪器
+ * 通过 Bukkit 事件记录每名玩家自上次扫描以来可能发生变化的子系统，
+ * 巡逻时只重新检查被标记的部分，并定期执行一次完整扫描作为兜底
+ * 坐标与生命值每 tick 都可能变化且检查成本极低，因此不参与脏标记，始终检查
+ */
+public class DirtyTracker implements Listener {
+
+    public static final int ATTRIBUTES = 1;
+    public static final int EFFECTS = 1 << 1;
+    public static final int INVENTORY = 1 << 2;
+    public static final int VEHICLE = 1 << 3;
+    public static final int ALL = ATTRIBUTES | EFFECTS | INVENTORY | VEHICLE;
+
+    // Folia 上不同玩家的事件在各自区域线程触发；单个玩家的条目只会被其所属线程修改
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        private int dirty = ALL;
+        private long lastFullSweepTick;
+    }
+
+    /**
+     * 标记玩家的某些子系统需要重新检查
+     */
+    public void markDirty(UUID uuid, int subsystems) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.dirty |= subsystems;
+        }
+    }
+
+    /**
+     * 取出本次扫描需要检查的子系统并清空标记
+     * 未被追踪的玩家（如重载前已在线）以及到期的玩家会执行完整扫描
+     *
+     * @param currentTick 巡逻任务的当前 tick
+     * @param fullSweepInterval 完整扫描的最长间隔（ticks）
+     * @return 需要检查的子系统位掩码
+     */
+    public int acquire(UUID uuid, long currentTick, long fullSweepInterval) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(uuid, entry);
+        }
+        int subsystems = entry.dirty;
+        if (currentTick - entry.lastFullSweepTick >= fullSweepInterval) {
+            subsystems = ALL;
+        }
+        if (subsystems == ALL) {
+            entry.lastFullSweepTick = currentTick;
+        }
+        entry.dirty = 0;
+        return subsystems;
+    }
+
+    public void remove(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        entries.put(event.getPlayer().getUniqueId(), new Entry());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPotionEffect(EntityPotionEffectEvent event) {
+        if (event.getEntity() instanceof Player) {
+            // 药水效果会同时影响属性修饰符（如速度、生命提升）
+            markDirty(event.getEntity().getUniqueId(), EFFECTS | ATTRIBUTES);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemHeld(PlayerItemHeldEvent event) {
+        markDirty(event.getPlayer().getUniqueId(), ATTRIBUTES | INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onArmorChange(PlayerArmorChangeEvent event) {
+        markDirty(event.getPlayer().getUniqueId(), ATTRIBUTES | INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMount(EntityMountEvent event) {
+        if (event.getEntity() instanceof Player) {
+            markDirty(event.getEntity().getUniqueId(), VEHICLE);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDismount(EntityDismountEvent event) {
+        if (event.getEntity() instanceof Player) {
+            markDirty(event.getEntity().getUniqueId(), VEHICLE);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        markDirty(event.getPlayer().getUniqueId(), ALL);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        markDirty(event.getPlayer().getUniqueId(), ALL);
+    }
+}
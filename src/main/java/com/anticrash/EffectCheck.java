@@ -0,0 +1,34 @@
+package com.anticrash;
+
+/**
+ * 药水效果检查：负持续时间或超限等级（防止超限药水崩服）
+ */
+public class EffectCheck implements PlayerCheck {
+
+    @Override
+    public String getId() {
+        return "effects";
+    }
+
+    @Override
+    public int getSubsystems() {
+        return DirtyTracker.EFFECTS;
+    }
+
+    @Override
+    public boolean isEnabled(MonitorSettings settings) {
+        return settings.isCheckEffects();
+    }
+
+    @Override
+    public void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        for (int i = 0; i < snapshot.getEffectCount(); i++) {
+            int amplifier = snapshot.getEffectAmplifier(i);
+            int duration = snapshot.getEffectDuration(i);
+            if (duration < 0 || amplifier < -1 || amplifier > 255) {
+                diagnosis.report(IssueType.EFFECTS, false,
+                        "发现玩家药水效果异常: 玩家=" + snapshot.getName() + " Effect=" + snapshot.getEffectName(i) + " Amplifier=" + amplifier + " Duration=" + duration);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.anticrash;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.wrappers.WrappedDataValue;
+import org.bukkit.entity.Player;
+import org.joml.Quaternionfc;
+import org.joml.Vector3fc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 实体元数据检查
+ * 丢弃数值为 NaN/Infinity 的元数据条目（生命值、缩放、展示实体的平移/旋转等），其余条目照常发送；
+ * 每个条目消耗 1 点预算
+ */
+public class EntityMetadataValidator implements PacketValidator {
+
+    @Override
+    public String getId() {
+        return "entity-metadata";
+    }
+
+    @Override
+    public Set<PacketType> getPacketTypes() {
+        return Collections.singleton(PacketType.Play.Server.ENTITY_METADATA);
+    }
+
+    @Override
+    public int getDefaultBudget() {
+        return 64;
+    }
+
+    @Override
+    public Result validate(PacketContainer packet, Player receiver, ValidationContext context) {
+        List<WrappedDataValue> values = packet.getDataValueCollectionModifier().read(0);
+        if (values == null || values.isEmpty()) {
+            return Result.PASS;
+        }
+        List<WrappedDataValue> kept = null;
+        int checked = 0;
+        for (; checked < values.size(); checked++) {
+            if (!context.spend(1)) {
+                break;
+            }
+            WrappedDataValue value = values.get(checked);
+            boolean broken = !isFinite(value.getValue());
+            if (broken && kept == null) {
+                kept = new ArrayList<>(values.subList(0, checked));
+            } else if (!broken && kept != null) {
+                kept.add(value);
+            }
+            if (broken) {
+                context.report("实体ID=" + packet.getIntegers().read(0) + " 索引=" + value.getIndex() + " 值=" + value.getValue());
+            }
+        }
+        if (kept == null) {
+            return Result.PASS;
+        }
+        // 预算耗尽后未检查的条目原样保留
+        kept.addAll(values.subList(checked, values.size()));
+        if (packet.getIntegers().read(0) == receiver.getEntityId()) {
+            context.flagReceiver();
+        }
+        if (kept.isEmpty()) {
+            return Result.CANCELLED;
+        }
+        packet.getDataValueCollectionModifier().write(0, kept);
+        return Result.REWRITTEN;
+    }
+
+    private static boolean isFinite(Object value) {
+        if (value instanceof Float) {
+            return Float.isFinite((Float) value);
+        }
+        if (value instanceof Double) {
+            return Double.isFinite((Double) value);
+        }
+        if (value instanceof Vector3fc) {
+            return ((Vector3fc) value).isFinite();
+        }
+        if (value instanceof Quaternionfc) {
+            return ((Quaternionfc) value).isFinite();
+        }
+        return true;
+    }
+}
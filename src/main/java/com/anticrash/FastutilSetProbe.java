@@ -0,0 +1,291 @@
+package com.anticrash;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * fastutil ObjectOpenHashSet 结构探针
+ * 崩溃栈 "ObjectOpenHashSet$SetIterator.next ... this.wrapped is null" 出现在 LivingEntity.refreshDirtyAttributes
+ * 遍历 AttributeMap 的脏属性集合时：迭代器按 size 计数扫描 key 数组，若 size 大于数组中实际占用的槽位数，
+ * 扫描越过数组头部后会转而读取只在迭代中删除时才创建的 wrapped 列表，从而抛出 NPE。
+ * 迭代器是临时对象无法直接探测，这里改为直接读取集合内部字段 (key/size/containsNull/n/mask/maxFill)
+ * 校验导致该状态的不变量，不遍历集合、不依赖抛出并捕获异常
+ */
+public final class FastutilSetProbe {
+
+    // AttributeMap 中保存待更新/待同步属性的集合字段（Mojang 映射 1.20.5+ 及旧版本）
+    private static final String[] SET_FIELD_CANDIDATES = {
+            "attributesToSync", "attributesToUpdate", "dirtyAttributes"
+    };
+    private static final String OPEN_HASH_SET_CLASS = "it.unimi.dsi.fastutil.objects.ObjectOpenHashSet";
+    // 容量不超过该值时额外统计实际占用槽位数；玩家的脏属性集合通常只有 16~64 个槽位
+    private static final int MAX_SCAN_SLOTS = 1024;
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final MethodHandle entityHandleGetter;
+    private final MethodHandle attributeMapGetter;
+    private final String[] setNames;
+    private final MethodHandle[] setGetters;
+    private final MethodHandle[] setSetters; // final 字段无法写入时对应元素为 null
+    private final Class<?> openHashSetClass;
+    private final MethodHandle setFactory;
+    private final MethodHandle keyGetter;
+    private final MethodHandle sizeGetter;
+    private final MethodHandle containsNullGetter;
+    private final MethodHandle nGetter;
+    private final MethodHandle maskGetter;
+    private final MethodHandle maxFillGetter;
+    private final String failureReason;
+
+    private FastutilSetProbe(MethodHandle entityHandleGetter, MethodHandle attributeMapGetter,
+                             String[] setNames, MethodHandle[] setGetters, MethodHandle[] setSetters,
+                             Class<?> openHashSetClass, MethodHandle setFactory,
+                             MethodHandle keyGetter, MethodHandle sizeGetter, MethodHandle containsNullGetter,
+                             MethodHandle nGetter, MethodHandle maskGetter, MethodHandle maxFillGetter,
+                             String failureReason) {
+        this.entityHandleGetter = entityHandleGetter;
+        this.attributeMapGetter = attributeMapGetter;
+        this.setNames = setNames;
+        this.setGetters = setGetters;
+        this.setSetters = setSetters;
+        this.openHashSetClass = openHashSetClass;
+        this.setFactory = setFactory;
+        this.keyGetter = keyGetter;
+        this.sizeGetter = sizeGetter;
+        this.containsNullGetter = containsNullGetter;
+        this.nGetter = nGetter;
+        this.maskGetter = maskGetter;
+        this.maxFillGetter = maxFillGetter;
+        this.failureReason = failureReason;
+    }
+
+    /**
+     * 解析服务端实现类并输出结果
+     */
+    public static FastutilSetProbe resolve(Logger logger) {
+        FastutilSetProbe probe;
+        try {
+            probe = resolve();
+        } catch (Throwable t) {
+            probe = unavailable(t.getClass().getSimpleName() + ": " + t.getMessage());
+        }
+        if (probe.isAvailable()) {
+            logger.info("[核心] fastutil 集合探针已就绪: 属性集合=" + String.join(", ", probe.setNames));
+        } else {
+            logger.warning("[核心] fastutil 集合探针不可用，脏属性集合损坏只能在崩溃前通过遍历发现: " + probe.failureReason);
+        }
+        return probe;
+    }
+
+    private static FastutilSetProbe resolve() throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        String craftPackage = Bukkit.getServer().getClass().getPackage().getName();
+        ClassLoader loader = Bukkit.getServer().getClass().getClassLoader();
+        Class<?> craftLiving = Class.forName(craftPackage + ".entity.CraftLivingEntity", false, loader);
+
+        Method getHandle = craftLiving.getMethod("getHandle");
+        MethodHandle entityHandleGetter = lookup.unreflect(getHandle).asType(GETTER_TYPE);
+        Method getAttributes = NmsAttributeAccessor.findMethod(getHandle.getReturnType(), "getAttributes");
+        if (getAttributes == null) {
+            return unavailable(getHandle.getReturnType().getName() + " 中找不到 getAttributes 方法");
+        }
+        getAttributes.setAccessible(true);
+        MethodHandle attributeMapGetter = lookup.unreflect(getAttributes).asType(GETTER_TYPE);
+        Class<?> attributeMapClass = getAttributes.getReturnType();
+
+        List<String> names = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        List<MethodHandle> setters = new ArrayList<>();
+        for (String name : SET_FIELD_CANDIDATES) {
+            Field field = NmsAttributeAccessor.findField(attributeMapClass, name);
+            if (field == null || Modifier.isStatic(field.getModifiers()) || !Set.class.isAssignableFrom(field.getType())) {
+                continue;
+            }
+            field.setAccessible(true);
+            MethodHandle setter;
+            try {
+                setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                setter = null;
+            }
+            names.add(name);
+            getters.add(lookup.unreflectGetter(field).asType(GETTER_TYPE));
+            setters.add(setter);
+        }
+        if (names.isEmpty()) {
+            return unavailable(attributeMapClass.getName() + " 中找不到脏属性集合字段，候选: " + String.join(", ", SET_FIELD_CANDIDATES));
+        }
+
+        Class<?> openHashSetClass = Class.forName(OPEN_HASH_SET_CLASS, false, attributeMapClass.getClassLoader());
+        MethodHandle setFactory = lookup.findConstructor(openHashSetClass, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        return new FastutilSetProbe(entityHandleGetter, attributeMapGetter,
+                names.toArray(new String[0]), getters.toArray(new MethodHandle[0]), setters.toArray(new MethodHandle[0]),
+                openHashSetClass, setFactory,
+                internalGetter(lookup, openHashSetClass, "key", Object[].class),
+                internalGetter(lookup, openHashSetClass, "size", int.class),
+                internalGetter(lookup, openHashSetClass, "containsNull", boolean.class),
+                internalGetter(lookup, openHashSetClass, "n", int.class),
+                internalGetter(lookup, openHashSetClass, "mask", int.class),
+                internalGetter(lookup, openHashSetClass, "maxFill", int.class),
+                null);
+    }
+
+    private static MethodHandle internalGetter(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?> type)
+            throws ReflectiveOperationException {
+        Field field = NmsAttributeAccessor.findField(owner, name);
+        if (field == null || field.getType() != type) {
+            throw new NoSuchFieldException(owner.getName() + "." + name);
+        }
+        field.setAccessible(true);
+        return lookup.unreflectGetter(field).asType(MethodType.methodType(type, Object.class));
+    }
+
+    private static FastutilSetProbe unavailable(String reason) {
+        return new FastutilSetProbe(null, null, new String[0], new MethodHandle[0], new MethodHandle[0],
+                null, null, null, null, null, null, null, null, reason);
+    }
+
+    public boolean isAvailable() {
+        return entityHandleGetter != null;
+    }
+
+    /**
+     * 解析失败原因，解析成功时为 null
+     */
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    /**
+     * 探测玩家 AttributeMap 中的脏属性集合
+     * 读取的是不加锁的内部字段，必须在拥有该玩家的线程上调用结果才可信
+     *
+     * @return 结构不一致的集合位掩码（第 i 位对应第 i 个集合，见 {@link #describe}）；全部一致时为 0，探针不可用时为 -1
+     */
+    public int probe(Player player) {
+        if (!isAvailable()) {
+            return -1;
+        }
+        Object attributeMap;
+        try {
+            Object handle = (Object) entityHandleGetter.invokeExact((Object) player);
+            attributeMap = (Object) attributeMapGetter.invokeExact(handle);
+        } catch (Throwable t) {
+            return -1;
+        }
+        if (attributeMap == null) {
+            return 0;
+        }
+        int corrupted = 0;
+        for (int i = 0; i < setGetters.length; i++) {
+            try {
+                Object set = (Object) setGetters[i].invokeExact(attributeMap);
+                if (set != null && openHashSetClass.isInstance(set) && !isConsistent(set)) {
+                    corrupted |= 1 << i;
+                }
+            } catch (Throwable t) {
+                // 读取字段失败不视为损坏
+            }
+        }
+        return corrupted;
+    }
+
+    /**
+     * 在拥有该玩家的线程上重新探测，并把结构不一致的集合替换为新的空集合
+     * 丢弃的只是待刷新/待同步标记，调用方随后重置属性基础值时会重新登记
+     *
+     * @return 被替换或清空的集合数量
+     */
+    public int repair(Player player) {
+        int corrupted = probe(player);
+        if (corrupted <= 0) {
+            return 0;
+        }
+        int repaired = 0;
+        try {
+            Object handle = (Object) entityHandleGetter.invokeExact((Object) player);
+            Object attributeMap = (Object) attributeMapGetter.invokeExact(handle);
+            for (int i = 0; i < setGetters.length; i++) {
+                if ((corrupted & (1 << i)) == 0) {
+                    continue;
+                }
+                try {
+                    if (setSetters[i] != null) {
+                        Object replacement = (Object) setFactory.invokeExact();
+                        setSetters[i].invokeExact(attributeMap, replacement);
+                    } else {
+                        // 字段不可写时退化为 clear()，可修复 size 偏大的情况
+                        ((Set<?>) (Object) setGetters[i].invokeExact(attributeMap)).clear();
+                    }
+                    repaired++;
+                } catch (Throwable t) {
+                    // 单个集合失败不影响其他集合
+                }
+            }
+        } catch (Throwable t) {
+            // 忽略
+        }
+        return repaired;
+    }
+
+    /**
+     * 将 {@link #probe} 返回的位掩码转换为集合名称（仅在发现问题时调用）
+     */
+    public String describe(int corrupted) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < setNames.length; i++) {
+            if ((corrupted & (1 << i)) != 0) {
+                names.add(setNames[i]);
+            }
+        }
+        return String.join(", ", names);
+    }
+
+    /**
+     * 校验 ObjectOpenHashSet 内部不变量
+     * n 为 2 的幂且 mask = n - 1，key 数组长度为 n + 1（末位是 null 元素的专用槽位，始终为空），
+     * 0 <= size <= maxFill，且 key[0..n) 中的非空槽位数恰好等于 size 减去 null 元素
+     */
+    private boolean isConsistent(Object set) throws Throwable {
+        Object[] key = (Object[]) keyGetter.invokeExact(set);
+        int size = (int) sizeGetter.invokeExact(set);
+        boolean containsNull = (boolean) containsNullGetter.invokeExact(set);
+        int n = (int) nGetter.invokeExact(set);
+        int mask = (int) maskGetter.invokeExact(set);
+        int maxFill = (int) maxFillGetter.invokeExact(set);
+
+        if (key == null || n <= 0 || (n & (n - 1)) != 0 || mask != n - 1 || key.length != n + 1) {
+            return false;
+        }
+        if (key[n] != null) {
+            return false;
+        }
+        int expected = containsNull ? size - 1 : size;
+        if (expected < 0 || size > maxFill) {
+            return false;
+        }
+        if (n > MAX_SCAN_SLOTS) {
+            return true; // 超大集合只校验 O(1) 不变量
+        }
+        // size 偏大正是迭代器越界读取 wrapped 的直接原因
+        int occupied = 0;
+        for (int i = 0; i < n; i++) {
+            if (key[i] != null && ++occupied > expected) {
+                return false;
+            }
+        }
+        return occupied == expected;
+    }
+}
@@ -0,0 +1,74 @@
+package com.anticrash;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Folia 调度实现
+ * 实体相关任务交给实体调度器，在实体所在的区域线程执行；全局任务交给全局区域调度器
+ */
+public class FoliaPlatformScheduler implements PlatformScheduler {
+
+    private final Plugin plugin;
+
+    public FoliaPlatformScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isFolia() {
+        return true;
+    }
+
+    @Override
+    public long getCurrentTick() {
+        // Folia 各区域独立 tick，没有全局 tick 计数，按 50ms 时间片换算
+        return System.nanoTime() / 50_000_000L;
+    }
+
+    @Override
+    public TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        // Folia 要求初始延迟与周期至少为 1 tick
+        ScheduledTask scheduledTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin,
+                t -> task.run(), Math.max(1L, delayTicks), Math.max(1L, periodTicks));
+        return new TaskHandle() {
+            @Override
+            public void cancel() {
+                scheduledTask.cancel();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return scheduledTask.isCancelled();
+            }
+        };
+    }
+
+    @Override
+    public void runGlobalLater(Runnable task, long delayTicks) {
+        Bukkit.getGlobalRegionScheduler().runDelayed(plugin, t -> task.run(), Math.max(1L, delayTicks));
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        entity.getScheduler().run(plugin, t -> task.run(), null);
+    }
+
+    @Override
+    public void runForEntityLater(Entity entity, Runnable task, long delayTicks) {
+        entity.getScheduler().runDelayed(plugin, t -> task.run(), null, Math.max(1L, delayTicks));
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> task.run());
+    }
+
+    @Override
+    public void teleport(Entity entity, Location target) {
+        entity.teleportAsync(target);
+    }
+}
@@ -0,0 +1,28 @@
+package com.anticrash;
+
+/**
+ * 生命值检查：非法数值或超出配置范围
+ */
+public class HealthCheck implements PlayerCheck {
+
+    @Override
+    public String getId() {
+        return "health";
+    }
+
+    @Override
+    public int getSubsystems() {
+        return 0; // 生命值检查成本极低，始终检查
+    }
+
+    @Override
+    public void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        double health = snapshot.getHealth();
+        double minHealth = settings.getHealthMin();
+        double maxHealth = settings.getHealthMax();
+        if (!Double.isFinite(health) || health < minHealth || health > maxHealth) {
+            diagnosis.report(IssueType.HEALTH, false,
+                    "发现玩家生命值异常: 玩家=" + snapshot.getName() + " Health=" + health + " 范围=[" + minHealth + "," + maxHealth + "]");
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package com.anticrash;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 异常事件记录
+ * 每次诊断出异常（及其修复结果）写入一条 32 字节的定长记录，追加到内存映射的段文件中：
+ * <pre>
+ * 0  时间戳 (long, 毫秒)      8  UUID 高位 (long)   16 UUID 低位 (long)
+ * 24 异常类型位掩码 (int)     28 修复场景序号 (byte) 29 标志位 (byte)   30 保留 (2 字节)
+ * </pre>
+ * 时间戳最后写入，为 0 表示空槽位；启动时扫描段文件找到写入位置并重建索引，
+ * 服务端崩溃时已写入映射内存的记录由操作系统落盘，不会丢失。
+ * 索引全部在内存中：
+ * - 时间索引：段按时间顺序排列并记录首尾时间，记录时间单调不减，按时间查询时从最新的段向前扫描并提前停止
+ * - 玩家索引：每个玩家的记录位置 (段号 &lt;&lt; 32 | 槽位) 按写入顺序保存在 long 数组中
+ * 段文件写满后新建下一个段，超过 incidents.max-segments 时删除最旧的段
+ */
+public class IncidentStore {
+
+    static final int RECORD_BYTES = 32;
+    private static final int HEADER_BYTES = 16;
+    private static final int MAGIC = 0x41434953; // "ACIS"
+    private static final int VERSION = 1;
+    // 段文件名: 00000001.seg，段号递增
+    private static final Pattern SEGMENT_FILE = Pattern.compile("(\\d{8})\\.seg");
+    private static final PlayerMonitor.RepairContext[] CONTEXTS = PlayerMonitor.RepairContext.values();
+    private static final IssueType[] ISSUE_TYPES = IssueType.values();
+
+    // 标志位
+    public static final int FLAG_SEVERE = 1;
+    public static final int FLAG_REPAIRED = 1 << 1;
+    public static final int FLAG_TELEPORTED = 1 << 2;
+    public static final int FLAG_COMMAND_BLOCKED = 1 << 3;
+    public static final int FLAG_KICKED = 1 << 4;
+
+    private final File dir;
+    private final Logger logger;
+    // 以下字段由 this 锁保护
+    private final List<Segment> segments = new ArrayList<>(); // 从旧到新
+    private final Map<UUID, Postings> byPlayer = new HashMap<>();
+    private boolean enabled;
+    private int segmentRecords = 65536;
+    private int maxSegments = 16;
+    private long total;
+    private long lastMillis;
+    private boolean failed;
+
+    /**
+     * 一个段文件，映射后即关闭文件通道，映射在缓冲区被回收前一直有效
+     */
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int count;
+        private long firstMillis;
+        private long lastMillis;
+
+        private Segment(int id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+            this.capacity = (buffer.capacity() - HEADER_BYTES) / RECORD_BYTES;
+        }
+
+        private int offset(int slot) {
+            return HEADER_BYTES + slot * RECORD_BYTES;
+        }
+
+        private long millis(int slot) {
+            return buffer.getLong(offset(slot));
+        }
+
+        private int mask(int slot) {
+            return buffer.getInt(offset(slot) + 24);
+        }
+    }
+
+    /**
+     * 单个玩家的记录位置，按写入顺序（即时间顺序）排列
+     */
+    private static final class Postings {
+        private long[] values = new long[4];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * 删除段号小于 segmentId 的位置
+         */
+        private void trimBefore(int segmentId) {
+            int keep = 0;
+            while (keep < size && (int) (values[keep] >>> 32) < segmentId) {
+                keep++;
+            }
+            if (keep > 0) {
+                System.arraycopy(values, keep, values, 0, size - keep);
+                size -= keep;
+            }
+        }
+    }
+
+    /**
+     * 一条异常事件
+     */
+    public static final class Incident {
+        private final long timestamp;
+        private final UUID playerId;
+        private final int issueMask;
+        private final PlayerMonitor.RepairContext context;
+        private final int flags;
+
+        private Incident(long timestamp, UUID playerId, int issueMask, PlayerMonitor.RepairContext context, int flags) {
+            this.timestamp = timestamp;
+            this.playerId = playerId;
+            this.issueMask = issueMask;
+            this.context = context;
+            this.flags = flags;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        /**
+         * 异常类型位掩码，第 n 位对应 {@link IssueType} 序号 n
+         */
+        public int getIssueMask() {
+            return issueMask;
+        }
+
+        public Set<IssueType> getIssues() {
+            EnumSet<IssueType> issues = EnumSet.noneOf(IssueType.class);
+            for (IssueType type : ISSUE_TYPES) {
+                if ((issueMask & (1 << type.ordinal())) != 0) {
+                    issues.add(type);
+                }
+            }
+            return issues;
+        }
+
+        /**
+         * 修复场景，记录来自更新的版本无法识别时为 null
+         */
+        public PlayerMonitor.RepairContext getContext() {
+            return context;
+        }
+
+        public boolean isSevere() {
+            return (flags & FLAG_SEVERE) != 0;
+        }
+
+        /**
+         * 是否执行了修复（自动修复关闭时只记录不修复）
+         */
+        public boolean isRepaired() {
+            return (flags & FLAG_REPAIRED) != 0;
+        }
+
+        public boolean isTeleported() {
+            return (flags & FLAG_TELEPORTED) != 0;
+        }
+
+        public boolean isCommandBlocked() {
+            return (flags & FLAG_COMMAND_BLOCKED) != 0;
+        }
+
+        /**
+         * 修复失败并按配置踢出了玩家
+         */
+        public boolean isKicked() {
+            return (flags & FLAG_KICKED) != 0;
+        }
+    }
+
+    /**
+     * 查询结果：匹配总数与最新的若干条记录（从新到旧）
+     */
+    public static final class Result {
+        private final int matched;
+        private final int scanned;
+        private final List<Incident> incidents;
+
+        private Result(int matched, int scanned, List<Incident> incidents) {
+            this.matched = matched;
+            this.scanned = scanned;
+            this.incidents = incidents;
+        }
+
+        public int getMatched() {
+            return matched;
+        }
+
+        /**
+         * 查询过程中读取的记录数
+         */
+        public int getScanned() {
+            return scanned;
+        }
+
+        public List<Incident> getIncidents() {
+            return incidents;
+        }
+    }
+
+    public IncidentStore(AntiCrashPlugin plugin) {
+        // 记录目录: plugins/AntiCrashProtector/incidents
+        this(new File(plugin.getDataFolder(), "incidents"), plugin.getLogger());
+    }
+
+    IncidentStore(File dir, Logger logger) {
+        this.dir = dir;
+        this.logger = logger;
+        load();
+    }
+
+    /**
+     * 应用开关、段大小（只影响之后新建的段）与保留段数
+     */
+    public synchronized void applySettings(MonitorSettings settings) {
+        this.enabled = settings.isIncidentsEnabled();
+        this.segmentRecords = settings.getIncidentSegmentRecords();
+        this.maxSegments = settings.getIncidentMaxSegments();
+        this.failed = false;
+        prune();
+    }
+
+    /**
+     * 追加一条记录，可在任意线程调用
+     * @param issueMask 异常类型位掩码，见 {@link Diagnosis#getIssueMask()}
+     * @param flags FLAG_* 标志位组合
+     */
+    public synchronized void record(UUID playerId, int issueMask, PlayerMonitor.RepairContext context, int flags) {
+        if (!enabled || failed || playerId == null) {
+            return;
+        }
+        Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (tail == null || tail.count >= tail.capacity) {
+            tail = openSegment(tail == null ? 1 : tail.id + 1);
+            if (tail == null) {
+                return;
+            }
+        }
+        // 系统时钟回拨时沿用上一条记录的时间，保证记录时间单调不减
+        long millis = Math.max(System.currentTimeMillis(), lastMillis);
+        int slot = tail.count;
+        int offset = tail.offset(slot);
+        MappedByteBuffer buffer = tail.buffer;
+        buffer.putLong(offset + 8, playerId.getMostSignificantBits());
+        buffer.putLong(offset + 16, playerId.getLeastSignificantBits());
+        buffer.putInt(offset + 24, issueMask);
+        buffer.put(offset + 28, (byte) context.ordinal());
+        buffer.put(offset + 29, (byte) flags);
+        // 时间戳最后写入，作为记录完整的标记
+        buffer.putLong(offset, millis);
+        index(tail, slot, playerId, millis);
+    }
+
+    /**
+     * 按玩家查询
+     * @param sinceMillis 只返回该时间之后的记录，0 表示不限
+     * @param limit 最多返回的记录数，匹配总数不受限制
+     */
+    public synchronized Result queryPlayer(UUID playerId, long sinceMillis, int limit) {
+        Postings postings = byPlayer.get(playerId);
+        if (postings == null) {
+            return new Result(0, 0, Collections.emptyList());
+        }
+        Map<Integer, Segment> byId = new HashMap<>();
+        for (Segment segment : segments) {
+            byId.put(segment.id, segment);
+        }
+        List<Incident> incidents = new ArrayList<>(Math.min(limit, postings.size));
+        int matched = 0;
+        int scanned = 0;
+        for (int i = postings.size - 1; i >= 0; i--) {
+            long position = postings.values[i];
+            Segment segment = byId.get((int) (position >>> 32));
+            if (segment == null) {
+                break;
+            }
+            int slot = (int) position;
+            scanned++;
+            if (segment.millis(slot) < sinceMillis) {
+                break;
+            }
+            matched++;
+            if (incidents.size() < limit) {
+                incidents.add(read(segment, slot));
+            }
+        }
+        return new Result(matched, scanned, incidents);
+    }
+
+    /**
+     * 按异常类型查询，记录的类型位掩码与 typeMask 有交集即匹配
+     * @param sinceMillis 只返回该时间之后的记录，0 表示不限
+     * @param limit 最多返回的记录数，匹配总数不受限制
+     */
+    public synchronized Result queryType(int typeMask, long sinceMillis, int limit) {
+        List<Incident> incidents = new ArrayList<>(Math.min(limit, 64));
+        int matched = 0;
+        int scanned = 0;
+        for (int s = segments.size() - 1; s >= 0; s--) {
+            Segment segment = segments.get(s);
+            if (segment.count == 0) {
+                continue;
+            }
+            if (segment.lastMillis < sinceMillis) {
+                break;
+            }
+            // 整段都在查询范围内时不需要逐条比较时间
+            boolean whole = segment.firstMillis >= sinceMillis;
+            for (int slot = segment.count - 1; slot >= 0; slot--) {
+                scanned++;
+                if (!whole && segment.millis(slot) < sinceMillis) {
+                    break;
+                }
+                if ((segment.mask(slot) & typeMask) == 0) {
+                    continue;
+                }
+                matched++;
+                if (incidents.size() < limit) {
+                    incidents.add(read(segment, slot));
+                }
+            }
+        }
+        return new Result(matched, scanned, incidents);
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized int getPlayerCount() {
+        return byPlayer.size();
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled && !failed;
+    }
+
+    /**
+     * 把正在写入的段同步到磁盘并停止记录
+     */
+    public synchronized void close() {
+        enabled = false;
+        if (!segments.isEmpty()) {
+            try {
+                segments.get(segments.size() - 1).buffer.force();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "同步异常事件记录失败", e);
+            }
+        }
+    }
+
+    /**
+     * 扫描已有段文件，重建时间与玩家索引
+     */
+    private synchronized void load() {
+        if (!dir.exists() && !dir.mkdirs()) {
+            logger.warning("无法创建异常事件记录目录: " + dir.getPath());
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> segmentFiles = new ArrayList<>();
+        for (File file : files) {
+            if (SEGMENT_FILE.matcher(file.getName()).matches()) {
+                segmentFiles.add(file);
+            }
+        }
+        segmentFiles.sort((a, b) -> a.getName().compareTo(b.getName()));
+        for (File file : segmentFiles) {
+            Matcher matcher = SEGMENT_FILE.matcher(file.getName());
+            matcher.matches();
+            Segment segment = map(Integer.parseInt(matcher.group(1)), file, false);
+            if (segment == null) {
+                continue;
+            }
+            segments.add(segment);
+            for (int slot = 0; slot < segment.capacity; slot++) {
+                long millis = segment.millis(slot);
+                if (millis == 0L) {
+                    break;
+                }
+                int offset = segment.offset(slot);
+                UUID playerId = new UUID(segment.buffer.getLong(offset + 8), segment.buffer.getLong(offset + 16));
+                index(segment, slot, playerId, millis);
+            }
+        }
+    }
+
+    private void index(Segment segment, int slot, UUID playerId, long millis) {
+        if (segment.count == 0) {
+            segment.firstMillis = millis;
+        }
+        segment.lastMillis = millis;
+        segment.count = slot + 1;
+        lastMillis = millis;
+        total++;
+        Postings postings = byPlayer.get(playerId);
+        if (postings == null) {
+            postings = new Postings();
+            byPlayer.put(playerId, postings);
+        }
+        postings.add(((long) segment.id << 32) | slot);
+    }
+
+    private Incident read(Segment segment, int slot) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = segment.offset(slot);
+        int context = buffer.get(offset + 28);
+        return new Incident(buffer.getLong(offset),
+                new UUID(buffer.getLong(offset + 8), buffer.getLong(offset + 16)),
+                buffer.getInt(offset + 24),
+                context >= 0 && context < CONTEXTS.length ? CONTEXTS[context] : null,
+                buffer.get(offset + 29) & 0xFF);
+    }
+
+    private Segment openSegment(int id) {
+        File file = new File(dir, String.format("%08d.seg", id));
+        Segment segment = map(id, file, true);
+        if (segment == null) {
+            // 创建失败后不再重试，直到下次应用配置
+            failed = true;
+            return null;
+        }
+        segments.add(segment);
+        prune();
+        return segment;
+    }
+
+    /**
+     * 映射段文件，create 为 true 时按当前段大小新建并写入文件头
+     */
+    private Segment map(int id, File file, boolean create) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long size = create ? HEADER_BYTES + (long) segmentRecords * RECORD_BYTES : channel.size();
+            if (size < HEADER_BYTES + RECORD_BYTES) {
+                logger.warning("忽略损坏的异常事件段文件: " + file.getName());
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (create) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(8, System.currentTimeMillis());
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                logger.warning("忽略无法识别的异常事件段文件: " + file.getName());
+                return null;
+            }
+            return new Segment(id, file, buffer);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "无法打开异常事件段文件: " + file.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 删除超出保留段数的最旧段，并从玩家索引中移除其记录
+     */
+    private void prune() {
+        if (segments.size() <= maxSegments) {
+            return;
+        }
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.remove(0);
+            total -= oldest.count;
+            // 映射在缓冲区被回收前一直有效，Windows 上此时可能无法删除，下次启动时会作为旧段再次清理
+            if (!oldest.file.delete()) {
+                logger.warning("无法删除过期的异常事件段文件: " + oldest.file.getName());
+            }
+        }
+        int firstId = segments.get(0).id;
+        Iterator<Postings> iterator = byPlayer.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            postings.trimBefore(firstId);
+            if (postings.size == 0) {
+                iterator.remove();
+            }
+        }
+    }
+}
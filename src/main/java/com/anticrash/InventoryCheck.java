@@ -0,0 +1,29 @@
+package com.anticrash;
+
+/**
+ * 物品栏完整性检查
+ */
+public class InventoryCheck implements PlayerCheck {
+
+    @Override
+    public String getId() {
+        return "inventory";
+    }
+
+    @Override
+    public int getSubsystems() {
+        return DirtyTracker.INVENTORY;
+    }
+
+    @Override
+    public boolean isEnabled(MonitorSettings settings) {
+        return settings.isCheckInventory();
+    }
+
+    @Override
+    public void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        if (snapshot.isInventoryMissing()) {
+            diagnosis.report(IssueType.INVENTORY, false, "发现玩家物品栏丢失: 玩家=" + snapshot.getName());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.anticrash;
+
+/**
+ * 异常类型：用于分级处理和详细提示
+ * 第三方检查项无法归入具体类型时使用 {@link #GENERAL}
+ */
+public enum IssueType {
+    LOCATION,   // 坐标异常 (NaN/越界)
+    HEALTH,     // 生命值异常
+    ATTRIBUTES, // 属性异常 (非法值)
+    EFFECTS,    // 药水效果异常
+    INVENTORY,  // 物品栏异常
+    GENERAL     // 其他未知异常
+}
@@ -0,0 +1,242 @@
+package com.anticrash;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 物品网络编码体积测量
+ * 启动时一次性解析 NMS ItemStack.OPTIONAL_STREAM_CODEC 与 RegistryFriendlyByteBuf，缓存为 MethodHandle；
+ * 测量时把物品编码进每个线程复用的缓冲区，缓冲区容量上限为 max-item-bytes，超过上限时 netty 抛出越界异常，编码随即终止，
+ * 因此单个物品的测量成本不超过编码 max-item-bytes 字节，且测得的是客户端实际收到的未压缩字节数
+ * 解析失败时退化为解压 serializeAsBytes 的 gzip 输出并计数（需要完整序列化与压缩，成本较高）
+ */
+public final class ItemSizeMeter {
+
+    /**
+     * 超过上限，测量已提前终止，实际大小未知
+     */
+    public static final int OVERSIZED = -1;
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final MethodHandle craftHandle;      // CraftItemStack.handle
+    private final Class<?> craftClass;
+    private final MethodHandle asNmsCopy;        // CraftItemStack.asNMSCopy(ItemStack)
+    private final MethodHandle encode;           // StreamEncoder.encode(buf, item)
+    private final Object codec;                  // ItemStack.OPTIONAL_STREAM_CODEC
+    private final MethodHandle newBuffer;        // Unpooled.buffer(initial, max)
+    private final MethodHandle wrapBuffer;       // new RegistryFriendlyByteBuf(ByteBuf, RegistryAccess)
+    private final Object registries;
+    private final MethodHandle clear;
+    private final MethodHandle writerIndex;
+    private final String failureReason;
+    // 每个网络线程复用一个编码缓冲区，容量上限变化（重载配置）时重建
+    private final ThreadLocal<Buffer> buffers = new ThreadLocal<>();
+
+    private static final class Buffer {
+        private final Object buf;
+        private final int limit;
+
+        private Buffer(Object buf, int limit) {
+            this.buf = buf;
+            this.limit = limit;
+        }
+    }
+
+    private ItemSizeMeter(Class<?> craftClass, MethodHandle craftHandle, MethodHandle asNmsCopy, MethodHandle encode, Object codec,
+                          MethodHandle newBuffer, MethodHandle wrapBuffer, Object registries,
+                          MethodHandle clear, MethodHandle writerIndex, String failureReason) {
+        this.craftClass = craftClass;
+        this.craftHandle = craftHandle;
+        this.asNmsCopy = asNmsCopy;
+        this.encode = encode;
+        this.codec = codec;
+        this.newBuffer = newBuffer;
+        this.wrapBuffer = wrapBuffer;
+        this.registries = registries;
+        this.clear = clear;
+        this.writerIndex = writerIndex;
+        this.failureReason = failureReason;
+    }
+
+    /**
+     * 解析服务端实现类并输出结果
+     */
+    public static ItemSizeMeter resolve(Logger logger) {
+        ItemSizeMeter meter;
+        try {
+            meter = resolve();
+        } catch (Throwable t) {
+            meter = unavailable(t.getClass().getSimpleName() + ": " + t.getMessage());
+        }
+        if (meter.isAvailable()) {
+            logger.info("[核心] 物品体积测量已就绪: 按网络编码计数，超过上限即终止编码");
+        } else {
+            logger.warning("[核心] 物品网络编码不可用，物品体积检查退化为解压 serializeAsBytes 计数: " + meter.failureReason);
+        }
+        return meter;
+    }
+
+    private static ItemSizeMeter resolve() throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> serverClass = Bukkit.getServer().getClass();
+        ClassLoader loader = serverClass.getClassLoader();
+        Class<?> craftClass = Class.forName(serverClass.getPackage().getName() + ".inventory.CraftItemStack", false, loader);
+
+        Method copyMethod = craftClass.getMethod("asNMSCopy", ItemStack.class);
+        MethodHandle asNmsCopy = lookup.unreflect(copyMethod).asType(MethodType.methodType(Object.class, ItemStack.class));
+        Class<?> nmsItemClass = copyMethod.getReturnType();
+
+        Field handleField = NmsAttributeAccessor.findField(craftClass, "handle");
+        MethodHandle craftHandle = null;
+        if (handleField != null && handleField.getType() == nmsItemClass) {
+            handleField.setAccessible(true);
+            craftHandle = lookup.unreflectGetter(handleField).asType(GETTER_TYPE);
+        }
+
+        Field codecField = nmsItemClass.getField("OPTIONAL_STREAM_CODEC");
+        if (!Modifier.isStatic(codecField.getModifiers())) {
+            return unavailable(nmsItemClass.getName() + ".OPTIONAL_STREAM_CODEC 不是静态字段");
+        }
+        Object codec = codecField.get(null);
+        Method encodeMethod = null;
+        for (Method method : codecField.getType().getMethods()) {
+            if (method.getName().equals("encode") && method.getParameterCount() == 2) {
+                encodeMethod = method;
+                break;
+            }
+        }
+        if (encodeMethod == null) {
+            return unavailable(codecField.getType().getName() + " 中找不到 encode 方法");
+        }
+        MethodHandle encode = lookup.unreflect(encodeMethod)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class, Object.class));
+
+        Class<?> unpooled = Class.forName("io.netty.buffer.Unpooled", false, loader);
+        Class<?> byteBufClass = Class.forName("io.netty.buffer.ByteBuf", false, loader);
+        MethodHandle newBuffer = lookup.findStatic(unpooled, "buffer", MethodType.methodType(byteBufClass, int.class, int.class))
+                .asType(MethodType.methodType(Object.class, int.class, int.class));
+
+        Class<?> registryBufClass = Class.forName("net.minecraft.network.RegistryFriendlyByteBuf", false, loader);
+        Constructor<?> registryBufConstructor = null;
+        for (Constructor<?> constructor : registryBufClass.getConstructors()) {
+            if (constructor.getParameterCount() == 2 && constructor.getParameterTypes()[0] == byteBufClass) {
+                registryBufConstructor = constructor;
+                break;
+            }
+        }
+        if (registryBufConstructor == null) {
+            return unavailable(registryBufClass.getName() + " 中找不到 (ByteBuf, RegistryAccess) 构造器");
+        }
+        MethodHandle wrapBuffer = lookup.unreflectConstructor(registryBufConstructor)
+                .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+
+        // CraftServer.getServer() -> MinecraftServer.registryAccess()
+        Object minecraftServer = serverClass.getMethod("getServer").invoke(Bukkit.getServer());
+        Object registries = minecraftServer.getClass().getMethod("registryAccess").invoke(minecraftServer);
+        if (!registryBufConstructor.getParameterTypes()[1].isInstance(registries)) {
+            return unavailable("registryAccess() 的类型与 RegistryFriendlyByteBuf 不匹配");
+        }
+
+        MethodHandle clear = lookup.unreflect(byteBufClass.getMethod("clear")).asType(MethodType.methodType(void.class, Object.class));
+        MethodHandle writerIndex = lookup.unreflect(byteBufClass.getMethod("writerIndex")).asType(MethodType.methodType(int.class, Object.class));
+        return new ItemSizeMeter(craftClass, craftHandle, asNmsCopy, encode, codec, newBuffer, wrapBuffer, registries,
+                clear, writerIndex, null);
+    }
+
+    private static ItemSizeMeter unavailable(String reason) {
+        return new ItemSizeMeter(null, null, null, null, null, null, null, null, null, null, reason);
+    }
+
+    public boolean isAvailable() {
+        return encode != null;
+    }
+
+    /**
+     * 解析失败原因，解析成功时为 null
+     */
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    /**
+     * 测量物品编码后的字节数
+     *
+     * @param limit 上限，超过后停止测量
+     * @return 不超过上限时为实际字节数；超过上限时为实际字节数或 {@link #OVERSIZED}
+     */
+    public int measure(ItemStack item, int limit) {
+        if (isAvailable()) {
+            try {
+                return encodedSize(item, limit);
+            } catch (IndexOutOfBoundsException e) {
+                return OVERSIZED;
+            } catch (Throwable t) {
+                if (hasOverflowCause(t)) {
+                    return OVERSIZED; // 部分编码器把越界异常包装为 EncoderException
+                }
+                // 其他编码错误交给退化路径，由完整序列化给出结果
+            }
+        }
+        return uncompressedSize(item, limit);
+    }
+
+    private int encodedSize(ItemStack item, int limit) throws Throwable {
+        Object nmsItem = craftHandle != null && craftClass.isInstance(item)
+                ? (Object) craftHandle.invokeExact((Object) item)
+                : (Object) asNmsCopy.invokeExact(item);
+        Buffer buffer = buffers.get();
+        if (buffer == null || buffer.limit != limit) {
+            Object raw = (Object) newBuffer.invokeExact(Math.min(limit, 256), limit);
+            buffer = new Buffer((Object) wrapBuffer.invokeExact(raw, registries), limit);
+            buffers.set(buffer);
+        }
+        clear.invokeExact(buffer.buf);
+        encode.invokeExact(codec, buffer.buf, nmsItem);
+        return (int) writerIndex.invokeExact(buffer.buf);
+    }
+
+    private static boolean hasOverflowCause(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IndexOutOfBoundsException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 退化路径：serializeAsBytes 输出的是 gzip 压缩的 NBT，解压后计数，超过上限即停止
+     */
+    private static int uncompressedSize(ItemStack item, int limit) {
+        byte[] compressed = item.serializeAsBytes();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] scratch = new byte[4096];
+            int total = 0;
+            int read;
+            while ((read = in.read(scratch)) > 0) {
+                total += read;
+                if (total > limit) {
+                    return OVERSIZED;
+                }
+            }
+            return total;
+        } catch (IOException e) {
+            // 不是 gzip 数据，按原始长度计
+            return compressed.length;
+        }
+    }
+}
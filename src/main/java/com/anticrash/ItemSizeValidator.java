@@ -0,0 +1,99 @@
+package com.anticrash;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 物品体积检查
+ * 出站：容器内容包与单格更新包中序列化后超过 max-item-bytes 的物品在数据包中替换为空气，服务端物品保持不变；
+ * 入站：创造模式物品栏包携带超大物品时直接丢弃，物品不会进入服务端；
+ * 体积按未压缩的网络编码计算（见 {@link ItemSizeMeter}），重复内容无法借助压缩绕过上限；超过上限时编码提前终止
+ * 没有任何组件的物品不需要序列化，不消耗预算；每测量一个物品消耗 1 点预算
+ */
+public class ItemSizeValidator implements PacketValidator {
+
+    private static final Set<PacketType> TYPES = new HashSet<>(List.of(
+            PacketType.Play.Server.WINDOW_ITEMS,
+            PacketType.Play.Server.SET_SLOT,
+            PacketType.Play.Client.SET_CREATIVE_SLOT
+    ));
+
+    private final ItemSizeMeter meter;
+
+    public ItemSizeValidator(ItemSizeMeter meter) {
+        this.meter = meter;
+    }
+
+    @Override
+    public String getId() {
+        return "item-size";
+    }
+
+    @Override
+    public Set<PacketType> getPacketTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public int getDefaultBudget() {
+        return 64;
+    }
+
+    @Override
+    public Result validate(PacketContainer packet, Player player, ValidationContext context) {
+        int maxBytes = context.getSettings().getMaxItemBytes();
+        boolean rewritten = false;
+
+        // 每种数据包都带有一个单独的物品：槽位物品或 WINDOW_ITEMS 的光标物品
+        ItemStack single = packet.getItemModifier().read(0);
+        boolean oversized = isOversized(single, maxBytes, context);
+        if (oversized && packet.getType() == PacketType.Play.Client.SET_CREATIVE_SLOT) {
+            return Result.CANCELLED;
+        }
+        if (oversized) {
+            packet.getItemModifier().write(0, new ItemStack(Material.AIR));
+            rewritten = true;
+        }
+
+        if (packet.getType() == PacketType.Play.Server.WINDOW_ITEMS && !context.isExhausted()) {
+            List<ItemStack> items = packet.getItemListModifier().read(0);
+            List<ItemStack> replaced = null;
+            if (items != null) {
+                for (int i = 0; i < items.size() && !context.isExhausted(); i++) {
+                    if (isOversized(items.get(i), maxBytes, context)) {
+                        if (replaced == null) {
+                            replaced = new ArrayList<>(items);
+                        }
+                        replaced.set(i, new ItemStack(Material.AIR));
+                    }
+                }
+            }
+            if (replaced != null) {
+                packet.getItemListModifier().write(0, replaced);
+                rewritten = true;
+            }
+        }
+        return rewritten ? Result.REWRITTEN : Result.PASS;
+    }
+
+    private boolean isOversized(ItemStack item, int maxBytes, ValidationContext context) {
+        if (item == null || !item.hasItemMeta() || !context.spend(1)) {
+            return false;
+        }
+        int size = meter.measure(item, maxBytes);
+        if (size != ItemSizeMeter.OVERSIZED && size <= maxBytes) {
+            return false;
+        }
+        context.report("物品=" + item.getType() + " 大小=" + (size == ItemSizeMeter.OVERSIZED ? ">" + maxBytes : String.valueOf(size))
+                + " 字节 上限=" + maxBytes);
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package com.anticrash;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 纳秒耗时直方图
+ * 按 HdrHistogram 的对数-线性方式分桶：每个 2 的幂区间再均分为 32 个子桶，相对误差约 3%，
+ * 覆盖 0 ~ 2^42 纳秒（约 73 分钟），更大的值计入最后一个桶。
+ * 记录只做一次原子自增，可在任意线程并发调用；读取时复制桶计数后计算分位数，
+ * 与并发记录之间不加锁，分位数允许有一两次记录的误差
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 42;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 直方图在某一时刻的统计结果
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long p50;
+        private final long p99;
+        private final long max;
+        private final long total;
+
+        private Snapshot(long count, long p50, long p99, long max, long total) {
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+            this.total = total;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMean() {
+            return count == 0L ? 0L : total / count;
+        }
+
+        /**
+         * 所有记录的耗时之和（纳秒）
+         */
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0L) {
+            nanos = 0L;
+        }
+        buckets.incrementAndGet(indexOf(nanos));
+        totalNanos.add(nanos);
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0L) {
+            return new Snapshot(0L, 0L, 0L, 0L, 0L);
+        }
+        long maxNanos = max.get();
+        return new Snapshot(count, percentile(counts, count, 0.50, maxNanos), percentile(counts, count, 0.99, maxNanos),
+                maxNanos, totalNanos.sum());
+    }
+
+    /**
+     * 不超过各上界的累计记录数，用于导出 Prometheus 直方图
+     * 以桶的上界判断，跨越某个上界的桶计入下一个上界；结果的最后一项为总记录数
+     * @param bounds 升序排列的上界（纳秒）
+     */
+    public long[] cumulativeCounts(long[] bounds) {
+        long[] result = new long[bounds.length + 1];
+        int bound = 0;
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = buckets.get(i);
+            if (count == 0L) {
+                continue;
+            }
+            long upper = upperBound(i);
+            while (bound < bounds.length && upper > bounds[bound]) {
+                result[bound++] = seen;
+            }
+            seen += count;
+        }
+        while (bound < bounds.length) {
+            result[bound++] = seen;
+        }
+        result[bounds.length] = seen;
+        return result;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+        totalNanos.reset();
+        max.set(0L);
+    }
+
+    /**
+     * 返回分位所在桶的上界（不超过最大值）
+     */
+    private static long percentile(long[] counts, long count, double quantile, long maxNanos) {
+        long target = Math.max(1L, (long) Math.ceil(count * quantile));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + (long) (index % SUB_BUCKETS)) << (exponent - SUB_BUCKET_BITS)) + width - 1L;
+    }
+}
@@ -0,0 +1,62 @@
+package com.anticrash;
+
+import java.util.function.Consumer;
+
+/**
+ * 坐标检查：NaN/Infinite、超出世界边界、Y 轴越界
+ * 坐标正常时回调缓存为安全坐标
+ */
+public class LocationCheck implements PlayerCheck {
+
+    private final Consumer<PlayerSnapshot> safeLocationCallback;
+
+    public LocationCheck(Consumer<PlayerSnapshot> safeLocationCallback) {
+        this.safeLocationCallback = safeLocationCallback;
+    }
+
+    @Override
+    public String getId() {
+        return "location";
+    }
+
+    @Override
+    public int getSubsystems() {
+        return 0; // 坐标每 tick 都可能变化且检查成本极低，始终检查
+    }
+
+    @Override
+    public boolean isEnabled(MonitorSettings settings) {
+        return settings.isCheckLocation();
+    }
+
+    @Override
+    public boolean appliesToDead() {
+        return true;
+    }
+
+    @Override
+    public void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        String name = snapshot.getName();
+        String worldName = snapshot.getWorldName();
+        double x = snapshot.getX();
+        double y = snapshot.getY();
+        double z = snapshot.getZ();
+        int minY = settings.getYMin();
+        int maxY = settings.getYMax();
+        double coordinateMax = settings.getCoordinateMax();
+
+        if (!Double.isFinite(x) || !Double.isFinite(y) || !Double.isFinite(z)) {
+            diagnosis.report(IssueType.LOCATION, true,
+                    "发现玩家坐标异常(NaN/Infinite): 玩家=" + name + " 世界=" + worldName + " X=" + x + " Y=" + y + " Z=" + z);
+        } else if (Math.abs(x) > coordinateMax || Math.abs(z) > coordinateMax) {
+            // 防止坐标溢出导致区块加载崩溃
+            diagnosis.report(IssueType.LOCATION, true,
+                    "发现玩家坐标超出世界边界: 玩家=" + name + " 世界=" + worldName + " X=" + x + " Z=" + z + " 最大=" + coordinateMax);
+        } else if (y < minY || y > maxY) {
+            diagnosis.report(IssueType.LOCATION, true,
+                    "发现玩家坐标越界: 玩家=" + name + " 世界=" + worldName + " Y=" + y + " 范围=[" + minY + "," + maxY + "]");
+        } else {
+            safeLocationCallback.accept(snapshot);
+        }
+    }
+}
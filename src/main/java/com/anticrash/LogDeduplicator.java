@@ -0,0 +1,195 @@
+package com.anticrash;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * 重复日志合并
+ * 位于各模块 logWarn / logError 之前，按 "消息模板 + 玩家 + 属性" 归并日志：
+ * - 同一键在窗口期内首次出现时照常输出，之后的重复只计数，不写控制台与日志文件
+ * - 每秒检查一次到期的窗口，有重复时输出一行 "最近 T 秒内出现 N 次" 的汇总并开始新窗口，
+ *   持续刷屏的异常因此每个窗口只产生一行汇总；整个窗口没有重复的键被移除，下次出现时重新完整输出
+ * - 键表为有界 LRU，被挤出的键如有未汇总的计数，在下一次检查时补写汇总，计数不会丢失
+ * 消息模板取第一个 ": " 之前的文本，玩家取 玩家= 或 接收者= 字段，属性取 属性= 字段；
+ * 不含这些字段的消息只合并完全相同的文本
+ */
+public class LogDeduplicator {
+
+    private static final String[] PLAYER_FIELDS = {"玩家=", "接收者="};
+    private static final String ATTRIBUTE_FIELD = "属性=";
+
+    private final AntiCrashPlugin plugin;
+    private final LongAdder suppressed = new LongAdder();
+    // 以下字段由 this 锁保护
+    private final List<String[]> evicted = new ArrayList<>();
+    private final LinkedHashMap<String, Entry> entries;
+    private boolean enabled = true;
+    private long windowMillis = 30_000L;
+    private int maxKeys = 512;
+
+    /**
+     * 一个键在当前窗口内的状态
+     */
+    private static final class Entry {
+        private final String level;
+        private final String label;
+        private long windowStart;
+        private int repeats;
+        private String lastMessage;
+
+        private Entry(String level, String label, long windowStart) {
+            this.level = level;
+            this.label = label;
+            this.windowStart = windowStart;
+        }
+    }
+
+    public LogDeduplicator(AntiCrashPlugin plugin) {
+        this.plugin = plugin;
+        this.entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxKeys) {
+                    return false;
+                }
+                Entry entry = eldest.getValue();
+                if (entry.repeats > 0) {
+                    evicted.add(summarize(entry, System.currentTimeMillis()));
+                }
+                return true;
+            }
+        };
+    }
+
+    public synchronized void applySettings(MonitorSettings settings) {
+        this.enabled = settings.isLogDedupeEnabled();
+        this.windowMillis = settings.getLogDedupeWindowMillis();
+        this.maxKeys = settings.getLogDedupeMaxKeys();
+    }
+
+    /**
+     * 判断一行日志是否需要立即输出，可在任意线程调用
+     * @param level 日志级别 (WARN / ERROR)，汇总行沿用该级别
+     * @return false 表示该行是窗口期内的重复，已计入汇总
+     */
+    public boolean admit(String level, String message) {
+        String key = keyOf(message);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (!enabled) {
+                return true;
+            }
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entries.put(key, new Entry(level, key.equals(message) ? null : key, now));
+                return true;
+            }
+            if (entry.repeats == 0 && now - entry.windowStart >= windowMillis) {
+                // 已安静一个完整窗口，照常输出并开始新窗口
+                entry.windowStart = now;
+                return true;
+            }
+            entry.repeats++;
+            entry.lastMessage = message;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    /**
+     * 输出到期窗口的汇总，移除安静的键，由全局定时任务每秒调用
+     * @param force 为 true 时输出所有未汇总的计数（插件关闭前调用）
+     */
+    public void sweep(boolean force) {
+        List<String[]> summaries;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            summaries = new ArrayList<>(evicted);
+            evicted.clear();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (!force && now - entry.windowStart < windowMillis) {
+                    continue;
+                }
+                if (entry.repeats > 0) {
+                    summaries.add(summarize(entry, now));
+                    entry.repeats = 0;
+                    entry.lastMessage = null;
+                    entry.windowStart = now;
+                } else {
+                    iterator.remove();
+                }
+            }
+        }
+        for (String[] summary : summaries) {
+            plugin.getLogger().log("ERROR".equals(summary[0]) ? Level.SEVERE : Level.WARNING, summary[1]);
+            plugin.getLogManager().log(summary[0], summary[1]);
+        }
+    }
+
+    /**
+     * 被合并、未单独输出的日志行数
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    public synchronized int getKeyCount() {
+        return entries.size();
+    }
+
+    private static String[] summarize(Entry entry, long now) {
+        long seconds = Math.max(1L, (now - entry.windowStart + 999L) / 1000L);
+        String text = entry.label != null
+                ? "重复日志已合并: " + entry.label + " 最近 " + seconds + " 秒内又出现 " + entry.repeats + " 次，最后一条: " + entry.lastMessage
+                : "重复日志已合并: 最近 " + seconds + " 秒内又出现 " + entry.repeats + " 次: " + entry.lastMessage;
+        return new String[]{entry.level, text};
+    }
+
+    /**
+     * 消息模板 + 玩家 + 属性；不含玩家与属性字段时返回原文
+     */
+    static String keyOf(String message) {
+        int colon = message.indexOf(": ");
+        if (colon < 0) {
+            return message;
+        }
+        String playerField = null;
+        String player = null;
+        for (String field : PLAYER_FIELDS) {
+            player = fieldValue(message, field, colon);
+            if (player != null) {
+                playerField = field;
+                break;
+            }
+        }
+        String attribute = fieldValue(message, ATTRIBUTE_FIELD, colon);
+        if (player == null && attribute == null) {
+            return message;
+        }
+        StringBuilder key = new StringBuilder(colon + 48).append(message, 0, colon);
+        if (player != null) {
+            key.append(' ').append(playerField).append(player);
+        }
+        if (attribute != null) {
+            key.append(' ').append(ATTRIBUTE_FIELD).append(attribute);
+        }
+        return key.toString();
+    }
+
+    private static String fieldValue(String message, String field, int from) {
+        int start = message.indexOf(field, from);
+        if (start < 0) {
+            return null;
+        }
+        start += field.length();
+        int end = message.indexOf(' ', start);
+        return message.substring(start, end < 0 ? message.length() : end);
+    }
+}
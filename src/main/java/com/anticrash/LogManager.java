@@ -1,53 +1,136 @@
 package com.anticrash;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * 插件专属日志
+ * 任意线程调用 {@link #log} 只把一行日志放入有界队列，由唯一的写入线程批量写入按日分文件的日志：
+ * - 队列已满时丢弃该行并计数，调用方永不阻塞；写入线程随后补写一行丢弃统计
+ * - 日志文件的 FileChannel 长期保持打开，跨天或超过 logging.max-file-size-mb 时才滚动
+ * - 缓冲满 64 KiB 或距上次写入满 1 秒时写入文件，时间戳在调用时记录、在写入线程格式化
+ * 滚动只是把当前文件重命名为 日期-序号.log 并打开新文件；gzip 压缩与按数量/总大小清理历史文件
+ * 交给低优先级的压缩线程，写入线程从不等待压缩
+ */
 public class LogManager {
-    
-    private final AntiCrashPlugin plugin;
-    private File logDir;
-    private File currentLogFile;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
-    private final Object lock = new Object();
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+    // 写入线程等待新日志的最长时间，同时决定关闭时的最大等待
+    private static final long POLL_MILLIS = 200L;
+    // 打开日志文件失败后暂停重试的时间
+    private static final long REOPEN_DELAY_MILLIS = 10_000L;
+    // 每次从队列批量取出的最大行数
+    private static final int DRAIN_BATCH = 512;
+    // 日志文件名: 2023-10-27.log（正在写入）、2023-10-27-1.log（已滚动）、2023-10-27-1.log.gz（已压缩）
+    private static final Pattern LOG_FILE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})(?:-(\\d+))?\\.log(\\.gz)?");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File logDir;
+    private final Logger logger;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    // 日志从入队到被写入线程取出的等待时间
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final Thread writer;
+    private final ExecutorService compressor;
+    private volatile boolean running = true;
+    // 滚动与保留策略，由 applySettings 更新
+    private volatile long maxFileBytes = 64L * 1024L * 1024L;
+    private volatile boolean compress = true;
+    private volatile int maxFiles = 30;
+    private volatile long maxTotalBytes = 512L * 1024L * 1024L;
+    // 正在写入（或刚关闭、即将重新打开）的文件名，压缩线程不会处理该文件
+    private volatile String activeFileName;
+
+    // 以下字段只在写入线程访问
+    private final StringBuilder buffer = new StringBuilder(FLUSH_BYTES);
+    private long lastFlush = System.currentTimeMillis();
+    private long reportedDropped;
+    private FileChannel channel;
+    private long dayStart;
+    private long nextDayStart;
+    private long reopenAfter;
+    private LocalDate currentDate;
+    private long fileBytes;
+
+    /**
+     * 一行待写入的日志，时间在调用时记录
+     */
+    private static final class Entry {
+        private final long millis;
+        private final long enqueuedNanos;
+        private final String level;
+        private final String message;
+
+        private Entry(long millis, String level, String message) {
+            this.millis = millis;
+            this.enqueuedNanos = System.nanoTime();
+            this.level = level;
+            this.message = message;
+        }
+    }
 
     public LogManager(AntiCrashPlugin plugin) {
-        this.plugin = plugin;
-        init();
+        // 日志目录: plugins/AntiCrashProtector/logs
+        this(new File(plugin.getDataFolder(), "logs"), plugin.getLogger());
     }
 
-    private void init() {
-        // 创建 logs 文件夹: plugins/AntiCrashProtector/logs
-        logDir = new File(plugin.getDataFolder(), "logs");
+    LogManager(File logDir, Logger logger) {
+        this.logDir = logDir;
+        this.logger = logger;
         if (!logDir.exists()) {
             logDir.mkdirs();
         }
-        
-        // 创建今天的日志文件: 2023-10-27.log
-        checkLogFile();
+        this.writer = new Thread(this::writeLoop, "AntiCrashProtector-Log");
+        this.writer.setDaemon(true);
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "AntiCrashProtector-LogCompress");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.writer.start();
     }
 
-    private void checkLogFile() {
-        String dateStr = dateFormat.format(new Date());
-        File targetFile = new File(logDir, dateStr + ".log");
-        
-        // 如果文件名变了（过了一天），或者文件不存在
-        if (currentLogFile == null || !currentLogFile.getName().equals(targetFile.getName())) {
-            currentLogFile = targetFile;
-            if (!currentLogFile.exists()) {
-                try {
-                    currentLogFile.createNewFile();
-                } catch (IOException e) {
-                    plugin.getLogger().log(Level.SEVERE, "无法创建日志文件", e);
-                }
-            }
-        }
+    /**
+     * 应用滚动与保留策略，并在压缩线程上整理一次历史文件（压缩遗留的未压缩文件、按保留策略清理）
+     */
+    public void applySettings(MonitorSettings settings) {
+        this.maxFileBytes = settings.getLogMaxFileBytes();
+        this.compress = settings.isLogCompress();
+        this.maxFiles = settings.getLogMaxFiles();
+        this.maxTotalBytes = settings.getLogMaxTotalBytes();
+        submit(this::sweep);
     }
 
     public void log(String message) {
@@ -55,23 +138,332 @@ public class LogManager {
     }
 
     public void log(String level, String message) {
-        // 异步写入文件，避免阻塞主线程
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            synchronized (lock) {
-                try {
-                    // 每次写入前检查日期，确保跨天也能生成新文件
-                    checkLogFile();
-                    
-                    try (FileWriter fw = new FileWriter(currentLogFile, true);
-                         PrintWriter pw = new PrintWriter(fw)) {
-                        
-                        String timestamp = timeFormat.format(new Date());
-                        pw.println("[" + timestamp + "] [" + level + "] " + message);
+        if (!running || !queue.offer(new Entry(System.currentTimeMillis(), level, message))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 因队列已满或已关闭而丢弃的行数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 已写入文件的行数
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return QUEUE_CAPACITY;
+    }
+
+    /**
+     * 日志在队列中的等待时间
+     */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * 停止写入线程：写完队列中剩余的日志后关闭文件
+     */
+    public void shutdown() {
+        // 不中断写入线程：FileChannel 在写入时被中断会直接关闭
+        running = false;
+        try {
+            writer.join(3000L);
+            // 未完成的压缩保留原文件，下次启动时重新压缩
+            compressor.shutdown();
+            if (!compressor.awaitTermination(2000L, TimeUnit.MILLISECONDS)) {
+                compressor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(DRAIN_BATCH);
+        while (running) {
+            try {
+                Entry first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    append(first);
+                    queue.drainTo(batch, DRAIN_BATCH);
+                    for (Entry entry : batch) {
+                        append(entry);
                     }
-                } catch (IOException e) {
-                    plugin.getLogger().log(Level.WARNING, "写入日志文件失败", e);
+                    batch.clear();
                 }
+                if (buffer.length() >= FLUSH_BYTES || System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+                    flush();
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "写入日志文件失败", e);
+                buffer.setLength(0);
+                batch.clear();
+            }
+        }
+        try {
+            while (queue.drainTo(batch, DRAIN_BATCH) > 0) {
+                for (Entry entry : batch) {
+                    append(entry);
+                }
+                batch.clear();
             }
+            flush();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "写入日志文件失败", e);
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void append(Entry entry) throws IOException {
+        queueLatency.record(System.nanoTime() - entry.enqueuedNanos);
+        // 跨天时先写完前一天的内容，滚动后再切换文件
+        if (entry.millis >= nextDayStart || entry.millis < dayStart) {
+            flush();
+            rollActiveFile();
+            openFile(entry.millis);
+        } else if (channel == null && entry.millis >= reopenAfter) {
+            openFile(entry.millis);
+        }
+        appendLine(entry.millis, entry.level, entry.message);
+        written.increment();
+        if (buffer.length() >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    private void appendLine(long millis, String level, String message) {
+        long secondOfDay = (millis - dayStart) / 1000L;
+        buffer.append('[');
+        appendTwoDigits(secondOfDay / 3600);
+        buffer.append(':');
+        appendTwoDigits(secondOfDay / 60 % 60);
+        buffer.append(':');
+        appendTwoDigits(secondOfDay % 60);
+        buffer.append("] [").append(level).append("] ").append(message).append(System.lineSeparator());
+    }
+
+    private void appendTwoDigits(long value) {
+        if (value < 10) {
+            buffer.append('0');
+        }
+        buffer.append(value);
+    }
+
+    private void flush() throws IOException {
+        long dropCount = dropped.sum();
+        if (dropCount > reportedDropped && channel != null) {
+            appendLine(System.currentTimeMillis(), "WARN", "日志队列已满，已丢弃 " + (dropCount - reportedDropped) + " 行日志");
+            reportedDropped = dropCount;
+        }
+        lastFlush = System.currentTimeMillis();
+        if (channel == null) {
+            // 日志文件不可用，丢弃缓冲内容避免无限增长
+            buffer.setLength(0);
+            return;
+        }
+        if (buffer.length() == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toString().getBytes(StandardCharsets.UTF_8));
+        buffer.setLength(0);
+        while (bytes.hasRemaining()) {
+            fileBytes += channel.write(bytes);
+        }
+        if (fileBytes >= maxFileBytes) {
+            rollActiveFile();
+            openFile(dayStart);
+        }
+    }
+
+    /**
+     * 关闭并重命名正在写入的文件，压缩与清理交给压缩线程
+     */
+    private void rollActiveFile() throws IOException {
+        String name = activeFileName;
+        LocalDate date = currentDate;
+        closeChannel();
+        if (name == null) {
+            return;
+        }
+        File active = new File(logDir, name);
+        if (!active.isFile() || active.length() == 0) {
+            return;
+        }
+        File rolled = new File(logDir, date + "-" + nextIndex(date) + ".log");
+        Files.move(active.toPath(), rolled.toPath());
+        submit(() -> {
+            if (compress) {
+                compressFile(rolled);
+            }
+            prune();
         });
     }
+
+    /**
+     * 某一天下一个可用的滚动序号
+     */
+    private int nextIndex(LocalDate date) {
+        int max = 0;
+        String[] names = logDir.list();
+        if (names != null) {
+            for (String fileName : names) {
+                Matcher matcher = LOG_FILE.matcher(fileName);
+                if (matcher.matches() && matcher.group(2) != null && matcher.group(1).equals(date.toString())) {
+                    max = Math.max(max, Integer.parseInt(matcher.group(2)));
+                }
+            }
+        }
+        return max + 1;
+    }
+
+    /**
+     * 打开某一天的日志文件: 2023-10-27.log
+     */
+    private void openFile(long millis) throws IOException {
+        closeChannel();
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        dayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        nextDayStart = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        currentDate = date;
+        File file = new File(logDir, date + ".log");
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            fileBytes = channel.size();
+            activeFileName = file.getName();
+        } catch (IOException e) {
+            reopenAfter = millis + REOPEN_DELAY_MILLIS;
+            throw e;
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "关闭日志文件失败", e);
+        }
+        // 保留 activeFileName 直到打开下一个文件，滚动期间压缩线程不会把该文件当作历史文件
+        channel = null;
+    }
+
+    private void submit(Runnable task) {
+        try {
+            compressor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "整理历史日志文件失败", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已关闭，剩余文件在下次启动时整理
+        }
+    }
+
+    /**
+     * 压缩线程：删除中断遗留的临时文件，压缩未压缩的历史文件，然后按保留策略清理
+     */
+    private void sweep() {
+        File[] files = logDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String today = LocalDate.now().toString();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            Matcher matcher = LOG_FILE.matcher(name);
+            // 今天未编号的文件正在或即将被写入，不处理
+            if (!compress || !matcher.matches() || matcher.group(3) != null || name.equals(activeFileName)
+                    || (matcher.group(2) == null && matcher.group(1).equals(today))) {
+                continue;
+            }
+            compressFile(file);
+        }
+        prune();
+    }
+
+    /**
+     * 压缩线程：先写入临时文件，完成后再替换，中断时原文件保持完整
+     */
+    private void compressFile(File source) {
+        if (!source.isFile()) {
+            return; // 已被其他整理任务处理或清理
+        }
+        File target = new File(logDir, source.getName() + ".gz");
+        File temp = new File(logDir, target.getName() + TEMP_SUFFIX);
+        try {
+            try (InputStream in = Files.newInputStream(source.toPath());
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp.toPath()), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(source.toPath());
+        } catch (IOException e) {
+            temp.delete();
+            logger.log(Level.WARNING, "压缩日志文件失败: " + source.getName(), e);
+        }
+    }
+
+    private static String dateOf(String name) {
+        Matcher matcher = LOG_FILE.matcher(name);
+        return matcher.matches() ? matcher.group(1) : "";
+    }
+
+    /**
+     * 未编号的文件是旧版本按天写入的完整文件，排在当天所有滚动文件之后
+     */
+    private static int indexOf(String name) {
+        Matcher matcher = LOG_FILE.matcher(name);
+        return matcher.matches() && matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 压缩线程：历史文件超过数量或总大小上限时从最旧的开始删除，正在写入的文件不计入
+     */
+    private void prune() {
+        File[] files = logDir.listFiles((dir, name) -> LOG_FILE.matcher(name).matches() && !name.equals(activeFileName));
+        if (files == null) {
+            return;
+        }
+        // 按文件名中的日期与序号排序；压缩完成的时间不代表日志的新旧
+        Arrays.sort(files, Comparator.comparing((File file) -> dateOf(file.getName())).thenComparingInt(file -> indexOf(file.getName())));
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        int count = files.length;
+        for (File file : files) {
+            if (count <= maxFiles && total <= maxTotalBytes) {
+                break;
+            }
+            long size = file.length();
+            if (file.delete()) {
+                count--;
+                total -= size;
+            }
+        }
+    }
 }
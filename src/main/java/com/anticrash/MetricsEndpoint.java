@@ -0,0 +1,233 @@
+package com.anticrash;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Prometheus 文本格式的本地指标接口
+ * 使用 JDK 自带的 com.sun.net.httpserver，只绑定 127.0.0.1，默认关闭。
+ * 指标由后台线程按 diagnostics.metrics.http.refresh-seconds 定期渲染为字节数组，
+ * 抓取请求只返回最近一次渲染的结果，不访问 Bukkit API，也不会等待主线程。
+ * 渲染只读取各模块的原子计数器与直方图，同样不经过主线程
+ */
+public class MetricsEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // 导出直方图使用的上界（纳秒）
+    private static final long[] BOUNDS = {
+            1_000L, 5_000L, 10_000L, 50_000L, 100_000L, 500_000L,
+            1_000_000L, 5_000_000L, 10_000_000L, 50_000_000L
+    };
+    private static final IssueType[] ISSUE_TYPES = IssueType.values();
+
+    private final AntiCrashPlugin plugin;
+    // 以下字段由 this 锁保护
+    private HttpServer server;
+    private ScheduledExecutorService executor;
+    private int port;
+    private long refreshMillis;
+
+    private volatile byte[] rendered = new byte[0];
+
+    public MetricsEndpoint(AntiCrashPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 按配置启动、重启或关闭接口，端口或刷新间隔变化时重新绑定
+     */
+    public synchronized void applySettings(MonitorSettings settings) {
+        if (!settings.isMetricsEnabled() || !settings.isMetricsHttpEnabled()) {
+            stop();
+            return;
+        }
+        if (server != null && port == settings.getMetricsHttpPort() && refreshMillis == settings.getMetricsRefreshMillis()) {
+            return;
+        }
+        stop();
+        start(settings.getMetricsHttpPort(), settings.getMetricsRefreshMillis());
+    }
+
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    public synchronized int getPort() {
+        return port;
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void start(int port, long refreshMillis) {
+        ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "AntiCrashProtector-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            httpServer.createContext("/metrics", this::handle);
+            // 渲染与请求处理共用同一个后台线程
+            httpServer.setExecutor(service);
+            render();
+            service.scheduleAtFixedRate(this::renderSafely, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+            httpServer.start();
+            this.server = httpServer;
+            this.executor = service;
+            this.port = port;
+            this.refreshMillis = refreshMillis;
+            plugin.getLogger().info("[指标] Prometheus 指标接口已启动: http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException e) {
+            service.shutdownNow();
+            plugin.getLogger().warning("无法启动 Prometheus 指标接口: 端口=" + port + " 信息=" + e.getMessage());
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = rendered;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void renderSafely() {
+        try {
+            render();
+        } catch (Exception e) {
+            // 渲染失败时继续提供上一次的结果，定时任务不能因异常终止
+            plugin.getLogger().log(Level.WARNING, "渲染 Prometheus 指标失败", e);
+        }
+    }
+
+    private void render() {
+        StringBuilder out = new StringBuilder(8192);
+        PluginMetrics metrics = plugin.getMetrics();
+
+        // 扫描吞吐：每次采集快照对应一次扫描（巡逻、手动检查与指令前检查）
+        header(out, "anticrash_scans_total", "counter", "玩家扫描次数");
+        sample(out, "anticrash_scans_total", null, metrics.getSnapshot(PluginMetrics.Timer.DIAGNOSE_CAPTURE).getCount());
+
+        header(out, "anticrash_latency_seconds", "histogram", "热点路径耗时");
+        histogram(out, "tick", metrics.getTickHistogram());
+        for (PluginMetrics.Timer timer : PluginMetrics.Timer.values()) {
+            histogram(out, timer.getId(), metrics.getHistogram(timer));
+        }
+        histogram(out, "log-queue", plugin.getLogManager().getQueueLatency());
+
+        header(out, "anticrash_latency_max_seconds", "gauge", "热点路径最大耗时");
+        sample(out, "anticrash_latency_max_seconds", "path=\"tick\"", seconds(metrics.getTickSnapshot().getMax()));
+        for (PluginMetrics.Timer timer : PluginMetrics.Timer.values()) {
+            sample(out, "anticrash_latency_max_seconds", "path=\"" + timer.getId() + "\"", seconds(metrics.getSnapshot(timer).getMax()));
+        }
+        sample(out, "anticrash_latency_max_seconds", "path=\"log-queue\"", seconds(plugin.getLogManager().getQueueLatency().snapshot().getMax()));
+
+        header(out, "anticrash_detections_total", "counter", "按异常类型统计的发现次数");
+        for (IssueType type : ISSUE_TYPES) {
+            sample(out, "anticrash_detections_total", typeLabel(type), metrics.getDetections(type));
+        }
+        header(out, "anticrash_repairs_total", "counter", "按异常类型统计的修复次数");
+        for (IssueType type : ISSUE_TYPES) {
+            sample(out, "anticrash_repairs_total", typeLabel(type), metrics.getRepairs(type));
+        }
+
+        AttributePacketInterceptor interceptor = plugin.getAttributePacketInterceptor();
+        if (interceptor != null && interceptor.isRegistered()) {
+            AttributePacketStats stats = interceptor.getStats();
+            header(out, "anticrash_attribute_packets_total", "counter", "属性包处理结果");
+            sample(out, "anticrash_attribute_packets_total", "result=\"seen\"", stats.getPackets());
+            sample(out, "anticrash_attribute_packets_total", "result=\"coalesced\"", stats.getCoalescedPackets());
+            sample(out, "anticrash_attribute_packets_total", "result=\"sanitized\"", stats.getSanitizedPackets());
+            header(out, "anticrash_packet_validator_total", "counter", "数据包检查器执行结果");
+            for (PacketValidatorRegistry.Registration registration : interceptor.getValidators().getRegistrations()) {
+                String validator = "validator=\"" + registration.getId() + "\"";
+                sample(out, "anticrash_packet_validator_total", validator + ",result=\"checked\"", registration.getInvocations());
+                sample(out, "anticrash_packet_validator_total", validator + ",result=\"rewritten\"", registration.getRewritten());
+                sample(out, "anticrash_packet_validator_total", validator + ",result=\"cancelled\"", registration.getCancelled());
+                sample(out, "anticrash_packet_validator_total", validator + ",result=\"exhausted\"", registration.getExhausted());
+                sample(out, "anticrash_packet_validator_total", validator + ",result=\"error\"", registration.getErrors());
+            }
+        }
+
+        LogManager logManager = plugin.getLogManager();
+        header(out, "anticrash_log_queue_depth", "gauge", "日志队列中等待写入的行数");
+        sample(out, "anticrash_log_queue_depth", null, logManager.getQueueSize());
+        header(out, "anticrash_log_queue_capacity", "gauge", "日志队列容量");
+        sample(out, "anticrash_log_queue_capacity", null, logManager.getQueueCapacity());
+        header(out, "anticrash_log_lines_total", "counter", "日志行处理结果");
+        sample(out, "anticrash_log_lines_total", "result=\"written\"", logManager.getWrittenCount());
+        sample(out, "anticrash_log_lines_total", "result=\"dropped\"", logManager.getDroppedCount());
+        sample(out, "anticrash_log_lines_total", "result=\"merged\"", plugin.getLogDeduplicator().getSuppressedCount());
+
+        rendered = out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void histogram(StringBuilder out, String path, LatencyHistogram histogram) {
+        String label = "path=\"" + path + "\"";
+        long[] cumulative = histogram.cumulativeCounts(BOUNDS);
+        for (int i = 0; i < BOUNDS.length; i++) {
+            // le 使用普通小数写法 (0.000001)，便于在面板中按桶筛选
+            String le = BigDecimal.valueOf(BOUNDS[i], 9).stripTrailingZeros().toPlainString();
+            sample(out, "anticrash_latency_seconds_bucket", label + ",le=\"" + le + "\"", cumulative[i]);
+        }
+        long count = cumulative[BOUNDS.length];
+        sample(out, "anticrash_latency_seconds_bucket", label + ",le=\"+Inf\"", count);
+        sample(out, "anticrash_latency_seconds_sum", label, seconds(histogram.snapshot().getTotal()));
+        sample(out, "anticrash_latency_seconds_count", label, count);
+    }
+
+    private static String typeLabel(IssueType type) {
+        return "type=\"" + type.name().toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1_000_000_000.0);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+}
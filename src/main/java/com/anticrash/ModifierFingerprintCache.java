@@ -0,0 +1,201 @@
+package com.anticrash;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.attribute.AttributeModifier;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 属性修饰符指纹缓存
+ * 每次完整遍历修饰符集合后，按玩家、按属性记录：属性最终值/基础值、修饰符数量、修饰符数值与 Key 的滚动哈希。
+ * 再次检查时只需读取最终值与基础值 (O(1))，与上次完整遍历时一致且未到复核时间即可跳过遍历；
+ * 任意修饰符的增删改都会使最终值重新计算，指纹随之变化，触发完整遍历。
+ * 只有遍历成功且所有数值合法时才会记录指纹，因此被跳过的属性一定是上次确认过的健康状态
+ */
+public class ModifierFingerprintCache {
+
+    private static final Attribute[] ATTRIBUTES = Attribute.values();
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+    private volatile long verifyIntervalNanos;
+
+    /**
+     * 单个玩家的指纹表（按 Attribute 序号索引）
+     * 同一玩家的检查可能来自所在区域线程与数据包线程，读写都加锁
+     */
+    private static final class Entry {
+        private final boolean[] valid = new boolean[ATTRIBUTES.length];
+        private final long[] valueFingerprint = new long[ATTRIBUTES.length];
+        private final int[] modifierCount = new int[ATTRIBUTES.length];
+        private final long[] modifierHash = new long[ATTRIBUTES.length];
+        private final long[] verifiedAt = new long[ATTRIBUTES.length];
+    }
+
+    /**
+     * 应用配置快照中的指纹缓存参数
+     */
+    public void applySettings(MonitorSettings settings) {
+        this.enabled = settings.isFingerprintEnabled();
+        // 复核间隔以 tick 配置，按 50ms/tick 换算
+        this.verifyIntervalNanos = settings.getFingerprintVerifyTicks() * 50_000_000L;
+        if (!enabled) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * 查询属性修饰符集合自上次完整遍历以来是否未变化
+     *
+     * @param index Attribute 序号
+     * @return 可以跳过遍历时返回上次遍历得到的修饰符数量，否则返回 -1
+     */
+    public int lookup(UUID uuid, int index, double value, double base) {
+        if (!enabled || uuid == null) {
+            return -1;
+        }
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return -1;
+        }
+        synchronized (entry) {
+            if (!entry.valid[index]
+                    || entry.valueFingerprint[index] != valueFingerprint(value, base)
+                    || System.nanoTime() - entry.verifiedAt[index] >= verifyIntervalNanos) {
+                return -1;
+            }
+            return entry.modifierCount[index];
+        }
+    }
+
+    /**
+     * 记录一次成功且数值全部合法的完整遍历
+     */
+    public void record(UUID uuid, int index, double value, double base, int count, long hash) {
+        if (!enabled || uuid == null) {
+            return;
+        }
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(uuid, key -> new Entry());
+        }
+        synchronized (entry) {
+            long fingerprint = valueFingerprint(value, base);
+            if (entry.valid[index] && entry.valueFingerprint[index] == fingerprint
+                    && (entry.modifierCount[index] != count || entry.modifierHash[index] != hash)) {
+                // 最终值未变但修饰符已变化（如新增数值为 0 的修饰符），说明仅凭最终值不足以判断，本次不缓存
+                entry.valid[index] = false;
+                return;
+            }
+            entry.valid[index] = true;
+            entry.valueFingerprint[index] = fingerprint;
+            entry.modifierCount[index] = count;
+            entry.modifierHash[index] = hash;
+            entry.verifiedAt[index] = System.nanoTime();
+        }
+    }
+
+    /**
+     * 使单个属性的指纹失效（遍历失败或修复后调用）
+     */
+    public void invalidate(UUID uuid, int index) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.valid[index] = false;
+            }
+        }
+    }
+
+    /**
+     * 使玩家所有属性的指纹失效
+     */
+    public void invalidate(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    public void remove(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 检查单个属性的修饰符集合：指纹未变化时直接返回，否则完整遍历并更新指纹
+     * 遍历时集合内部损坏抛出的 NullPointerException 会原样抛出，由调用方修复
+     *
+     * @param index Attribute 序号
+     */
+    public void verify(UUID uuid, int index, AttributeInstance attrInstance) {
+        double value;
+        double base;
+        try {
+            value = attrInstance.getValue();
+            base = attrInstance.getBaseValue();
+        } catch (RuntimeException e) {
+            // 最终值无法计算时直接遍历，由遍历暴露具体问题
+            invalidate(uuid, index);
+            walk(attrInstance.getModifiers());
+            return;
+        }
+        if (lookup(uuid, index, value, base) >= 0) {
+            return;
+        }
+        Collection<AttributeModifier> modifiers = attrInstance.getModifiers();
+        int count = 0;
+        long hash = 0L;
+        boolean finite = Double.isFinite(value) && Double.isFinite(base);
+        if (modifiers != null) {
+            for (AttributeModifier modifier : modifiers) {
+                if (modifier == null) continue;
+                double amount = modifier.getAmount();
+                finite &= Double.isFinite(amount);
+                hash = mix(hash, modifier, amount);
+                count++;
+            }
+        }
+        if (finite) {
+            record(uuid, index, value, base, count, hash);
+        } else {
+            invalidate(uuid, index);
+        }
+    }
+
+    /**
+     * 累加单个修饰符的哈希
+     * 使用加法组合，结果与集合的遍历顺序无关（哈希表扩容后顺序会变化）
+     */
+    public static long mix(long hash, AttributeModifier modifier, double amount) {
+        long h = Double.doubleToLongBits(amount) * 0x9E3779B97F4A7C15L;
+        NamespacedKey key = modifier.getKey();
+        if (key != null) {
+            h ^= key.hashCode();
+        }
+        AttributeModifier.Operation operation = modifier.getOperation();
+        if (operation != null) {
+            h ^= (long) operation.ordinal() << 32;
+        }
+        return hash + (h ^ (h >>> 29));
+    }
+
+    private static void walk(Collection<AttributeModifier> modifiers) {
+        if (modifiers == null) {
+            return;
+        }
+        for (AttributeModifier modifier : modifiers) {
+            if (modifier == null) continue;
+            modifier.getAmount();
+        }
+    }
+
+    private static long valueFingerprint(double value, double base) {
+        return Double.doubleToRawLongBits(value) * 31L + Double.doubleToRawLongBits(base);
+    }
+}
@@ -0,0 +1,506 @@
+package com.anticrash;
+
+import org.bukkit.Bukkit;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 异步修改检测器（可选诊断模式）
+ * fastutil 集合损坏的根源几乎总是其他插件在异步线程增删 AttributeModifier。
+ * 开启后把每个属性实例内部的修饰符集合替换为轻量装饰器，每次写操作检查 Bukkit.isPrimaryThread()，
+ * 发现非服务器线程的写入时按采样率记录调用栈，并沿调用栈定位发起修改的插件。
+ * 正常写入只多一次线程判断，读取与遍历不经过任何检查
+ * Folia 上 isPrimaryThread 对所有区域线程都返回 true，只能发现真正的异步线程写入
+ */
+public class ModifierMutationDetector implements Listener {
+
+    // 记录的调用栈最大帧数
+    private static final int MAX_STACK_FRAMES = 16;
+    private static final Attribute[] ATTRIBUTES = Attribute.values();
+
+    private final AntiCrashPlugin plugin;
+    private volatile boolean enabled;
+    private volatile int sampleRate = 16;
+    private final LongAdder violations = new LongAdder();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final Map<String, Culprit> culprits = new ConcurrentHashMap<>();
+
+    /**
+     * 单个来源插件的违规记录（只统计被采样的违规）
+     */
+    public static final class Culprit {
+        private final String owner;
+        private final LongAdder samples = new LongAdder();
+        private volatile String lastThread;
+        private volatile String lastAttribute;
+        private volatile String lastOperation;
+        private volatile String lastStack;
+        private volatile long lastSeen;
+
+        private Culprit(String owner) {
+            this.owner = owner;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public long getSamples() {
+            return samples.sum();
+        }
+
+        public String getLastThread() {
+            return lastThread;
+        }
+
+        public String getLastAttribute() {
+            return lastAttribute;
+        }
+
+        public String getLastOperation() {
+            return lastOperation;
+        }
+
+        public String getLastStack() {
+            return lastStack;
+        }
+
+        public long getLastSeen() {
+            return lastSeen;
+        }
+    }
+
+    public ModifierMutationDetector(AntiCrashPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 应用配置快照，开关变化时为所有在线玩家安装或卸载装饰器
+     */
+    public void applySettings(MonitorSettings settings) {
+        this.sampleRate = settings.getMutationSampleRate();
+        boolean next = settings.isEnabled() && settings.isMutationDetectorEnabled();
+        if (next == enabled) {
+            return;
+        }
+        if (next && !plugin.getNmsAttributeAccessor().isAvailable()) {
+            plugin.getLogger().warning("[核心] NMS 属性访问层不可用，异步修改检测器无法启用");
+            return;
+        }
+        this.enabled = next;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            plugin.getPlatformScheduler().runForEntity(player, next ? () -> install(player) : () -> uninstall(player));
+        }
+        if (next) {
+            plugin.getLogger().info("[核心] 异步修改检测器已启用 (采样率 1/" + sampleRate + ")");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 插件卸载时立即还原所有装饰器，避免服务端对象继续引用本插件的类
+     */
+    public void shutdown() {
+        enabled = false;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            uninstall(player);
+        }
+    }
+
+    public long getViolationCount() {
+        return violations.sum();
+    }
+
+    /**
+     * 按最近一次出现时间倒序的来源插件列表
+     */
+    public List<Culprit> getCulprits() {
+        List<Culprit> result = new ArrayList<>(culprits.values());
+        result.sort(Comparator.comparingLong(Culprit::getLastSeen).reversed());
+        return result;
+    }
+
+    public void reset() {
+        violations.reset();
+        culprits.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (enabled) {
+            install(event.getPlayer());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        reinstallLater(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        reinstallLater(event.getPlayer());
+    }
+
+    /**
+     * 重生等操作会重建属性实例，等待 1 tick 后为新实例安装装饰器（已安装的实例会跳过）
+     */
+    private void reinstallLater(Player player) {
+        if (!enabled) {
+            return;
+        }
+        plugin.getPlatformScheduler().runForEntityLater(player, () -> {
+            if (enabled && player.isOnline()) {
+                install(player);
+            }
+        }, 1L);
+    }
+
+    /**
+     * 为玩家当前所有属性实例安装装饰器，必须在拥有该玩家的线程上调用
+     */
+    private void install(Player player) {
+        NmsAttributeAccessor accessor = plugin.getNmsAttributeAccessor();
+        for (int i : plugin.getAttributeIndex().get(player)) {
+            try {
+                AttributeInstance attrInstance = player.getAttribute(ATTRIBUTES[i]);
+                if (attrInstance == null) continue;
+                String attribute = ATTRIBUTES[i].name();
+                accessor.replaceModifierCollections(attrInstance, value -> wrap(value, attribute));
+            } catch (Exception e) {
+                // 单个属性失败不影响其他属性
+            }
+        }
+    }
+
+    private void uninstall(Player player) {
+        NmsAttributeAccessor accessor = plugin.getNmsAttributeAccessor();
+        for (Attribute attr : ATTRIBUTES) {
+            try {
+                AttributeInstance attrInstance = player.getAttribute(attr);
+                if (attrInstance == null) continue;
+                accessor.replaceModifierCollections(attrInstance,
+                        value -> value instanceof Guarded ? ((Guarded) value).unwrap() : null);
+            } catch (Exception e) {
+                // 该版本不支持此属性
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object wrap(Object value, String attribute) {
+        if (value instanceof Guarded) {
+            return null; // 已安装
+        }
+        if (value instanceof Map) {
+            return new GuardedMap<>((Map<Object, Object>) value, attribute);
+        }
+        if (value instanceof Set) {
+            return new GuardedSet<>((Set<Object>) value, attribute);
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次非服务器线程的写入
+     * 只有被采样的违规才遍历调用栈，未采样的违规仅计数
+     */
+    private void recordViolation(String attribute, String operation) {
+        violations.increment();
+        int rate = sampleRate;
+        if (sampleCounter.getAndIncrement() % rate != 0) {
+            return;
+        }
+        List<String> frames = new ArrayList<>();
+        String owner = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE).walk(stream -> {
+            String found = null;
+            Iterator<StackWalker.StackFrame> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                StackWalker.StackFrame frame = iterator.next();
+                Class<?> declaring = frame.getDeclaringClass();
+                if (declaring == ModifierMutationDetector.class || declaring.getEnclosingClass() == ModifierMutationDetector.class) {
+                    continue; // 跳过装饰器自身
+                }
+                if (frames.size() < MAX_STACK_FRAMES) {
+                    frames.add(frame.toStackTraceElement().toString());
+                }
+                if (found == null) {
+                    found = resolvePlugin(declaring);
+                }
+                if (found != null && frames.size() >= MAX_STACK_FRAMES) {
+                    break;
+                }
+            }
+            return found != null ? found : "未知";
+        });
+
+        Culprit culprit = culprits.computeIfAbsent(owner, Culprit::new);
+        boolean first = culprit.getSamples() == 0;
+        culprit.samples.increment();
+        culprit.lastThread = Thread.currentThread().getName();
+        culprit.lastAttribute = attribute;
+        culprit.lastOperation = operation;
+        culprit.lastStack = String.join("\n    at ", frames);
+        culprit.lastSeen = System.currentTimeMillis();
+        if (first) {
+            String message = "检测到异步线程修改属性修饰符: 来源插件=" + owner + " 线程=" + culprit.lastThread
+                    + " 属性=" + attribute + " 操作=" + operation + "\n    at " + culprit.lastStack;
+            plugin.getLogger().warning(message);
+            plugin.getLogManager().log("WARN", message);
+        }
+    }
+
+    private String resolvePlugin(Class<?> clazz) {
+        try {
+            Plugin owner = JavaPlugin.getProvidingPlugin(clazz);
+            return owner == plugin ? null : owner.getName();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return null; // 不是插件类（服务端或 JDK）
+        }
+    }
+
+    private void checkThread(String attribute, String operation) {
+        if (!Bukkit.isPrimaryThread()) {
+            recordViolation(attribute, operation);
+        }
+    }
+
+    /**
+     * 装饰器标记，卸载时取回原集合
+     */
+    private interface Guarded {
+        Object unwrap();
+    }
+
+    /**
+     * Map 装饰器：写操作检查线程，读取与视图直接委托（服务端只通过 Map 方法增删修饰符）
+     * putIfAbsent/compute 等默认方法会回落到 get/put，同样经过检查
+     */
+    private final class GuardedMap<K, V> implements Map<K, V>, Guarded {
+        private final Map<K, V> delegate;
+        private final String attribute;
+
+        private GuardedMap(Map<K, V> delegate, String attribute) {
+            this.delegate = delegate;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public Object unwrap() {
+            return delegate;
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return delegate.isEmpty();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return delegate.containsKey(key);
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            return delegate.containsValue(value);
+        }
+
+        @Override
+        public V get(Object key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            checkThread(attribute, "put");
+            return delegate.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            checkThread(attribute, "remove");
+            return delegate.remove(key);
+        }
+
+        @Override
+        public void putAll(Map<? extends K, ? extends V> map) {
+            checkThread(attribute, "putAll");
+            delegate.putAll(map);
+        }
+
+        @Override
+        public void clear() {
+            checkThread(attribute, "clear");
+            delegate.clear();
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return delegate.keySet();
+        }
+
+        @Override
+        public Collection<V> values() {
+            return delegate.values();
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return delegate.entrySet();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return delegate.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegate.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /**
+     * Set 装饰器（旧版本服务端的修饰符集合）
+     */
+    private final class GuardedSet<E> implements Set<E>, Guarded {
+        private final Set<E> delegate;
+        private final String attribute;
+
+        private GuardedSet(Set<E> delegate, String attribute) {
+            this.delegate = delegate;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public Object unwrap() {
+            return delegate;
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return delegate.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return delegate.contains(o);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return delegate.iterator();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return delegate.toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return delegate.toArray(a);
+        }
+
+        @Override
+        public boolean add(E e) {
+            checkThread(attribute, "add");
+            return delegate.add(e);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            checkThread(attribute, "remove");
+            return delegate.remove(o);
+        }
+
+        @Override
+        public boolean containsAll(Collection<?> c) {
+            return delegate.containsAll(c);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends E> c) {
+            checkThread(attribute, "addAll");
+            return delegate.addAll(c);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            checkThread(attribute, "retainAll");
+            return delegate.retainAll(c);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            checkThread(attribute, "removeAll");
+            return delegate.removeAll(c);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super E> filter) {
+            checkThread(attribute, "removeIf");
+            return delegate.removeIf(filter);
+        }
+
+        @Override
+        public void clear() {
+            checkThread(attribute, "clear");
+            delegate.clear();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return delegate.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegate.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
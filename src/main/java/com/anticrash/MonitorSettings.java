@@ -0,0 +1,559 @@
+package com.anticrash;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的不可变配置快照
+ * 在加载/重载配置时一次性从 YAML 读取，热路径只读取基本类型字段，
+ * 重载时整体替换引用，读取方永远看到一份完整一致的配置
+ */
+public final class MonitorSettings {
+
+    // 基本设置
+    private final boolean enabled;
+    private final boolean debugMode;
+
+    // 命令保护
+    private final boolean commandProtectionEnabled;
+    private final long cooldownMs;
+    private final long delayTicks;
+    private final List<String> protectedCommandList;
+    private final Set<String> protectedCommands;
+
+    // 自动监控
+    private final boolean monitoringEnabled;
+    private final long checkInterval;
+    private final long budgetNanos;
+    private final long minBudgetNanos;
+    private final double targetMspt;
+    private final long slaTicks;
+    private final boolean incrementalEnabled;
+    private final long fullSweepInterval;
+    private final boolean riskEnabled;
+    private final long riskMinInterval;
+    private final long riskMaxInterval;
+    private final long riskHalfLifeTicks;
+    private final boolean fingerprintEnabled;
+    private final long fingerprintVerifyTicks;
+    private final boolean mutationDetectorEnabled;
+    private final int mutationSampleRate;
+    private final boolean checkLocation;
+    private final boolean checkAttributes;
+    private final boolean checkEffects;
+    private final boolean checkInventory;
+    private final boolean checkVehicle;
+    private final int enabledSubsystems;
+    private final boolean asyncEvaluation;
+    private final int evaluationThreads;
+
+    // 数据包拦截
+    private final boolean packetInterceptionEnabled;
+    private final boolean packetInterceptionAsync;
+    private final boolean packetCoalescing;
+    // 数据包检查器：已关闭的检查器与配置的预算（0 表示使用检查器默认值）
+    private final Set<String> disabledPacketValidators;
+    private final Map<String, Integer> packetValidatorBudgets;
+    private final int maxItemBytes;
+    private final int maxBookBytes;
+
+    // 指标
+    private final boolean metricsEnabled;
+    private final boolean metricsHttpEnabled;
+    private final int metricsHttpPort;
+    private final long metricsRefreshMillis;
+
+    // 日志文件
+    private final long logMaxFileBytes;
+    private final boolean logCompress;
+    private final int logMaxFiles;
+    private final long logMaxTotalBytes;
+    private final boolean logDedupeEnabled;
+    private final long logDedupeWindowMillis;
+    private final int logDedupeMaxKeys;
+    private final boolean incidentsEnabled;
+    private final int incidentSegmentRecords;
+    private final int incidentMaxSegments;
+
+    // 修复策略
+    private final boolean autoRepair;
+    private final boolean safeTeleport;
+    private final boolean teleportOnSevereOnly;
+    private final boolean preferLastSafeLocation;
+    private final boolean blockCommandOnSevere;
+    private final boolean kickIfUnrepairable;
+
+    // 阈值
+    private final double coordinateMax;
+    private final int yMin;
+    private final int yMax;
+    private final double healthMin;
+    private final double healthMax;
+    private final double speedMin;
+    private final double speedMax;
+    private final double damageMin;
+    private final double damageMax;
+
+    private MonitorSettings(ConfigurationSection config) {
+        this.enabled = config.getBoolean("enabled", true);
+        this.debugMode = config.getBoolean("debug-mode", false);
+
+        this.commandProtectionEnabled = config.getBoolean("command-protection.enabled", true);
+        this.cooldownMs = config.getLong("command-protection.cooldown", 1000L);
+        this.delayTicks = config.getLong("command-protection.delay-ticks", 2L);
+        List<String> commands = new ArrayList<>();
+        Set<String> normalizedCommands = new HashSet<>();
+        for (String cmd : config.getStringList("command-protection.protected-commands")) {
+            commands.add(cmd);
+            // 规范化指令格式，确保包含斜杠且为小写
+            normalizedCommands.add(cmd.startsWith("/") ? cmd.toLowerCase() : "/" + cmd.toLowerCase());
+        }
+        this.protectedCommandList = Collections.unmodifiableList(commands);
+        this.protectedCommands = Collections.unmodifiableSet(normalizedCommands);
+
+        this.monitoringEnabled = config.getBoolean("monitoring.enabled", true);
+        this.checkInterval = Math.max(1L, config.getLong("monitoring.check-interval", 100L));
+        this.budgetNanos = Math.max(0L, config.getLong("monitoring.scheduler.budget-ns", 1000000L));
+        this.minBudgetNanos = Math.min(budgetNanos, Math.max(0L, config.getLong("monitoring.scheduler.min-budget-ns", 100000L)));
+        this.targetMspt = config.getDouble("monitoring.scheduler.target-mspt", 45.0);
+        // 覆盖时限至少要比一次巡逻周期长，否则每轮都会退化为一次性全量扫描
+        this.slaTicks = Math.max(checkInterval, config.getLong("monitoring.scheduler.sla-ticks", 200L));
+        this.incrementalEnabled = config.getBoolean("monitoring.incremental.enabled", true);
+        this.fullSweepInterval = Math.max(checkInterval, config.getLong("monitoring.incremental.full-sweep-interval", 600L));
+        this.riskEnabled = config.getBoolean("monitoring.risk.enabled", true);
+        // 扫描间隔不能超过覆盖时限，否则低风险玩家到期前就已超出 sla-ticks
+        this.riskMinInterval = Math.min(slaTicks, Math.max(1L, config.getLong("monitoring.risk.min-interval", 5L)));
+        this.riskMaxInterval = Math.min(slaTicks, Math.max(riskMinInterval, config.getLong("monitoring.risk.max-interval", 160L)));
+        this.riskHalfLifeTicks = Math.max(1L, config.getLong("monitoring.risk.half-life-ticks", 1200L));
+        this.fingerprintEnabled = config.getBoolean("monitoring.fingerprint.enabled", true);
+        this.fingerprintVerifyTicks = Math.max(1L, config.getLong("monitoring.fingerprint.verify-interval", 200L));
+        this.checkLocation = config.getBoolean("monitoring.checks.location", true);
+        this.checkAttributes = config.getBoolean("monitoring.checks.attributes", true);
+        this.checkEffects = config.getBoolean("monitoring.checks.effects", true);
+        this.checkInventory = config.getBoolean("monitoring.checks.inventory", true);
+        this.checkVehicle = config.getBoolean("monitoring.checks.vehicle", true);
+        this.enabledSubsystems = (checkAttributes ? DirtyTracker.ATTRIBUTES : 0)
+                | (checkEffects ? DirtyTracker.EFFECTS : 0)
+                | (checkInventory ? DirtyTracker.INVENTORY : 0)
+                | (checkVehicle ? DirtyTracker.VEHICLE : 0);
+        this.asyncEvaluation = config.getBoolean("monitoring.async-evaluation.enabled", true);
+        this.evaluationThreads = Math.max(1, config.getInt("monitoring.async-evaluation.threads", 2));
+
+        this.packetInterceptionEnabled = config.getBoolean("packet-interception.enabled", true);
+        this.packetInterceptionAsync = config.getBoolean("packet-interception.async", true);
+        this.packetCoalescing = config.getBoolean("packet-interception.coalesce", true);
+        Set<String> disabledValidators = new HashSet<>();
+        Map<String, Integer> validatorBudgets = new HashMap<>();
+        ConfigurationSection validators = config.getConfigurationSection("packet-interception.validators");
+        if (validators != null) {
+            for (String id : validators.getKeys(false)) {
+                if (!validators.getBoolean(id + ".enabled", true)) {
+                    disabledValidators.add(id);
+                }
+                validatorBudgets.put(id, Math.max(0, validators.getInt(id + ".budget", 0)));
+            }
+        }
+        this.disabledPacketValidators = Collections.unmodifiableSet(disabledValidators);
+        this.packetValidatorBudgets = Collections.unmodifiableMap(validatorBudgets);
+        this.maxItemBytes = Math.max(1024, config.getInt("packet-interception.validators.item-size.max-item-bytes", 262144));
+        this.maxBookBytes = Math.max(1024, config.getInt("packet-interception.validators.book-edit.max-book-bytes", 102400));
+
+        this.mutationDetectorEnabled = config.getBoolean("diagnostics.mutation-detector.enabled", false);
+        this.mutationSampleRate = Math.max(1, config.getInt("diagnostics.mutation-detector.sample-rate", 16));
+
+        this.metricsEnabled = config.getBoolean("diagnostics.metrics.enabled", true);
+        this.metricsHttpEnabled = config.getBoolean("diagnostics.metrics.http.enabled", false);
+        this.metricsHttpPort = Math.max(1, Math.min(65535, config.getInt("diagnostics.metrics.http.port", 9465)));
+        this.metricsRefreshMillis = Math.max(1, config.getInt("diagnostics.metrics.http.refresh-seconds", 5)) * 1000L;
+
+        this.logMaxFileBytes = Math.max(1L, config.getLong("logging.max-file-size-mb", 64L)) * 1024L * 1024L;
+        this.logCompress = config.getBoolean("logging.compress", true);
+        this.logMaxFiles = Math.max(1, config.getInt("logging.retention.max-files", 30));
+        this.logMaxTotalBytes = Math.max(1L, config.getLong("logging.retention.max-total-size-mb", 512L)) * 1024L * 1024L;
+        this.logDedupeEnabled = config.getBoolean("logging.dedupe.enabled", true);
+        this.logDedupeWindowMillis = Math.max(1, config.getInt("logging.dedupe.window-seconds", 30)) * 1000L;
+        this.logDedupeMaxKeys = Math.max(16, config.getInt("logging.dedupe.max-keys", 512));
+
+        this.incidentsEnabled = config.getBoolean("incidents.enabled", true);
+        this.incidentSegmentRecords = Math.max(1024, Math.min(1 << 22, config.getInt("incidents.segment-records", 65536)));
+        this.incidentMaxSegments = Math.max(1, config.getInt("incidents.max-segments", 16));
+
+        this.autoRepair = config.getBoolean("repair.auto-repair", true);
+        this.safeTeleport = config.getBoolean("repair.safe-teleport", true);
+        this.teleportOnSevereOnly = config.getBoolean("repair.teleport-on-severe-only", true);
+        this.preferLastSafeLocation = config.getBoolean("repair.prefer-last-safe-location", true);
+        this.blockCommandOnSevere = config.getBoolean("repair.block-command-on-severe", true);
+        this.kickIfUnrepairable = config.getBoolean("repair.kick-if-unrepairable", true);
+
+        this.coordinateMax = config.getDouble("repair.thresholds.coordinate-max", 30000000.0);
+        this.yMin = config.getInt("repair.thresholds.y-min", -64);
+        this.yMax = config.getInt("repair.thresholds.y-max", 320);
+        this.healthMin = config.getDouble("repair.thresholds.health-min", 0.1);
+        this.healthMax = config.getDouble("repair.thresholds.health-max", 2048.0);
+        this.speedMin = config.getDouble("repair.thresholds.speed-min", 0.0);
+        this.speedMax = config.getDouble("repair.thresholds.speed-max", 1.0);
+        this.damageMin = config.getDouble("repair.thresholds.damage-min", 0.0);
+        this.damageMax = config.getDouble("repair.thresholds.damage-max", 2048.0);
+    }
+
+    /**
+     * 从配置文件编译一份新的快照
+     */
+    public static MonitorSettings compile(ConfigurationSection config) {
+        return new MonitorSettings(config);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isDebugMode() {
+        return debugMode;
+    }
+
+    public boolean isCommandProtectionEnabled() {
+        return commandProtectionEnabled;
+    }
+
+    public long getCooldownMs() {
+        return cooldownMs;
+    }
+
+    public long getDelayTicks() {
+        return delayTicks;
+    }
+
+    /**
+     * 配置文件中的原始指令列表（用于展示）
+     */
+    public List<String> getProtectedCommandList() {
+        return protectedCommandList;
+    }
+
+    /**
+     * 规范化后的受保护指令集合（以 / 开头的小写形式）
+     */
+    public boolean isProtectedCommand(String command) {
+        return protectedCommands.contains(command);
+    }
+
+    public boolean isMonitoringEnabled() {
+        return monitoringEnabled;
+    }
+
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public long getMinBudgetNanos() {
+        return minBudgetNanos;
+    }
+
+    public double getTargetMspt() {
+        return targetMspt;
+    }
+
+    public long getSlaTicks() {
+        return slaTicks;
+    }
+
+    public boolean isIncrementalEnabled() {
+        return incrementalEnabled;
+    }
+
+    public long getFullSweepInterval() {
+        return fullSweepInterval;
+    }
+
+    public boolean isRiskEnabled() {
+        return riskEnabled;
+    }
+
+    /**
+     * 最高风险玩家的扫描间隔（ticks）
+     */
+    public long getRiskMinInterval() {
+        return riskMinInterval;
+    }
+
+    /**
+     * 零风险玩家的扫描间隔（ticks）
+     */
+    public long getRiskMaxInterval() {
+        return riskMaxInterval;
+    }
+
+    public long getRiskHalfLifeTicks() {
+        return riskHalfLifeTicks;
+    }
+
+    public boolean isFingerprintEnabled() {
+        return fingerprintEnabled;
+    }
+
+    /**
+     * 指纹未变化的属性最长多久强制完整遍历一次（ticks）
+     */
+    public long getFingerprintVerifyTicks() {
+        return fingerprintVerifyTicks;
+    }
+
+    public boolean isMutationDetectorEnabled() {
+        return mutationDetectorEnabled;
+    }
+
+    /**
+     * 每多少次异步写入采样一次调用栈
+     */
+    public int getMutationSampleRate() {
+        return mutationSampleRate;
+    }
+
+    public boolean isCheckLocation() {
+        return checkLocation;
+    }
+
+    public boolean isCheckAttributes() {
+        return checkAttributes;
+    }
+
+    public boolean isCheckEffects() {
+        return checkEffects;
+    }
+
+    public boolean isCheckInventory() {
+        return checkInventory;
+    }
+
+    public boolean isCheckVehicle() {
+        return checkVehicle;
+    }
+
+    /**
+     * 配置中开启的可选检查项对应的子系统位掩码，见 {@link DirtyTracker}
+     */
+    public int getEnabledSubsystems() {
+        return enabledSubsystems;
+    }
+
+    public boolean isAsyncEvaluation() {
+        return asyncEvaluation;
+    }
+
+    public int getEvaluationThreads() {
+        return evaluationThreads;
+    }
+
+    public boolean isPacketInterceptionEnabled() {
+        return packetInterceptionEnabled;
+    }
+
+    /**
+     * 是否在 ProtocolLib 异步线程处理属性包（修饰符检查仍回到拥有该玩家的线程执行）
+     */
+    public boolean isPacketInterceptionAsync() {
+        return packetInterceptionAsync;
+    }
+
+    /**
+     * 是否合并同一 tick 内发给同一玩家、同一实体的重复属性条目
+     */
+    public boolean isPacketCoalescing() {
+        return packetCoalescing;
+    }
+
+    /**
+     * 数据包检查器是否启用（配置中未出现的检查器默认启用）
+     */
+    public boolean isPacketValidatorEnabled(String id) {
+        return !disabledPacketValidators.contains(id);
+    }
+
+    /**
+     * 数据包检查器每个数据包的预算，未配置时使用检查器默认值
+     */
+    public int getPacketValidatorBudget(String id, int defaultBudget) {
+        Integer budget = packetValidatorBudgets.get(id);
+        return budget != null && budget > 0 ? budget : defaultBudget;
+    }
+
+    /**
+     * 数据包中单个物品序列化后的最大字节数
+     */
+    public int getMaxItemBytes() {
+        return maxItemBytes;
+    }
+
+    /**
+     * 书本编辑包所有页面的最大 UTF-8 总字节数
+     */
+    public int getMaxBookBytes() {
+        return maxBookBytes;
+    }
+
+    /**
+     * 是否统计热点路径耗时 (/anticrash metrics)
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * 是否在 127.0.0.1 上提供 Prometheus 指标接口
+     */
+    public boolean isMetricsHttpEnabled() {
+        return metricsHttpEnabled;
+    }
+
+    public int getMetricsHttpPort() {
+        return metricsHttpPort;
+    }
+
+    /**
+     * Prometheus 指标的渲染间隔（毫秒），抓取时返回最近一次渲染的结果
+     */
+    public long getMetricsRefreshMillis() {
+        return metricsRefreshMillis;
+    }
+
+    /**
+     * 单个日志文件的大小上限（字节），超过后滚动
+     */
+    public long getLogMaxFileBytes() {
+        return logMaxFileBytes;
+    }
+
+    /**
+     * 是否在后台线程 gzip 压缩滚动后的日志文件
+     */
+    public boolean isLogCompress() {
+        return logCompress;
+    }
+
+    /**
+     * 保留的历史日志文件数量上限（不含正在写入的文件）
+     */
+    public int getLogMaxFiles() {
+        return logMaxFiles;
+    }
+
+    /**
+     * 历史日志文件的总大小上限（字节）
+     */
+    public long getLogMaxTotalBytes() {
+        return logMaxTotalBytes;
+    }
+
+    /**
+     * 是否合并重复的警告/错误日志
+     */
+    public boolean isLogDedupeEnabled() {
+        return logDedupeEnabled;
+    }
+
+    /**
+     * 重复日志的汇总窗口（毫秒）
+     */
+    public long getLogDedupeWindowMillis() {
+        return logDedupeWindowMillis;
+    }
+
+    /**
+     * 重复日志合并跟踪的键数量上限
+     */
+    public int getLogDedupeMaxKeys() {
+        return logDedupeMaxKeys;
+    }
+
+    /**
+     * 是否把诊断与修复结果写入结构化异常事件记录
+     */
+    public boolean isIncidentsEnabled() {
+        return incidentsEnabled;
+    }
+
+    /**
+     * 每个异常事件段文件的记录数（每条 32 字节）
+     */
+    public int getIncidentSegmentRecords() {
+        return incidentSegmentRecords;
+    }
+
+    /**
+     * 保留的异常事件段文件数量上限
+     */
+    public int getIncidentMaxSegments() {
+        return incidentMaxSegments;
+    }
+
+    public boolean isAutoRepair() {
+        return autoRepair;
+    }
+
+    public boolean isSafeTeleport() {
+        return safeTeleport;
+    }
+
+    public boolean isTeleportOnSevereOnly() {
+        return teleportOnSevereOnly;
+    }
+
+    public boolean isPreferLastSafeLocation() {
+        return preferLastSafeLocation;
+    }
+
+    public boolean isBlockCommandOnSevere() {
+        return blockCommandOnSevere;
+    }
+
+    public boolean isKickIfUnrepairable() {
+        return kickIfUnrepairable;
+    }
+
+    public double getCoordinateMax() {
+        return coordinateMax;
+    }
+
+    public int getYMin() {
+        return yMin;
+    }
+
+    public int getYMax() {
+        return yMax;
+    }
+
+    public double getHealthMin() {
+        return healthMin;
+    }
+
+    public double getHealthMax() {
+        return healthMax;
+    }
+
+    public double getSpeedMin() {
+        return speedMin;
+    }
+
+    public double getSpeedMax() {
+        return speedMax;
+    }
+
+    public double getDamageMin() {
+        return damageMin;
+    }
+
+    public double getDamageMax() {
+        return damageMax;
+    }
+}
@@ -0,0 +1,268 @@
+package com.anticrash;
+
+import org.bukkit.Bukkit;
+import org.bukkit.attribute.AttributeInstance;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * NMS 属性访问层
+ * 启动时一次性解析 CraftAttributeInstance.handle 以及 NMS AttributeInstance 内部的修饰符集合字段，
+ * 缓存为 MethodHandle；修复时直接读取字段并调用 Map/Collection.clear()，不再重复反射查找。
+ * 解析失败时记录具体原因，修复退化为仅使用 Bukkit API
+ */
+public final class NmsAttributeAccessor {
+
+    // NMS AttributeInstance 中保存修饰符的字段（Mojang 映射 1.20.5+ 及旧版本）
+    private static final String[] MODIFIER_FIELD_CANDIDATES = {
+            "modifierById", "modifiersByOperation", "permanentModifiers", "modifiers"
+    };
+    // 统一适配为 Object 签名，调用时使用 invokeExact，避免每次调用的类型转换
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType ACTION_TYPE = MethodType.methodType(void.class, Object.class);
+
+    private final MethodHandle handleGetter;
+    private final List<ModifierField> modifierFields;
+    private final MethodHandle setDirty;
+    private final String failureReason;
+
+    /**
+     * 单个修饰符集合字段
+     */
+    private static final class ModifierField {
+        private final String name;
+        private final MethodHandle getter;
+        private final MethodHandle setter; // final 字段无法写入时为 null
+        private final Class<?> type;
+
+        private ModifierField(String name, MethodHandle getter, MethodHandle setter, Class<?> type) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+            this.type = type;
+        }
+    }
+
+    private NmsAttributeAccessor(MethodHandle handleGetter, List<ModifierField> modifierFields, MethodHandle setDirty, String failureReason) {
+        this.handleGetter = handleGetter;
+        this.modifierFields = modifierFields;
+        this.setDirty = setDirty;
+        this.failureReason = failureReason;
+    }
+
+    /**
+     * 解析服务端实现类并输出结果
+     */
+    public static NmsAttributeAccessor resolve(Logger logger) {
+        NmsAttributeAccessor accessor;
+        try {
+            accessor = resolve();
+        } catch (Throwable t) {
+            accessor = unavailable(t.getClass().getSimpleName() + ": " + t.getMessage());
+        }
+        if (accessor.isAvailable()) {
+            List<String> names = new ArrayList<>();
+            for (ModifierField field : accessor.modifierFields) {
+                names.add(field.name);
+            }
+            logger.info("[核心] NMS 属性访问层已就绪: 修饰符字段=" + String.join(", ", names)
+                    + (accessor.setDirty != null ? " (含 setDirty)" : ""));
+        } else {
+            logger.warning("[核心] NMS 属性访问层不可用，属性深度修复将仅使用 Bukkit API: " + accessor.failureReason);
+        }
+        return accessor;
+    }
+
+    private static NmsAttributeAccessor resolve() throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        // CraftBukkit 包名在 Spigot 上带版本号，在 Paper 1.20.5+ 上不带，统一从服务端实现类推导
+        String craftPackage = Bukkit.getServer().getClass().getPackage().getName();
+        Class<?> craftClass = Class.forName(craftPackage + ".attribute.CraftAttributeInstance", false,
+                Bukkit.getServer().getClass().getClassLoader());
+
+        Field handleField = findField(craftClass, "handle");
+        if (handleField == null) {
+            return unavailable(craftClass.getName() + " 中找不到 handle 字段");
+        }
+        handleField.setAccessible(true);
+        MethodHandle handleGetter = lookup.unreflectGetter(handleField).asType(GETTER_TYPE);
+
+        Class<?> nmsClass = handleField.getType();
+        List<ModifierField> modifierFields = new ArrayList<>();
+        for (String name : MODIFIER_FIELD_CANDIDATES) {
+            Field field = findField(nmsClass, name);
+            if (field == null || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            if (!Map.class.isAssignableFrom(field.getType()) && !Collection.class.isAssignableFrom(field.getType())) {
+                continue;
+            }
+            field.setAccessible(true);
+            MethodHandle setter;
+            try {
+                setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                setter = null;
+            }
+            modifierFields.add(new ModifierField(name, lookup.unreflectGetter(field).asType(GETTER_TYPE), setter, field.getType()));
+        }
+        if (modifierFields.isEmpty()) {
+            return unavailable(nmsClass.getName() + " 中找不到修饰符集合字段，候选: " + String.join(", ", MODIFIER_FIELD_CANDIDATES));
+        }
+
+        MethodHandle setDirty = null;
+        Method setDirtyMethod = findMethod(nmsClass, "setDirty");
+        if (setDirtyMethod != null) {
+            setDirtyMethod.setAccessible(true);
+            setDirty = lookup.unreflect(setDirtyMethod).asType(ACTION_TYPE);
+        }
+        return new NmsAttributeAccessor(handleGetter, modifierFields, setDirty, null);
+    }
+
+    private static NmsAttributeAccessor unavailable(String reason) {
+        return new NmsAttributeAccessor(null, new ArrayList<>(), null, reason);
+    }
+
+    public boolean isAvailable() {
+        return handleGetter != null;
+    }
+
+    /**
+     * 解析失败原因，解析成功时为 null
+     */
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    /**
+     * 清空属性实例内部的所有修饰符集合，用于修复 fastutil ObjectOpenHashSet 内部结构损坏的情况
+     * 集合本身损坏到无法 clear() 时，替换为同类型的新空集合
+     *
+     * @return 被清空或替换的集合数量；访问层不可用时返回 -1
+     */
+    public int clearModifiers(AttributeInstance attrInstance) {
+        if (!isAvailable()) {
+            return -1;
+        }
+        Object handle;
+        try {
+            handle = (Object) handleGetter.invokeExact((Object) attrInstance);
+        } catch (Throwable t) {
+            return -1; // 非 CraftAttributeInstance 实现
+        }
+        if (handle == null) {
+            return 0;
+        }
+        int cleared = 0;
+        for (ModifierField field : modifierFields) {
+            try {
+                Object value = (Object) field.getter.invokeExact(handle);
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    if (value instanceof Map) {
+                        ((Map<?, ?>) value).clear();
+                    } else {
+                        ((Collection<?>) value).clear();
+                    }
+                    cleared++;
+                } catch (RuntimeException clearEx) {
+                    if (field.setter != null) {
+                        // 仅在结构损坏的罕见情况下走到这里，反射创建空集合的开销可以接受
+                        Object replacement = value.getClass().getDeclaredConstructor().newInstance();
+                        field.setter.invokeExact(handle, replacement);
+                        cleared++;
+                    }
+                }
+            } catch (Throwable t) {
+                // 单个字段失败不影响其他字段
+            }
+        }
+        if (cleared > 0 && setDirty != null) {
+            try {
+                setDirty.invokeExact(handle); // 让最终值按清空后的修饰符重新计算
+            } catch (Throwable t) {
+                // 忽略
+            }
+        }
+        return cleared;
+    }
+
+    /**
+     * 替换属性实例内部的修饰符集合，用于安装或卸载装饰器
+     * 只处理声明类型为接口 (Map/Set/Collection) 的可写字段，替换值必须实现该接口
+     *
+     * @param replacer 接收当前集合，返回替换值；返回原对象或 null 表示不替换
+     * @return 被替换的字段数量；访问层不可用时返回 -1
+     */
+    public int replaceModifierCollections(AttributeInstance attrInstance, UnaryOperator<Object> replacer) {
+        if (!isAvailable()) {
+            return -1;
+        }
+        Object handle;
+        try {
+            handle = (Object) handleGetter.invokeExact((Object) attrInstance);
+        } catch (Throwable t) {
+            return -1;
+        }
+        if (handle == null) {
+            return 0;
+        }
+        int replaced = 0;
+        for (ModifierField field : modifierFields) {
+            if (field.setter == null || !field.type.isInterface()) {
+                continue;
+            }
+            try {
+                Object value = (Object) field.getter.invokeExact(handle);
+                if (value == null) {
+                    continue;
+                }
+                Object replacement = replacer.apply(value);
+                if (replacement == null || replacement == value || !field.type.isInstance(replacement)) {
+                    continue;
+                }
+                field.setter.invokeExact(handle, replacement);
+                replaced++;
+            } catch (Throwable t) {
+                // 单个字段失败不影响其他字段
+            }
+        }
+        return replaced;
+    }
+
+    static Field findField(Class<?> clazz, String name) {
+        while (clazz != null) {
+            try {
+                return clazz.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        return null;
+    }
+
+    static Method findMethod(Class<?> clazz, String name) {
+        while (clazz != null) {
+            try {
+                return clazz.getDeclaredMethod(name);
+            } catch (NoSuchMethodException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        return null;
+    }
+}
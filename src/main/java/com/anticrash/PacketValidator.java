@@ -0,0 +1,50 @@
+package com.anticrash;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import org.bukkit.entity.Player;
+
+import java.util.Set;
+
+/**
+ * 数据包检查器
+ * 每个检查器声明自己关心的数据包类型，由 {@link PacketValidatorRegistry} 在网络线程上按类型分发：
+ * 出站数据包在发送前检查，入站数据包在解码后、进入主线程之前检查。
+ * 检查器只读取并改写数据包载荷，不能调用 Bukkit API 读取世界或玩家状态。
+ * 每个数据包的检查工作量受 {@link ValidationContext#spend} 预算限制，预算耗尽时放行剩余部分，
+ * 启用更多检查器不会给网络线程带来无上限的延迟
+ */
+public interface PacketValidator {
+
+    /**
+     * 检查器唯一标识，对应配置 packet-interception.validators 下的键名
+     */
+    String getId();
+
+    /**
+     * 需要检查的数据包类型（服务端或客户端数据包均可）
+     */
+    Set<PacketType> getPacketTypes();
+
+    /**
+     * 每个数据包的默认检查预算（工作量单位的含义由检查器定义，例如检查的元素个数）
+     */
+    int getDefaultBudget();
+
+    /**
+     * 检查并在必要时就地改写数据包
+     * 返回 {@link Result#CANCELLED} 时数据包会被取消（入站数据包不会交给服务端处理），问题描述通过 {@link ValidationContext#report} 登记
+     *
+     * @param player 出站数据包的接收者或入站数据包的发送者
+     */
+    Result validate(PacketContainer packet, Player player, ValidationContext context);
+
+    /**
+     * 检查结果
+     */
+    enum Result {
+        PASS,
+        REWRITTEN,
+        CANCELLED
+    }
+}
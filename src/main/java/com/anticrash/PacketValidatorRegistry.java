@@ -0,0 +1,224 @@
+package com.anticrash;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketEvent;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * 数据包检查器注册表
+ * 按数据包类型建立分发表，每个检查器单独统计执行次数、改写/取消次数、预算耗尽次数与纳秒耗时
+ * 分发表在应用配置时整体替换，网络线程只读取 volatile 引用
+ */
+public class PacketValidatorRegistry {
+
+    // 问题日志：每个检查器首次与之后每 100 次输出一次，避免刷屏
+    private static final long LOG_EVERY = 100L;
+    // 每个网络线程复用的检查上下文，实体元数据等高频数据包的检查不产生分配
+    private static final ThreadLocal<ValidationContext> CONTEXTS = ThreadLocal.withInitial(ValidationContext::new);
+
+    private final AntiCrashPlugin plugin;
+    private final List<Registration> registrations = new ArrayList<>();
+    private volatile Map<PacketType, Registration[]> byType = Collections.emptyMap();
+
+    /**
+     * 已注册的检查器及其统计数据
+     */
+    public static final class Registration {
+        private final PacketValidator validator;
+        private volatile boolean enabled;
+        private volatile int budget;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder rewritten = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder costNanos = new LongAdder();
+
+        private Registration(PacketValidator validator) {
+            this.validator = validator;
+        }
+
+        public String getId() {
+            return validator.getId();
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getBudget() {
+            return budget;
+        }
+
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        public long getRewritten() {
+            return rewritten.sum();
+        }
+
+        public long getCancelled() {
+            return cancelled.sum();
+        }
+
+        /**
+         * 预算耗尽、剩余部分未检查就放行的次数
+         */
+        public long getExhausted() {
+            return exhausted.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getAverageCostNanos() {
+            long count = invocations.sum();
+            return count == 0 ? 0L : costNanos.sum() / count;
+        }
+    }
+
+    public PacketValidatorRegistry(AntiCrashPlugin plugin) {
+        this.plugin = plugin;
+        register(new EntityMetadataValidator());
+        register(new TeleportValidator());
+        register(new ItemSizeValidator(plugin.getItemSizeMeter()));
+        register(new ClientMovementValidator());
+        register(new BookEditValidator());
+    }
+
+    /**
+     * 注册检查器，需要再次调用 {@link #applySettings} 后生效
+     * @throws IllegalArgumentException 检查器 ID 已被注册
+     */
+    public synchronized void register(PacketValidator validator) {
+        for (Registration registration : registrations) {
+            if (registration.getId().equalsIgnoreCase(validator.getId())) {
+                throw new IllegalArgumentException("数据包检查器 ID 已被注册: " + validator.getId());
+            }
+        }
+        registrations.add(new Registration(validator));
+    }
+
+    /**
+     * 按配置启用检查器与设置预算，并重建分发表
+     */
+    public synchronized void applySettings(MonitorSettings settings) {
+        Map<PacketType, List<Registration>> chains = new HashMap<>();
+        for (Registration registration : registrations) {
+            PacketValidator validator = registration.validator;
+            registration.enabled = settings.isPacketValidatorEnabled(validator.getId());
+            registration.budget = settings.getPacketValidatorBudget(validator.getId(), validator.getDefaultBudget());
+            if (!registration.enabled) {
+                continue;
+            }
+            for (PacketType type : validator.getPacketTypes()) {
+                chains.computeIfAbsent(type, k -> new ArrayList<>()).add(registration);
+            }
+        }
+        Map<PacketType, Registration[]> table = new HashMap<>();
+        for (Map.Entry<PacketType, List<Registration>> entry : chains.entrySet()) {
+            table.put(entry.getKey(), entry.getValue().toArray(new Registration[0]));
+        }
+        byType = table;
+    }
+
+    /**
+     * 至少有一个已启用检查器的数据包类型
+     */
+    public Set<PacketType> getActiveTypes() {
+        return new HashSet<>(byType.keySet());
+    }
+
+    public synchronized List<Registration> getRegistrations() {
+        return Arrays.asList(registrations.toArray(new Registration[0]));
+    }
+
+    /**
+     * 在网络线程上依次执行该类型的检查器，任一检查器取消数据包后停止
+     * @return 是否需要在拥有接收者的线程上复查该玩家
+     */
+    public boolean validate(PacketEvent event, MonitorSettings settings) {
+        Registration[] chain = byType.get(event.getPacketType());
+        if (chain == null) {
+            return false;
+        }
+        Player player = event.getPlayer();
+        ValidationContext context = CONTEXTS.get();
+        boolean flagged = false;
+        for (Registration registration : chain) {
+            context.reset(settings, registration.budget);
+            PacketValidator.Result result;
+            long start = System.nanoTime();
+            try {
+                result = registration.validator.validate(event.getPacket(), player, context);
+            } catch (Exception e) {
+                // 检查器自身出错时放行，绝不因为检查失败而丢包
+                result = PacketValidator.Result.PASS;
+                registration.errors.increment();
+                if (registration.errors.sum() == 1) {
+                    plugin.getLogger().log(Level.WARNING, "数据包检查器异常: 检查器=" + registration.getId(), e);
+                }
+            }
+            registration.costNanos.add(System.nanoTime() - start);
+            registration.invocations.increment();
+            if (context.isExhausted()) {
+                registration.exhausted.increment();
+            }
+            if (context.isReceiverFlagged()) {
+                flagged = true;
+            }
+            if (result == PacketValidator.Result.PASS) {
+                continue;
+            }
+
+            LongAdder counter = result == PacketValidator.Result.CANCELLED ? registration.cancelled : registration.rewritten;
+            counter.increment();
+            long hits = registration.rewritten.sum() + registration.cancelled.sum();
+            if (hits == 1 || hits % LOG_EVERY == 0) {
+                logWarn("数据包检查器" + (result == PacketValidator.Result.CANCELLED ? "已取消" : "已改写") + "数据包 (第 " + hits + " 次): 检查器="
+                        + registration.getId() + " 类型=" + event.getPacketType().name() + " 玩家=" + player.getName()
+                        + (context.getFinding() != null ? " 问题=" + context.getFinding() : ""));
+            }
+            if (result == PacketValidator.Result.CANCELLED) {
+                event.setCancelled(true);
+                break;
+            }
+        }
+        return flagged;
+    }
+
+    /**
+     * 清空所有统计数据
+     */
+    public synchronized void resetStats() {
+        for (Registration registration : registrations) {
+            registration.invocations.reset();
+            registration.rewritten.reset();
+            registration.cancelled.reset();
+            registration.exhausted.reset();
+            registration.errors.reset();
+            registration.costNanos.reset();
+        }
+    }
+
+    private void logWarn(String message) {
+        if (!plugin.getLogDeduplicator().admit("WARN", message)) {
+            return;
+        }
+        plugin.getLogger().warning(message);
+        plugin.getLogManager().log("WARN", message);
+    }
+}
@@ -0,0 +1,82 @@
+package com.anticrash;
+
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * 巡逻扫描的分发（Paper 主线程 / Folia 全局区域线程）
+ * 从 {@link PatrolScheduler} 出队的玩家经 {@link PlatformScheduler#runForEntityFromGlobal} 交给拥有该玩家的线程扫描：
+ * Paper 上就地扫描，耗时直接计入本 tick 的时间预算；
+ * Folia 上扫描在区域线程执行，全局线程只耗费分发时间，因此每分发一名玩家按实测的平均扫描耗时向预算计费，
+ * 预算仍能限制每 tick 分发的数量，区域线程不会一次承担整个队列的扫描
+ */
+final class PatrolDispatcher {
+
+    // 尚无实测值时使用的扫描耗时估计（纳秒），首次扫描完成后由实测值取代
+    static final long INITIAL_SCAN_ESTIMATE_NANOS = 50_000L;
+    // 指数移动平均的平滑位数：每次实测值占 1/8
+    private static final int SMOOTHING_SHIFT = 3;
+
+    /**
+     * 扫描单个玩家，在拥有该玩家的线程上调用
+     */
+    interface Scan {
+        void scan(Player player, MonitorSettings settings, long tick);
+    }
+
+    private final PlatformScheduler scheduler;
+    private final PatrolScheduler patrolScheduler;
+    private final RiskTracker riskTracker;
+    private final Function<UUID, Player> lookup;
+    private final Scan scan;
+    // 区域线程并发更新，丢失个别样本只影响估计精度，不必加锁
+    private volatile long averageScanNanos = -1L;
+
+    PatrolDispatcher(PlatformScheduler scheduler, PatrolScheduler patrolScheduler, RiskTracker riskTracker,
+                     Function<UUID, Player> lookup, Scan scan) {
+        this.scheduler = scheduler;
+        this.patrolScheduler = patrolScheduler;
+        this.riskTracker = riskTracker;
+        this.lookup = lookup;
+        this.scan = scan;
+    }
+
+    /**
+     * 执行一个 tick 的分发
+     *
+     * @return 本 tick 出队的玩家数量
+     */
+    int runTick(long tick, long budgetNanos, MonitorSettings settings) {
+        long chargeNanos = scheduler.isFolia() ? getEstimatedScanNanos() : 0L;
+        return patrolScheduler.runTick(tick, budgetNanos, chargeNanos, uuid -> {
+            Player player = lookup.apply(uuid);
+            if (player == null || !player.isOnline()) {
+                return false;
+            }
+            // Folia：全局线程不能读取玩家数据，分发到玩家所在的区域线程扫描
+            scheduler.runForEntityFromGlobal(player, () -> {
+                long start = System.nanoTime();
+                scan.scan(player, settings, tick);
+                recordScan(System.nanoTime() - start);
+            });
+            // 按扫描后的风险分数安排下一次扫描
+            riskTracker.scheduleNext(uuid, tick);
+            return true;
+        });
+    }
+
+    /**
+     * 单名玩家的平均扫描耗时（纳秒），Folia 上作为每次分发计入预算的费用
+     */
+    long getEstimatedScanNanos() {
+        long average = averageScanNanos;
+        return average < 0L ? INITIAL_SCAN_ESTIMATE_NANOS : average;
+    }
+
+    private void recordScan(long nanos) {
+        long average = averageScanNanos;
+        averageScanNanos = average < 0L ? nanos : average + ((nanos - average) >> SMOOTHING_SHIFT);
+    }
+}
@@ -0,0 +1,147 @@
+package com.anticrash;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * 巡逻调度器
+ * 按纳秒时间预算分摊玩家扫描，本 tick 未完成的部分顺延到下一 tick，
+ * 同时保证每名排队玩家在各自的覆盖时限 (SLA) 内被扫描到
+ * Folia 上加入事件与巡逻任务运行在不同线程，因此所有入口都加锁（Paper 上无竞争）
+ */
+public class PatrolScheduler {
+
+    // 按截止时间排列的待扫描玩家 (EDF)；离线或截止时间被提前的旧节点采用惰性删除
+    private final PriorityQueue<Pending> queue = new PriorityQueue<>();
+    // 待扫描玩家 -> 最晚扫描 tick
+    private final Map<UUID, Long> deadlines = new HashMap<>();
+
+    private int lastProcessed;
+    private long lastElapsedNanos;
+
+    private static class Pending implements Comparable<Pending> {
+        private final long deadline;
+        private final UUID uuid;
+
+        private Pending(long deadline, UUID uuid) {
+            this.deadline = deadline;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public int compareTo(Pending other) {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+
+    /**
+     * 将玩家加入待扫描队列
+     * 若玩家已在队列中，则保留更早的截止时间
+     */
+    public synchronized void enqueue(UUID uuid, long deadlineTick) {
+        Long current = deadlines.get(uuid);
+        if (current == null || deadlineTick < current) {
+            deadlines.put(uuid, deadlineTick);
+            queue.add(new Pending(deadlineTick, uuid));
+        }
+    }
+
+    /**
+     * 移除玩家（如退出游戏），队列中的残留条目会在出队时被跳过
+     */
+    public synchronized void remove(UUID uuid) {
+        deadlines.remove(uuid);
+    }
+
+    public synchronized void clear() {
+        queue.clear();
+        deadlines.clear();
+    }
+
+    public synchronized int getPendingCount() {
+        return deadlines.size();
+    }
+
+    public int getLastProcessed() {
+        return lastProcessed;
+    }
+
+    public long getLastElapsedNanos() {
+        return lastElapsedNanos;
+    }
+
+    /**
+     * 执行一个 tick 的扫描工作
+     * 先完成保证 SLA 所需的最低数量，再在时间预算内尽量多扫描
+     *
+     * @param currentTick 当前 tick
+     * @param budgetNanos 本 tick 的时间预算（纳秒）
+     * @param scanner 扫描回调，参数为玩家 UUID
+     * @return 本 tick 实际扫描的玩家数量
+     */
+    public int runTick(long currentTick, long budgetNanos, Predicate<UUID> scanner) {
+        return runTick(currentTick, budgetNanos, 0L, scanner);
+    }
+
+    /**
+     * 执行一个 tick 的扫描工作，扫描回调返回 true 时额外向预算计费
+     * 扫描在其他线程执行时（Folia 区域线程），本线程的耗时只有分发，需要按估计的扫描耗时计费
+     *
+     * @param chargeNanos 每次扫描回调返回 true 时额外计入预算的纳秒数
+     * @param scanner 扫描回调，参数为玩家 UUID，玩家已不在线时返回 false
+     */
+    public synchronized int runTick(long currentTick, long budgetNanos, long chargeNanos, Predicate<UUID> scanner) {
+        long start = System.nanoTime();
+        int mandatory = computeMandatory(currentTick);
+        int processed = 0;
+        long charged = 0L;
+
+        while (!queue.isEmpty()) {
+            if (processed >= mandatory && System.nanoTime() - start + charged >= budgetNanos) {
+                break;
+            }
+            Pending pending = queue.poll();
+            if (!isCurrent(pending)) {
+                continue; // 已退出、已被移除或截止时间已被提前的旧节点
+            }
+            deadlines.remove(pending.uuid);
+            if (scanner.test(pending.uuid)) {
+                charged += chargeNanos;
+            }
+            processed++;
+        }
+
+        lastProcessed = processed;
+        lastElapsedNanos = System.nanoTime() - start;
+        return processed;
+    }
+
+    private boolean isCurrent(Pending pending) {
+        Long deadline = deadlines.get(pending.uuid);
+        return deadline != null && deadline == pending.deadline;
+    }
+
+    /**
+     * 计算本 tick 至少需要扫描的玩家数
+     * 队首是最早的截止时间，按它平均分摊整个队列只会多扫不会少扫；
+     * 任一玩家到达截止 tick 时队首剩余时间为 1，整个队列都会在该 tick 内扫完，因此不会有玩家超时
+     */
+    private int computeMandatory(long currentTick) {
+        int pending = deadlines.size();
+        if (pending == 0) {
+            return 0;
+        }
+        Pending head;
+        while ((head = queue.peek()) != null && !isCurrent(head)) {
+            queue.poll(); // 顺便清理队首的失效条目
+        }
+        if (head == null) {
+            return 0;
+        }
+        long ticksLeft = Math.max(1L, head.deadline - currentTick + 1);
+        return (int) ((pending + ticksLeft - 1) / ticksLeft);
+    }
+}
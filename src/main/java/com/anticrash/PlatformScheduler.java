@@ -0,0 +1,97 @@
+package com.anticrash;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * 调度抽象层
+ * Paper 上使用 Bukkit 主线程调度器，Folia 上使用实体调度器 / 全局区域调度器，
+ * 业务代码只依赖该接口，不直接调用 BukkitScheduler
+ */
+public interface PlatformScheduler {
+
+    /**
+     * 可取消的任务句柄
+     */
+    interface TaskHandle {
+        void cancel();
+
+        boolean isCancelled();
+    }
+
+    /**
+     * 是否运行在 Folia 区域化多线程服务端上
+     */
+    boolean isFolia();
+
+    /**
+     * 当前服务器 tick 编号，可在任意线程（包括数据包线程）读取
+     */
+    long getCurrentTick();
+
+    /**
+     * 周期性执行全局任务（Paper 主线程 / Folia 全局区域线程）
+     * 全局任务在 Folia 上不能直接访问实体，需要再通过 {@link #runForEntity} 分发
+     */
+    TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks);
+
+    /**
+     * 延迟执行全局任务
+     */
+    void runGlobalLater(Runnable task, long delayTicks);
+
+    /**
+     * 在拥有该实体的线程上执行任务（Paper 主线程 / Folia 实体所在区域线程）
+     * 实体已被移除时任务不会执行
+     */
+    void runForEntity(Entity entity, Runnable task);
+
+    /**
+     * 延迟在拥有该实体的线程上执行任务
+     */
+    void runForEntityLater(Entity entity, Runnable task, long delayTicks);
+
+    /**
+     * 从全局任务中对实体执行任务
+     * Paper 上全局任务本身就在主线程，直接执行；Folia 上全局线程不能读取实体数据，分发到实体所在的区域线程，
+     * 实体已被移除时任务不会执行
+     */
+    default void runForEntityFromGlobal(Entity entity, Runnable task) {
+        if (isFolia()) {
+            runForEntity(entity, task);
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 在后台线程执行任务
+     */
+    void runAsync(Runnable task);
+
+    /**
+     * 传送实体，Folia 上只能使用异步传送
+     * 必须在拥有该实体的线程上调用
+     */
+    void teleport(Entity entity, Location target);
+
+    /**
+     * 根据运行环境创建对应的调度器实现
+     */
+    static PlatformScheduler create(Plugin plugin) {
+        if (isFoliaRuntime()) {
+            return new FoliaPlatformScheduler(plugin);
+        }
+        return new BukkitPlatformScheduler(plugin);
+    }
+
+    static boolean isFoliaRuntime() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.anticrash;
+
+import org.bukkit.entity.Player;
+
+/**
+ * 玩家检查项扩展接口
+ * 内置检查与第三方插件的检查都实现该接口，并通过 {@link CheckRegistry} 注册：
+ * <pre>
+ * AntiCrashPlugin antiCrash = (AntiCrashPlugin) Bukkit.getPluginManager().getPlugin("AntiCrashProtector");
+ * antiCrash.getCheckRegistry().register(this, new MyCheck());
+ * </pre>
+ * {@link #check} 可能在后台判定线程执行，只能读取快照与配置，不能调用 Bukkit API；
+ * 需要额外的玩家数据时，在 {@link #capture} 中采集并存入快照
+ */
+public interface PlayerCheck {
+
+    /**
+     * 检查项唯一标识，用于统计展示与注销
+     */
+    String getId();
+
+    /**
+     * 该检查依赖的子系统位掩码，见 {@link DirtyTracker}
+     * 增量扫描时只有对应子系统被标记才会执行；返回 0 表示每次扫描都执行（应保证足够廉价）
+     */
+    int getSubsystems();
+
+    /**
+     * 根据配置判断是否启用
+     */
+    default boolean isEnabled(MonitorSettings settings) {
+        return true;
+    }
+
+    /**
+     * 玩家死亡时是否仍需执行（死亡期间生命值等数据不可信，默认跳过）
+     */
+    default boolean appliesToDead() {
+        return false;
+    }
+
+    /**
+     * 在拥有该玩家的线程上采集额外数据，通过 {@link PlayerSnapshot#putExtra} 存入快照
+     * 只会在检查项依赖的子系统被采集时调用
+     */
+    default void capture(Player player, PlayerSnapshot snapshot) {
+    }
+
+    /**
+     * 执行检查，通过 {@link Diagnosis#report} 登记发现的问题
+     */
+    void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis);
+}
@@ -2,12 +2,11 @@ package com.anticrash;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
 import org.bukkit.attribute.AttributeModifier;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -15,16 +14,20 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 /**
@@ -34,52 +37,102 @@ import java.util.logging.Level;
 public class PlayerMonitor implements Listener {
     
     private static PlayerMonitor instance;
+    // 每个线程复用的快照与诊断结果，正常玩家的诊断过程不产生分配
+    private static final ThreadLocal<PlayerSnapshot> SCRATCH_SNAPSHOT = ThreadLocal.withInitial(PlayerSnapshot::new);
+    private static final ThreadLocal<Diagnosis> SCRATCH_DIAGNOSIS = ThreadLocal.withInitial(Diagnosis::new);
     private final AntiCrashPlugin plugin;
-    private BukkitTask monitorTask;
-    private long checkInterval;
-    private final Map<UUID, Location> lastSafeLocations;
+    private final PlatformScheduler scheduler;
+    private PlatformScheduler.TaskHandle monitorTask;
+    private final PatrolScheduler patrolScheduler;
+    private final PatrolDispatcher patrolDispatcher;
+    private final DirtyTracker dirtyTracker;
+    private final RiskTracker riskTracker;
+    // Folia 上加入事件在区域线程读取该值
+    private volatile long currentTick;
+    private long nextPassTick;
+    private long lastBudgetNanos;
+    // 后台规则判定线程池，未开启异步判定时为 null
+    private ExecutorService evaluationExecutor;
+    // 正在后台判定中的玩家，避免同一玩家的快照堆积
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    // 异步判定时快照需要跨线程传递，无法使用线程本地对象，改为对象池复用
+    private final BlockingQueue<PlayerSnapshot> snapshotPool = new ArrayBlockingQueue<>(64);
+    private final Map<UUID, SafeLocation> lastSafeLocations;
 
     /**
      * 修复场景：自动监控、手动指令、拦截指令前置检查
+     * 序号写入异常事件记录，只能在末尾追加新的场景
      */
-    private enum RepairContext {
+    enum RepairContext {
         AUTO,
         MANUAL,
         COMMAND
     }
 
     /**
-     * 异常类型：用于分级处理和详细提示
+     * 最近一次通过检查的坐标
+     * 以基本类型保存并原地更新，避免每次扫描分配 Location；世界使用弱引用，不阻止世界卸载
+     * 写入来自后台判定线程，读取在拥有玩家的线程，因此读写都加锁
      */
-    private enum IssueType {
-        LOCATION,   // 坐标异常 (NaN/越界)
-        HEALTH,     // 生命值异常
-        ATTRIBUTES, // 属性异常 (非法值)
-        EFFECTS,    // 药水效果异常
-        INVENTORY,  // 物品栏异常
-        GENERAL     // 其他未知异常
-    }
-
-    private static class Diagnosis {
-        private final EnumSet<IssueType> issues = EnumSet.noneOf(IssueType.class);
-        private boolean severe; // 是否属于严重异常（需要传送修复）
+    private static final class SafeLocation {
+        private WeakReference<World> worldRef;
+        private double x;
+        private double y;
+        private double z;
+        private float yaw;
+        private float pitch;
+
+        private synchronized void update(PlayerSnapshot snapshot) {
+            World world = snapshot.getWorld();
+            if (worldRef == null || worldRef.get() != world) {
+                worldRef = new WeakReference<>(world);
+            }
+            x = snapshot.getX();
+            y = snapshot.getY();
+            z = snapshot.getZ();
+            yaw = snapshot.getYaw();
+            pitch = snapshot.getPitch();
+        }
 
-        private boolean hasIssues() {
-            return !issues.isEmpty();
+        private synchronized Location toLocation() {
+            World world = worldRef == null ? null : worldRef.get();
+            return world == null ? null : new Location(world, x, y, z, yaw, pitch);
         }
     }
 
     public PlayerMonitor(AntiCrashPlugin plugin) {
         this.plugin = plugin;
+        this.scheduler = plugin.getPlatformScheduler();
         instance = this;
-        this.lastSafeLocations = new HashMap<>();
+        // 安全坐标可能由后台判定线程写入
+        this.lastSafeLocations = new ConcurrentHashMap<>();
+        this.patrolScheduler = new PatrolScheduler();
+        this.dirtyTracker = new DirtyTracker();
+        this.riskTracker = new RiskTracker(() -> currentTick);
+        this.patrolDispatcher = new PatrolDispatcher(scheduler, patrolScheduler, riskTracker, Bukkit::getPlayer, this::patrolScan);
         // 注册监听器以清理内存
         Bukkit.getPluginManager().registerEvents(this, plugin);
+        Bukkit.getPluginManager().registerEvents(dirtyTracker, plugin);
+        Bukkit.getPluginManager().registerEvents(riskTracker, plugin);
+        registerBuiltinChecks(plugin.getCheckRegistry());
         loadConfig();
     }
 
+    /**
+     * 注册内置检查项，初始顺序即冷启动时的执行顺序（廉价的检查在前）
+     */
+    private void registerBuiltinChecks(CheckRegistry registry) {
+        registry.register(plugin, new LocationCheck(this::cacheSafeLocation));
+        registry.register(plugin, new HealthCheck());
+        registry.register(plugin, new VehicleCheck());
+        registry.register(plugin, new InventoryCheck());
+        registry.register(plugin, new EffectCheck());
+        registry.register(plugin, new AttributeSetCheck(plugin.getFastutilSetProbe()));
+        registry.register(plugin, new AttributeCheck());
+    }
+
     public void loadConfig() {
-        this.checkInterval = plugin.getConfig().getLong("monitoring.check-interval", 100L);
+        // 巡逻参数直接读取配置快照，这里只需重启任务使新的周期生效
         if (isMonitoring()) {
             startMonitoring();
         }
@@ -87,19 +140,25 @@ public class PlayerMonitor implements Listener {
 
     @EventHandler
     public void onPlayerJoin(org.bukkit.event.player.PlayerJoinEvent event) {
+        // 新玩家立即进入巡逻队列，保证在覆盖时限内被扫描
+        if (isMonitoring()) {
+            patrolScheduler.enqueue(event.getPlayer().getUniqueId(), currentTick + plugin.getSettings().getSlaTicks());
+        }
+
         // 玩家进服时立即检查，防止"登录即崩"的死循环
         // 延迟 1 tick 执行，确保玩家数据已完全加载
-        Bukkit.getScheduler().runTask(plugin, () -> {
+        scheduler.runForEntity(event.getPlayer(), () -> {
             if (event.getPlayer().isOnline()) {
                 checkSinglePlayer(event.getPlayer(), false);
             }
         });
         
         // 延迟 20 tick (1秒) 再次检查，确保所有数据加载完成
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+        scheduler.runForEntityLater(event.getPlayer(), () -> {
             if (event.getPlayer().isOnline()) {
                 try {
                     if (checkAndRepairAttributesBeforeTeleport(event.getPlayer())) {
+                        riskTracker.recordDiagnosis(event.getPlayer().getUniqueId(), true, false);
                         logWarn("玩家加入后检测并修复了损坏的属性: 玩家=" + event.getPlayer().getName());
                     }
                 } catch (Exception e) {
@@ -113,7 +172,7 @@ public class PlayerMonitor implements Listener {
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
         
-        if (plugin.getConfig().getBoolean("monitoring.checks.attributes", true)) {
+        if (plugin.getSettings().isCheckAttributes()) {
             try {
                 preCheckAndRepairAttributes(player);
             } catch (Exception e) {
@@ -122,15 +181,18 @@ public class PlayerMonitor implements Listener {
         }
         
         lastSafeLocations.remove(player.getUniqueId());
+        patrolScheduler.remove(player.getUniqueId());
+        plugin.getFingerprintCache().remove(player.getUniqueId());
     }
     
     @EventHandler(priority = EventPriority.LOWEST)
     public void onPlayerTeleport(PlayerTeleportEvent event) {
         Player player = event.getPlayer();
         
-        if (plugin.getConfig().getBoolean("monitoring.checks.attributes", true)) {
+        if (plugin.getSettings().isCheckAttributes()) {
             try {
                 if (checkAndRepairAttributesBeforeTeleport(player)) {
+                    riskTracker.recordDiagnosis(player.getUniqueId(), true, false);
                     logWarn("传送前检测并修复了玩家损坏的属性: 玩家=" + player.getName());
                 }
             } catch (Exception e) {
@@ -138,10 +200,11 @@ public class PlayerMonitor implements Listener {
             }
             
             // 传送后延迟检查，覆盖传送过程中的属性损坏
-            Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            scheduler.runForEntityLater(player, () -> {
                 if (player.isOnline()) {
                     try {
                         if (checkAndRepairAttributesBeforeTeleport(player)) {
+                            riskTracker.recordDiagnosis(player.getUniqueId(), true, false);
                             logWarn("传送后检测并修复了玩家损坏的属性: 玩家=" + player.getName());
                         }
                     } catch (Exception e) {
@@ -155,22 +218,23 @@ public class PlayerMonitor implements Listener {
     private boolean checkAndRepairAttributesBeforeTeleport(Player player) {
         boolean hasCorruption = false;
         
-        for (Attribute attr : Attribute.values()) {
+        ModifierFingerprintCache fingerprints = plugin.getFingerprintCache();
+        UUID uuid = player.getUniqueId();
+        Attribute[] attributes = Attribute.values();
+        // 只访问玩家实际拥有的属性
+        for (int i : plugin.getAttributeIndex().get(player)) {
+            Attribute attr = attributes[i];
             try {
                 AttributeInstance attrInstance = player.getAttribute(attr);
                 if (attrInstance == null) continue;
                 
                 try {
-                    Collection<AttributeModifier> modifiers = attrInstance.getModifiers();
-                    if (modifiers != null) {
-                        for (AttributeModifier modifier : modifiers) {
-                            if (modifier == null) continue;
-                            modifier.getAmount();
-                        }
-                    }
+                    // 指纹未变化的属性跳过修饰符遍历
+                    fingerprints.verify(uuid, i, attrInstance);
                 } catch (NullPointerException npe) {
                     logWarn("传送前检测到属性修饰符集合损坏: 玩家=" + player.getName() + " 属性=" + attr.name());
                     hasCorruption = true;
+                    fingerprints.invalidate(uuid, i);
                     forceRepairAttributeDeep(attrInstance, attr);
                 }
             } catch (Exception attrEx) {
@@ -184,22 +248,23 @@ public class PlayerMonitor implements Listener {
     private void preCheckAndRepairAttributes(Player player) {
         boolean hasCorruption = false;
         
-        for (Attribute attr : Attribute.values()) {
+        ModifierFingerprintCache fingerprints = plugin.getFingerprintCache();
+        UUID uuid = player.getUniqueId();
+        Attribute[] attributes = Attribute.values();
+        // 只访问玩家实际拥有的属性
+        for (int i : plugin.getAttributeIndex().get(player)) {
+            Attribute attr = attributes[i];
             try {
                 AttributeInstance attrInstance = player.getAttribute(attr);
                 if (attrInstance == null) continue;
                 
                 try {
-                    Collection<AttributeModifier> modifiers = attrInstance.getModifiers();
-                    if (modifiers != null) {
-                        for (AttributeModifier modifier : modifiers) {
-                            if (modifier == null) continue;
-                            modifier.getAmount();
-                        }
-                    }
+                    // 指纹未变化的属性跳过修饰符遍历
+                    fingerprints.verify(uuid, i, attrInstance);
                 } catch (NullPointerException npe) {
                     logWarn("玩家退出时检测到属性修饰符集合损坏: 玩家=" + player.getName() + " 属性=" + attr.name());
                     hasCorruption = true;
+                    fingerprints.invalidate(uuid, i);
                     forceRepairAttributeDeep(attrInstance, attr);
                 }
             } catch (Exception attrEx) {
@@ -227,45 +292,13 @@ public class PlayerMonitor implements Listener {
     }
     
     /**
-     * 通过反射清空属性实例的修饰符集合
+     * 通过 NMS 访问层清空属性实例的修饰符集合
      * 用于修复 fastutil ObjectOpenHashSet 内部结构损坏的情况
      */
     private void clearAttributeModifiersViaReflection(AttributeInstance attrInstance, Attribute attr) {
-        try {
-            Object craftAttrInstance = attrInstance;
-            Field handleField = craftAttrInstance.getClass().getDeclaredField("handle");
-            handleField.setAccessible(true);
-            Object nmsAttributeInstance = handleField.get(craftAttrInstance);
-            
-            if (nmsAttributeInstance != null) {
-                Field modifiersField = null;
-                Class<?> clazz = nmsAttributeInstance.getClass();
-                while (clazz != null && modifiersField == null) {
-                    try {
-                        modifiersField = clazz.getDeclaredField("modifiers");
-                    } catch (NoSuchFieldException e) {
-                        clazz = clazz.getSuperclass();
-                    }
-                }
-                
-                if (modifiersField != null) {
-                    modifiersField.setAccessible(true);
-                    Object modifiersObj = modifiersField.get(nmsAttributeInstance);
-                    
-                    if (modifiersObj != null) {
-                        try {
-                            Method clearMethod = modifiersObj.getClass().getMethod("clear");
-                            clearMethod.invoke(modifiersObj);
-                            logWarn("已通过反射清空损坏的修饰符集合: 属性=" + attr.name());
-                        } catch (Exception clearEx) {
-                            modifiersField.set(nmsAttributeInstance, null);
-                            logWarn("已通过反射置空损坏的修饰符集合: 属性=" + attr.name());
-                        }
-                    }
-                }
-            }
-        } catch (Exception reflectEx) {
-            // 反射失败时静默处理，不影响正常流程
+        int cleared = plugin.getNmsAttributeAccessor().clearModifiers(attrInstance);
+        if (cleared > 0) {
+            logWarn("已通过反射清空损坏的修饰符集合: 属性=" + attr.name() + " 集合数=" + cleared);
         }
     }
     
@@ -283,36 +316,140 @@ public class PlayerMonitor implements Listener {
     }
 
     /**
-     * 启动监控任务：采用分摊负载算法，每 tick 只检查部分玩家
+     * 启动监控任务：每 tick 按时间预算扫描队列中的玩家
+     * 每名玩家按风险分数排期，到期后进入扫描队列，未扫描完的玩家顺延到下一 tick
      */
     public void startMonitoring() {
         stopMonitoring();
-        
-        monitorTask = new BukkitRunnable() {
-            private Iterator<? extends Player> playerIterator;
+        currentTick = 0L;
+        nextPassTick = 0L;
+        dirtyTracker.clear(); // tick 计数重置后，所有玩家的下一次扫描都为完整扫描
+        riskTracker.clear();
+
+        MonitorSettings startSettings = plugin.getSettings();
+        riskTracker.applySettings(startSettings);
+        if (startSettings.isAsyncEvaluation()) {
+            AtomicInteger threadId = new AtomicInteger();
+            evaluationExecutor = Executors.newFixedThreadPool(startSettings.getEvaluationThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "AntiCrash-Evaluator-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
 
-            @Override
-            public void run() {
-                if (!plugin.getConfig().getBoolean("monitoring.enabled", true)) {
-                    return;
-                }
+        monitorTask = scheduler.runGlobalTimer(this::patrolTick, 20L, 1L);
+    }
 
-                // 每 tick 检查 5 个玩家，确保高并发下不影响 TPS
-                int checkedCount = 0;
-                
-                if (playerIterator == null || !playerIterator.hasNext()) {
-                    playerIterator = Bukkit.getOnlinePlayers().iterator();
-                }
+    /**
+     * 巡逻任务的单 tick 逻辑（Paper 主线程 / Folia 全局区域线程）
+     */
+    private void patrolTick() {
+        MonitorSettings settings = plugin.getSettings();
+        if (!settings.isMonitoringEnabled()) {
+            return;
+        }
 
-                while (playerIterator.hasNext() && checkedCount < 5) {
-                    Player player = playerIterator.next();
-                    if (player != null && player.isOnline()) {
-                        checkSinglePlayer(player, false);
-                    }
-                    checkedCount++;
-                }
+        long tick = ++currentTick;
+        if (tick >= nextPassTick) {
+            // 兜底：确保所有在线玩家都已排期（如重载前已在线的玩家）
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                riskTracker.ensureScheduled(player.getUniqueId(), tick);
             }
-        }.runTaskTimer(plugin, 20L, checkInterval); 
+            nextPassTick = tick + settings.getCheckInterval();
+        }
+        // 到期玩家进入扫描队列，截止时间为上一次扫描后的覆盖时限
+        riskTracker.pollDue(tick, patrolScheduler::enqueue);
+
+        lastBudgetNanos = computeTickBudget(settings);
+        patrolDispatcher.runTick(tick, lastBudgetNanos, settings);
+    }
+
+    /**
+     * 巡逻扫描单个玩家，必须在拥有该玩家的线程上执行
+     */
+    private void patrolScan(Player player, MonitorSettings settings, long tick) {
+        if (!player.isOnline()) {
+            return;
+        }
+        UUID uuid = player.getUniqueId();
+        int subsystems = settings.isIncrementalEnabled()
+                ? dirtyTracker.acquire(uuid, tick, settings.getFullSweepInterval())
+                : DirtyTracker.ALL;
+        if (evaluationExecutor != null) {
+            submitEvaluation(player, subsystems & settings.getEnabledSubsystems());
+        } else if (checkSinglePlayer(player, false, subsystems)) {
+            // 仍存在异常（如自动修复关闭），保留标记以便下次继续检查
+            dirtyTracker.markDirty(uuid, subsystems);
+        }
+    }
+
+    /**
+     * 主线程采集快照后交给后台线程判定，仅在发现异常时回到主线程执行修复
+     */
+    private void submitEvaluation(Player player, int subsystems) {
+        UUID uuid = player.getUniqueId();
+        if (!inFlight.add(uuid)) {
+            // 上一次判定尚未完成，保留标记留待下次扫描
+            dirtyTracker.markDirty(uuid, subsystems);
+            return;
+        }
+        PlayerSnapshot polled = snapshotPool.poll();
+        PlayerSnapshot snapshot = polled != null ? polled : new PlayerSnapshot();
+        if (!capture(player, snapshot, subsystems, plugin.getFingerprintCache(), plugin.getSettings())) {
+            inFlight.remove(uuid);
+            snapshotPool.offer(snapshot);
+            return;
+        }
+        try {
+            evaluationExecutor.execute(() -> {
+                Diagnosis scratch = SCRATCH_DIAGNOSIS.get();
+                scratch.reset();
+                try {
+                    evaluate(snapshot, scratch);
+                } finally {
+                    inFlight.remove(uuid);
+                    snapshotPool.offer(snapshot);
+                }
+                if (!scratch.hasIssues() || !plugin.isEnabled()) {
+                    return;
+                }
+                // 复用对象会被本线程的下一次判定覆盖，交给修复流程前复制一份
+                Diagnosis diagnosis = scratch.copy();
+                // 仅修复动作回到拥有该玩家的线程执行
+                scheduler.runForEntity(player, () -> {
+                    if (!player.isOnline()) {
+                        return;
+                    }
+                    processDiagnosis(player, diagnosis, RepairContext.AUTO);
+                    dirtyTracker.markDirty(uuid, subsystems);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已关闭（监控停止中）
+            inFlight.remove(uuid);
+            snapshotPool.offer(snapshot);
+        }
+    }
+
+    /**
+     * 根据服务器实测 MSPT 计算本 tick 的扫描预算
+     * MSPT 低于目标值时使用完整预算，接近 50ms 时线性收缩到保底预算
+     */
+    private long computeTickBudget(MonitorSettings settings) {
+        long budgetNanos = settings.getBudgetNanos();
+        double targetMspt = settings.getTargetMspt();
+        double mspt;
+        try {
+            mspt = plugin.getServer().getAverageTickTime();
+        } catch (Throwable t) {
+            return budgetNanos; // 非 Paper 服务端无法获取 MSPT
+        }
+        if (!isValidDouble(mspt) || mspt <= targetMspt) {
+            return budgetNanos;
+        }
+        double headroom = 50.0 - targetMspt;
+        double factor = headroom <= 0.0 ? 0.0 : Math.max(0.0, (50.0 - mspt) / headroom);
+        return Math.max(settings.getMinBudgetNanos(), (long) (budgetNanos * factor));
     }
 
     public void stopMonitoring() {
@@ -320,12 +457,37 @@ public class PlayerMonitor implements Listener {
             monitorTask.cancel();
             monitorTask = null;
         }
+        if (evaluationExecutor != null) {
+            evaluationExecutor.shutdown();
+            evaluationExecutor = null;
+        }
+        inFlight.clear();
+        patrolScheduler.clear();
     }
 
     public boolean isMonitoring() {
         return monitorTask != null && !monitorTask.isCancelled();
     }
 
+    public int getPendingScanCount() {
+        return patrolScheduler.getPendingCount();
+    }
+
+    public long getLastBudgetNanos() {
+        return lastBudgetNanos;
+    }
+
+    /**
+     * 单名玩家的平均巡逻扫描耗时（纳秒），Folia 上每分发一名玩家按该值计入扫描预算
+     */
+    public long getEstimatedScanNanos() {
+        return patrolDispatcher.getEstimatedScanNanos();
+    }
+
+    public RiskTracker getRiskTracker() {
+        return riskTracker;
+    }
+
     public void checkAllPlayers() {
         for (Player player : Bukkit.getOnlinePlayers()) {
             checkSinglePlayer(player, true);
@@ -338,31 +500,53 @@ public class PlayerMonitor implements Listener {
      * @param isManual 是否为手动触发
      */
     public void checkSinglePlayer(Player player, boolean isManual) {
+        checkSinglePlayer(player, isManual, DirtyTracker.ALL);
+    }
+
+    /**
+     * 检查单个玩家的指定子系统
+     * @param subsystems 需要检查的子系统位掩码，见 {@link DirtyTracker}
+     * @return 是否发现异常
+     */
+    private boolean checkSinglePlayer(Player player, boolean isManual, int subsystems) {
         RepairContext context = isManual ? RepairContext.MANUAL : RepairContext.AUTO;
-        Diagnosis diagnosis = diagnosePlayer(player);
+        // 手动检查始终完整遍历修饰符，自动检查使用指纹缓存
+        ModifierFingerprintCache fingerprints = isManual ? null : plugin.getFingerprintCache();
+        return processDiagnosis(player, diagnosePlayer(player, subsystems, fingerprints), context);
+    }
+
+    /**
+     * 根据诊断结果提示并修复玩家，必须在主线程调用
+     * @return 是否发现异常
+     */
+    private boolean processDiagnosis(Player player, Diagnosis diagnosis, RepairContext context) {
+        boolean isManual = context == RepairContext.MANUAL;
         if (!diagnosis.hasIssues()) {
-            if (context == RepairContext.MANUAL && player != null) {
+            if (isManual && player != null) {
                 player.sendMessage(plugin.getPrefixedMessage("diagnose-manual-ok"));
             }
-            return;
+            return false;
         }
+        plugin.getMetrics().recordDetection(diagnosis.getIssueMask());
         if (isManual) {
             String itemText = String.join("、", buildIssueLabels(diagnosis));
             logWarn("手动检查发现玩家数据异常: 玩家=" + player.getName() + " 项目=" + itemText);
         }
 
         // 检查自动修复开关
-        if (context == RepairContext.AUTO && !plugin.getConfig().getBoolean("repair.auto-repair", true)) {
+        if (context == RepairContext.AUTO && !plugin.getSettings().isAutoRepair()) {
             String itemText = String.join("、", buildIssueLabels(diagnosis));
             logWarn("检测到玩家异常但自动修复已关闭: 玩家=" + player.getName() + " 项目=" + itemText);
-            return;
+            recordIncident(player, diagnosis, context, 0);
+            return true;
         }
 
         handleCorruptedPlayer(player, diagnosis, context);
+        return true;
     }
 
     public boolean diagnoseAndRepairForCommand(Player player) {
-        Diagnosis diagnosis = diagnosePlayer(player);
+        Diagnosis diagnosis = diagnosePlayer(player, DirtyTracker.ALL, null);
         if (!diagnosis.hasIssues()) {
             return true;
         }
@@ -370,7 +554,7 @@ public class PlayerMonitor implements Listener {
     }
 
     public boolean isPlayerDataCorrupted(Player player) {
-        return diagnosePlayer(player).hasIssues();
+        return diagnosePlayer(player, DirtyTracker.ALL, null).hasIssues();
     }
     
     private boolean isValidDouble(double d) {
@@ -378,192 +562,139 @@ public class PlayerMonitor implements Listener {
     }
 
     private void logWarn(String message) {
+        if (!plugin.getLogDeduplicator().admit("WARN", message)) {
+            return;
+        }
         plugin.getLogger().warning(message);
         plugin.getLogManager().log("WARN", message);
     }
 
     private void logError(String message, Throwable e) {
+        if (!plugin.getLogDeduplicator().admit("ERROR", message)) {
+            return;
+        }
         plugin.getLogger().log(Level.SEVERE, message, e);
         plugin.getLogManager().log("ERROR", message);
     }
 
-    private Diagnosis diagnosePlayer(Player player) {
-        Diagnosis diagnosis = new Diagnosis();
+    /**
+     * 诊断玩家数据（在主线程同步完成采集与判定）
+     * 坐标与生命值始终检查，其余子系统仅在 subsystems 中被标记时检查
+     * 快照与诊断结果使用线程本地对象：正常玩家直接返回复用对象（调用方只能立即读取），
+     * 发现异常时返回独立副本，因为修复过程中的传送等操作可能在同一线程触发新的诊断
+     * @param fingerprints 修饰符指纹缓存，为 null 时完整遍历所有修饰符
+     */
+    private Diagnosis diagnosePlayer(Player player, int subsystems, ModifierFingerprintCache fingerprints) {
+        PluginMetrics metrics = plugin.getMetrics();
+        long start = metrics.start();
         try {
-            if (player == null || !player.isOnline()) return diagnosis;
-
-            Location loc = player.getLocation();
-            int minY = plugin.getConfig().getInt("repair.thresholds.y-min", -64);
-            int maxY = plugin.getConfig().getInt("repair.thresholds.y-max", 320);
-
-            // 核心坐标检查与安全坐标缓存
-            if (plugin.getConfig().getBoolean("monitoring.checks.location", true)) {
-                double coordinateMax = plugin.getConfig().getDouble("repair.thresholds.coordinate-max", 30000000.0);
-                String worldName = loc.getWorld() != null ? loc.getWorld().getName() : "unknown";
-                if (!isValidDouble(loc.getX()) || !isValidDouble(loc.getY()) || !isValidDouble(loc.getZ())) {
-                    logWarn("发现玩家坐标异常(NaN/Infinite): 玩家=" + player.getName() + " 世界=" + worldName + " X=" + loc.getX() + " Y=" + loc.getY() + " Z=" + loc.getZ());
-                    diagnosis.issues.add(IssueType.LOCATION);
-                    diagnosis.severe = true;
-                } else if (Math.abs(loc.getX()) > coordinateMax || Math.abs(loc.getZ()) > coordinateMax) {
-                    // 防止坐标溢出导致区块加载崩溃
-                    logWarn("发现玩家坐标超出世界边界: 玩家=" + player.getName() + " 世界=" + worldName + " X=" + loc.getX() + " Z=" + loc.getZ() + " 最大=" + coordinateMax);
-                    diagnosis.issues.add(IssueType.LOCATION);
-                    diagnosis.severe = true;
-                } else if (loc.getY() < minY || loc.getY() > maxY) {
-                    logWarn("发现玩家坐标越界: 玩家=" + player.getName() + " 世界=" + worldName + " Y=" + loc.getY() + " 范围=[" + minY + "," + maxY + "]");
-                    diagnosis.issues.add(IssueType.LOCATION);
-                    diagnosis.severe = true;
-                } else {
-                    cacheSafeLocation(player, loc);
-                }
-            }
-
-            // 生命值检查
-            // 如果玩家已死亡（生命值 <= 0），则跳过检查，避免误判
-            if (player.isDead() || player.getHealth() <= 0.0) {
+            MonitorSettings settings = plugin.getSettings();
+            Diagnosis diagnosis = SCRATCH_DIAGNOSIS.get();
+            diagnosis.reset();
+            PlayerSnapshot snapshot = SCRATCH_SNAPSHOT.get();
+            if (!capture(player, snapshot, subsystems & settings.getEnabledSubsystems(), fingerprints, settings)) {
                 return diagnosis;
             }
+            evaluate(snapshot, diagnosis);
+            return diagnosis.hasIssues() ? diagnosis.copy() : diagnosis;
+        } finally {
+            metrics.stop(PluginMetrics.Timer.DIAGNOSE, start);
+        }
+    }
 
-            double health = player.getHealth();
-            double minHealth = plugin.getConfig().getDouble("repair.thresholds.health-min", 0.5);
-            double maxHealth = plugin.getConfig().getDouble("repair.thresholds.health-max", 1024.0);
-            if (!isValidDouble(health) || health < minHealth || health > maxHealth) {
-                logWarn("发现玩家生命值异常: 玩家=" + player.getName() + " Health=" + health + " 范围=[" + minHealth + "," + maxHealth + "]");
-                diagnosis.issues.add(IssueType.HEALTH);
-            }
-
-            // 属性检查 (Core Attribute Integrity Check)
-            // 针对 1.21+ 常见的 ClientboundUpdateAttributesPacket NPE 崩溃
-            // 遍历所有注册属性并拦截 NaN/Infinity 非法值，同时检测修饰符集合内部损坏
-            if (plugin.getConfig().getBoolean("monitoring.checks.attributes", true)) {
-                for (Attribute attr : Attribute.values()) {
-                    try {
-                        AttributeInstance attrInstance = player.getAttribute(attr);
-                        if (attrInstance != null) {
-                            double val = attrInstance.getValue();
-                            double base = attrInstance.getBaseValue();
-                            
-                            // 核心有效性校验：拦截所有可能导致发包崩溃的非有限数值
-                            // 属性值异常只需修复，不传送
-                            if (!isValidDouble(val) || !isValidDouble(base)) {
-                                logWarn("检测到高危非法属性值 (NaN/Inf): 玩家=" + player.getName() + " 属性=" + attr.name() + " Value=" + val + " Base=" + base);
-                                diagnosis.issues.add(IssueType.ATTRIBUTES);
-                            }
-                            
-                            // 深度检查：尝试遍历修饰符集合，检测内部结构损坏
-                            // 这是针对 fastutil ObjectOpenHashSet "wrapped is null" 崩溃的关键修复
-                            try {
-                                Collection<AttributeModifier> modifiers = attrInstance.getModifiers();
-                                if (modifiers != null) {
-                                    for (AttributeModifier modifier : modifiers) {
-                                        if (modifier == null) continue;
-                                        // 尝试访问修饰符属性，触发潜在的内部异常
-                                        double amount = modifier.getAmount();
-                                        if (!isValidDouble(amount)) {
-                                            logWarn("检测到属性修饰符数值异常: 玩家=" + player.getName() + " 属性=" + attr.name() + " Amount=" + amount);
-                                            diagnosis.issues.add(IssueType.ATTRIBUTES);
-                                        }
-                                    }
-                                }
-                            } catch (NullPointerException npe) {
-                                // 捕获 fastutil ObjectOpenHashSet 内部 "wrapped is null" 异常
-                                logWarn("检测到属性修饰符集合内部结构损坏 (NPE): 玩家=" + player.getName() + " 属性=" + attr.name() + " 异常=" + npe.getMessage());
-                                diagnosis.issues.add(IssueType.ATTRIBUTES);
-                            } catch (Exception modifierEx) {
-                                logWarn("属性修饰符检查异常: 玩家=" + player.getName() + " 属性=" + attr.name() + " 异常=" + modifierEx.getClass().getSimpleName() + " 信息=" + modifierEx.getMessage());
-                                diagnosis.issues.add(IssueType.ATTRIBUTES);
-                            }
-                            
-                            // 针对核心属性的业务范围约束，防止数值溢出引发的逻辑异常
-                            double speedMax = plugin.getConfig().getDouble("repair.thresholds.speed-max", 1.0);
-                            double speedMin = plugin.getConfig().getDouble("repair.thresholds.speed-min", 0.0);
-                            double damageMax = plugin.getConfig().getDouble("repair.thresholds.damage-max", 2048.0);
-                            double damageMin = plugin.getConfig().getDouble("repair.thresholds.damage-min", 0.0);
-                            double healthMaxAttr = plugin.getConfig().getDouble("repair.thresholds.health-max", 1024.0);
-                            double healthMinAttr = plugin.getConfig().getDouble("repair.thresholds.health-min", 0.5);
-
-                            if (attr == Attribute.GENERIC_MOVEMENT_SPEED && (val > speedMax || val < speedMin)) {
-                                logWarn("发现移动速度异常: 玩家=" + player.getName() + " Value=" + val + " 范围=[" + speedMin + "," + speedMax + "] Base=" + base);
-                                diagnosis.issues.add(IssueType.ATTRIBUTES);
-                            }
-                            if (attr == Attribute.GENERIC_MAX_HEALTH && (val > healthMaxAttr || val < healthMinAttr)) {
-                                logWarn("发现最大生命值异常: 玩家=" + player.getName() + " Value=" + val + " 范围=[" + healthMinAttr + "," + healthMaxAttr + "] Base=" + base);
-                                diagnosis.issues.add(IssueType.ATTRIBUTES);
-                            }
-                            if (attr == Attribute.GENERIC_ATTACK_DAMAGE && (val > damageMax || val < damageMin)) {
-                                logWarn("发现攻击伤害异常: 玩家=" + player.getName() + " Value=" + val + " 范围=[" + damageMin + "," + damageMax + "] Base=" + base);
-                                diagnosis.issues.add(IssueType.ATTRIBUTES);
-                            }
-                        }
-                    } catch (NullPointerException npe) {
-                        // 捕获属性实例本身的 NPE（如 getValue() 时内部集合损坏）
-                        logWarn("属性实例访问时发生 NPE: 玩家=" + player.getName() + " 属性=" + attr.name() + " 信息=" + npe.getMessage());
-                        diagnosis.issues.add(IssueType.ATTRIBUTES);
-                    } catch (Exception attrEx) {
-                        // 部分属性在某些版本可能不支持，静默处理
-                    }
-                }
-            }
-
-            // 药水效果检查
-            if (plugin.getConfig().getBoolean("monitoring.checks.effects", true)) {
-                for (org.bukkit.potion.PotionEffect effect : player.getActivePotionEffects()) {
-                    if (effect.getDuration() < 0 || effect.getAmplifier() < -1 || effect.getAmplifier() > 255) {
-                        logWarn("发现玩家药水效果异常: 玩家=" + player.getName() + " Effect=" + effect.getType().getName() + " Amplifier=" + effect.getAmplifier() + " Duration=" + effect.getDuration());
-                        diagnosis.issues.add(IssueType.EFFECTS);
-                    }
-                }
+    /**
+     * 采集快照（内置数据与第三方检查项数据），必须在拥有该玩家的线程上调用
+     * @return 玩家已不在线等原因无法采集时返回 false
+     */
+    private boolean capture(Player player, PlayerSnapshot snapshot, int subsystems, ModifierFingerprintCache fingerprints, MonitorSettings settings) {
+        PluginMetrics metrics = plugin.getMetrics();
+        long start = metrics.start();
+        try {
+            if (!snapshot.capture(player, subsystems, fingerprints, plugin.getAttributeIndex())) {
+                return false;
             }
+            plugin.getCheckRegistry().capture(player, snapshot, settings);
+            return true;
+        } finally {
+            metrics.stop(PluginMetrics.Timer.DIAGNOSE_CAPTURE, start);
+        }
+    }
 
-            // 物品栏检查
-            if (plugin.getConfig().getBoolean("monitoring.checks.inventory", true)) {
-                if (player.getInventory() == null) {
-                    logWarn("发现玩家物品栏丢失: 玩家=" + player.getName());
-                    diagnosis.issues.add(IssueType.INVENTORY);
-                }
-            }
+    /**
+     * 对数据快照执行已注册的检查项，结果写入传入的诊断对象
+     * 只读取快照与配置快照，不访问 Bukkit API，可在任意线程调用
+     */
+    private void evaluate(PlayerSnapshot snapshot, Diagnosis diagnosis) {
+        PluginMetrics metrics = plugin.getMetrics();
+        long start = metrics.start();
+        try {
+            // 整个诊断过程只读取同一份配置快照
+            plugin.getCheckRegistry().run(snapshot, plugin.getSettings(), diagnosis);
+        } finally {
+            metrics.stop(PluginMetrics.Timer.DIAGNOSE_CHECKS, start);
+        }
+        start = metrics.start();
+        try {
+            report(snapshot, diagnosis);
+        } finally {
+            metrics.stop(PluginMetrics.Timer.DIAGNOSE_REPORT, start);
+        }
+    }
 
-            // 载具状态检查
-            if (plugin.getConfig().getBoolean("monitoring.checks.vehicle", true)) {
-                if (player.isInsideVehicle() && (player.getVehicle() == null || !player.getVehicle().isValid())) {
-                     String vehicleType = player.getVehicle() != null ? player.getVehicle().getType().name() : "null";
-                     logWarn("发现异常载具状态: 玩家=" + player.getName() + " Vehicle=" + vehicleType);
-                     diagnosis.issues.add(IssueType.GENERAL);
-                     diagnosis.severe = true;
-                }
-            }
-        } catch (Exception e) {
-            logError("玩家数据诊断异常: 玩家=" + (player != null ? player.getName() : "unknown") + " 异常=" + e.getClass().getSimpleName() + " 信息=" + e.getMessage(), e);
-            diagnosis.issues.add(IssueType.GENERAL);
-            diagnosis.severe = true;
+    /**
+     * 输出诊断日志并更新风险评分
+     */
+    private void report(PlayerSnapshot snapshot, Diagnosis diagnosis) {
+        List<String> findings = diagnosis.getFindings();
+        for (int i = 0; i < findings.size(); i++) {
+            logWarn(findings.get(i));
         }
-        return diagnosis;
+        Throwable failure = diagnosis.getFailure();
+        if (failure != null) {
+            logError("玩家数据诊断异常: 玩家=" + snapshot.getName() + " 检查项=" + diagnosis.getFailedCheck() + " 异常=" + failure.getClass().getSimpleName() + " 信息=" + failure.getMessage(), failure);
+        }
+        Throwable captureError = snapshot.getCaptureError();
+        if (captureError != null) {
+            logError("玩家数据诊断异常: 玩家=" + snapshot.getName() + " 异常=" + captureError.getClass().getSimpleName() + " 信息=" + captureError.getMessage(), captureError);
+            diagnosis.fail("capture", captureError);
+        } else if ((snapshot.getSubsystems() & DirtyTracker.ATTRIBUTES) != 0) {
+            riskTracker.recordModifiers(snapshot.getUniqueId(), snapshot.getModifierTotal());
+        }
+        riskTracker.recordDiagnosis(snapshot.getUniqueId(), diagnosis.hasIssues(), diagnosis.isSevere());
     }
 
-    private void cacheSafeLocation(Player player, Location loc) {
-        if (player == null || loc == null) return;
-        lastSafeLocations.put(player.getUniqueId(), loc.clone());
+    private void cacheSafeLocation(PlayerSnapshot snapshot) {
+        UUID uuid = snapshot.getUniqueId();
+        if (uuid == null || snapshot.getWorld() == null) return;
+        SafeLocation safeLocation = lastSafeLocations.get(uuid);
+        if (safeLocation == null) {
+            safeLocation = lastSafeLocations.computeIfAbsent(uuid, key -> new SafeLocation());
+        }
+        safeLocation.update(snapshot);
     }
 
     private Location getLastSafeLocation(Player player) {
         if (player == null) return null;
-        Location loc = lastSafeLocations.get(player.getUniqueId());
-        return loc == null ? null : loc.clone();
+        SafeLocation safeLocation = lastSafeLocations.get(player.getUniqueId());
+        return safeLocation == null ? null : safeLocation.toLocation();
     }
 
     private boolean handleCorruptedPlayer(Player player, Diagnosis diagnosis, RepairContext context) {
+        PluginMetrics metrics = plugin.getMetrics();
+        long start = metrics.start();
         try {
             String msg = "正在修复玩家数据: " + player.getName();
             logWarn(msg);
 
+            MonitorSettings settings = plugin.getSettings();
             boolean isCommand = context == RepairContext.COMMAND;
-            boolean blockOnSevere = plugin.getConfig().getBoolean("repair.block-command-on-severe", true);
-            boolean teleportOnSevereOnly = plugin.getConfig().getBoolean("repair.teleport-on-severe-only", true);
-            boolean allowContinue = !diagnosis.severe || !blockOnSevere;
+            boolean blockOnSevere = settings.isBlockCommandOnSevere();
+            boolean teleportOnSevereOnly = settings.isTeleportOnSevereOnly();
+            boolean allowContinue = !diagnosis.isSevere() || !blockOnSevere;
             boolean teleported = false;
 
             // 基础修复：只在需要时触发
-            if (diagnosis.issues.contains(IssueType.HEALTH) || diagnosis.issues.contains(IssueType.ATTRIBUTES)) {
+            if (diagnosis.hasIssue(IssueType.HEALTH) || diagnosis.hasIssue(IssueType.ATTRIBUTES)) {
                 player.setHealth(20.0);
                 player.setFoodLevel(20);
                 player.setFireTicks(0);
@@ -571,19 +702,19 @@ public class PlayerMonitor implements Listener {
             }
 
             // 属性深度修复：清除损坏的修饰符并重置属性
-            if (diagnosis.issues.contains(IssueType.ATTRIBUTES)) {
+            if (diagnosis.hasIssue(IssueType.ATTRIBUTES)) {
                 repairCorruptedAttributes(player);
             }
 
-            if (diagnosis.issues.contains(IssueType.EFFECTS)) {
+            if (diagnosis.hasIssue(IssueType.EFFECTS)) {
                 player.getActivePotionEffects().forEach(effect -> player.removePotionEffect(effect.getType()));
             }
 
             // 严重异常情况下才进行传送
-            if (plugin.getConfig().getBoolean("repair.safe-teleport", true)) {
-                if (!teleportOnSevereOnly || diagnosis.severe) {
+            if (settings.isSafeTeleport()) {
+                if (!teleportOnSevereOnly || diagnosis.isSevere()) {
                     Location target = null;
-                    boolean preferLastSafe = plugin.getConfig().getBoolean("repair.prefer-last-safe-location", true);
+                    boolean preferLastSafe = settings.isPreferLastSafeLocation();
                     if (preferLastSafe) {
                         target = getLastSafeLocation(player);
                     }
@@ -591,7 +722,7 @@ public class PlayerMonitor implements Listener {
                         target = player.getWorld().getSpawnLocation();
                     }
                     if (target != null) {
-                        player.teleport(target);
+                        scheduler.teleport(player, target);
                         teleported = true;
                     }
                 }
@@ -599,6 +730,10 @@ public class PlayerMonitor implements Listener {
 
             sendDiagnosisMessage(player, diagnosis, teleported, isCommand, allowContinue);
             logDiagnosis(player, diagnosis, teleported, isCommand, allowContinue);
+            plugin.getMetrics().recordRepair(diagnosis.getIssueMask());
+            recordIncident(player, diagnosis, context, IncidentStore.FLAG_REPAIRED
+                    | (teleported ? IncidentStore.FLAG_TELEPORTED : 0)
+                    | (isCommand && !allowContinue ? IncidentStore.FLAG_COMMAND_BLOCKED : 0));
 
             if (isCommand && !allowContinue) {
                 return false;
@@ -606,16 +741,32 @@ public class PlayerMonitor implements Listener {
             return true;
         } catch (Exception e) {
             logError("无法修复玩家数据: " + player.getName(), e);
+            boolean kick = plugin.getSettings().isKickIfUnrepairable();
+            // 修复失败时指令前置检查返回 false，指令同样被阻止
+            recordIncident(player, diagnosis, context, (context == RepairContext.COMMAND ? IncidentStore.FLAG_COMMAND_BLOCKED : 0)
+                    | (kick ? IncidentStore.FLAG_KICKED : 0));
             
-            if (plugin.getConfig().getBoolean("repair.kick-if-unrepairable", true)) {
-                // 使用 Scheduler 确保在主线程执行 kick
-                Bukkit.getScheduler().runTask(plugin, () -> {
+            if (kick) {
+                // 使用 Scheduler 确保在拥有该玩家的线程执行 kick
+                scheduler.runForEntity(player, () -> {
                     String kickLog = "修复失败，正在踢出玩家: " + player.getName();
                     logWarn(kickLog);
                     player.kickPlayer(plugin.getPrefixedMessage("kick-message"));
                 });
             }
             return false;
+        } finally {
+            metrics.stop(PluginMetrics.Timer.REPAIR, start);
+        }
+    }
+
+    /**
+     * 写入异常事件记录，严重标志取自诊断结果
+     */
+    private void recordIncident(Player player, Diagnosis diagnosis, RepairContext context, int flags) {
+        IncidentStore store = plugin.getIncidentStore();
+        if (store != null) {
+            store.record(player.getUniqueId(), diagnosis.getIssueMask(), context, flags | (diagnosis.isSevere() ? IncidentStore.FLAG_SEVERE : 0));
         }
     }
 
@@ -624,7 +775,14 @@ public class PlayerMonitor implements Listener {
      * 清除所有修饰符并重置为基础值，解决 fastutil 内部集合损坏问题
      */
     private void repairCorruptedAttributes(Player player) {
-        for (Attribute attr : Attribute.values()) {
+        // 先替换结构不一致的脏属性集合，之后重置基础值时会重新登记到新集合
+        int repairedSets = plugin.getFastutilSetProbe().repair(player);
+        if (repairedSets > 0) {
+            logWarn("已重建结构不一致的属性集合: 玩家=" + player.getName() + " 数量=" + repairedSets);
+        }
+        Attribute[] attributes = Attribute.values();
+        for (int i : plugin.getAttributeIndex().get(player)) {
+            Attribute attr = attributes[i];
             try {
                 AttributeInstance attrInstance = player.getAttribute(attr);
                 if (attrInstance == null) continue;
@@ -657,6 +815,8 @@ public class PlayerMonitor implements Listener {
                 // 某些属性可能不支持，静默处理
             }
         }
+        // 修复后下一次检查需要完整遍历
+        plugin.getFingerprintCache().invalidate(player.getUniqueId());
     }
 
     private void sendDiagnosisMessage(Player player, Diagnosis diagnosis, boolean teleported, boolean isCommand, boolean allowContinue) {
@@ -702,7 +862,7 @@ public class PlayerMonitor implements Listener {
 
     private List<String> buildIssueLabels(Diagnosis diagnosis) {
         List<String> items = new ArrayList<>();
-        for (IssueType issue : diagnosis.issues) {
+        for (IssueType issue : diagnosis.getIssues()) {
             String label = getIssueLabel(issue);
             if (label != null && !label.isEmpty()) {
                 items.add(label);
@@ -716,7 +876,7 @@ public class PlayerMonitor implements Listener {
 
     private String buildAdviceText(Diagnosis diagnosis) {
         List<String> adviceList = new ArrayList<>();
-        for (IssueType issue : diagnosis.issues) {
+        for (IssueType issue : diagnosis.getIssues()) {
             String advice = getIssueAdvice(issue);
             if (advice != null && !advice.isEmpty()) {
                 adviceList.add(advice);
@@ -0,0 +1,65 @@
+package com.anticrash;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 玩家槽位表
+ * 为每名在线玩家分配一个紧凑的整数槽位，退出后回收复用；
+ * 数据包线程等热路径用槽位直接索引基本类型数组，不再为每个数据包查询或分配 Map 条目
+ */
+public class PlayerSlotTable implements Listener {
+
+    private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private volatile int capacity;
+
+    /**
+     * 获取玩家槽位，首次访问时分配
+     */
+    public int slotOf(UUID uuid) {
+        Integer slot = slots.get(uuid);
+        return slot != null ? slot : assign(uuid);
+    }
+
+    /**
+     * 已分配过的最大槽位数，槽位取值范围为 [0, capacity)
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void release(UUID uuid) {
+        Integer slot = slots.remove(uuid);
+        if (slot == null) {
+            return;
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        release(event.getPlayer().getUniqueId());
+    }
+
+    private synchronized int assign(UUID uuid) {
+        Integer existing = slots.get(uuid);
+        if (existing != null) {
+            return existing;
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : capacity++;
+        slots.put(uuid, slot);
+        return slot;
+    }
+}
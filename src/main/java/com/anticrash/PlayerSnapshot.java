@@ -0,0 +1,395 @@
+package com.anticrash;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.attribute.AttributeModifier;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 玩家数据快照
+ * 在主线程采集诊断所需的基本类型数据（坐标、生命值、属性基础值/最终值、修饰符数值、药水等级），
+ * 之后的规则判定与日志拼接可以在任意线程完成，不再触碰 Bukkit API
+ * 快照对象可重复使用，{@link #capture} 会先清空上一次的数据
+ */
+public class PlayerSnapshot {
+
+    private static final Attribute[] ATTRIBUTES = Attribute.values();
+
+    /**
+     * 属性采集状态
+     */
+    public static final byte ATTR_ABSENT = 0;          // 玩家没有该属性或该版本不支持
+    public static final byte ATTR_OK = 1;              // 采集成功
+    public static final byte ATTR_INSTANCE_NPE = 2;    // 访问属性实例本身时发生 NPE
+    public static final byte ATTR_MODIFIERS_NPE = 3;   // 遍历修饰符集合时发生 NPE (fastutil 内部损坏)
+    public static final byte ATTR_MODIFIERS_ERROR = 4; // 遍历修饰符集合时发生其他异常
+
+    private UUID uuid;
+    private String name;
+    private int subsystems;
+    private Throwable captureError;
+    // 复用的坐标容器，通过 getLocation(Location) 填充，避免每次采集分配新对象
+    private final Location scratchLocation = new Location(null, 0.0, 0.0, 0.0);
+
+    // 坐标
+    private World world;
+    private String worldName;
+    private double x;
+    private double y;
+    private double z;
+    private float yaw;
+    private float pitch;
+
+    // 生命值
+    private boolean dead;
+    private double health;
+
+    // 属性（按 Attribute 序号索引）
+    private final byte[] attributeState = new byte[ATTRIBUTES.length];
+    private final double[] attributeValue = new double[ATTRIBUTES.length];
+    private final double[] attributeBase = new double[ATTRIBUTES.length];
+    private final int[] modifierStart = new int[ATTRIBUTES.length];
+    private final int[] modifierCount = new int[ATTRIBUTES.length];
+    private final String[] attributeError = new String[ATTRIBUTES.length];
+    private double[] modifierAmounts = new double[32];
+    private int modifierTotal;
+    // 指纹未变化而跳过遍历的属性，按上次遍历结果计入的修饰符数量
+    private int skippedModifierTotal;
+
+    // 药水效果
+    private int effectCount;
+    private int[] effectAmplifier = new int[8];
+    private int[] effectDuration = new int[8];
+    private String[] effectName = new String[8];
+
+    // 物品栏与载具
+    private boolean inventoryMissing;
+    private boolean vehicleInvalid;
+    private String vehicleType;
+
+    // 第三方检查项采集的额外数据，按需创建
+    private Map<String, Object> extras;
+
+    /**
+     * 在主线程采集玩家数据，完整遍历所有修饰符
+     *
+     * @param subsystems 需要采集的子系统位掩码，见 {@link DirtyTracker}
+     * @return 玩家不在线时返回 false
+     */
+    public boolean capture(Player player, int subsystems) {
+        return capture(player, subsystems, null, null);
+    }
+
+    /**
+     * 在主线程采集玩家数据
+     *
+     * @param subsystems 需要采集的子系统位掩码，见 {@link DirtyTracker}
+     * @param fingerprints 修饰符指纹缓存，指纹未变化的属性跳过修饰符遍历；为 null 时完整遍历
+     * @param attributeIndex 玩家实际拥有的属性序号，见 {@link AttributePresenceIndex}；为 null 时探测所有属性
+     * @return 玩家不在线时返回 false
+     */
+    public boolean capture(Player player, int subsystems, ModifierFingerprintCache fingerprints, AttributePresenceIndex attributeIndex) {
+        reset();
+        if (player == null || !player.isOnline()) {
+            return false;
+        }
+        this.uuid = player.getUniqueId();
+        this.name = player.getName();
+        this.subsystems = subsystems;
+        try {
+            Location loc = player.getLocation(scratchLocation);
+            this.world = loc.getWorld();
+            this.worldName = world != null ? world.getName() : "unknown";
+            this.x = loc.getX();
+            this.y = loc.getY();
+            this.z = loc.getZ();
+            this.yaw = loc.getYaw();
+            this.pitch = loc.getPitch();
+
+            this.dead = player.isDead();
+            this.health = player.getHealth();
+            if (dead || health <= 0.0) {
+                return true; // 已死亡玩家只检查坐标，避免误判
+            }
+
+            if ((subsystems & DirtyTracker.ATTRIBUTES) != 0) {
+                captureAttributes(player, fingerprints, attributeIndex != null ? attributeIndex.get(player) : null);
+            }
+            if ((subsystems & DirtyTracker.EFFECTS) != 0) {
+                captureEffects(player);
+            }
+            if ((subsystems & DirtyTracker.INVENTORY) != 0) {
+                this.inventoryMissing = player.getInventory() == null;
+            }
+            if ((subsystems & DirtyTracker.VEHICLE) != 0 && player.isInsideVehicle()) {
+                Entity vehicle = player.getVehicle();
+                if (vehicle == null || !vehicle.isValid()) {
+                    this.vehicleInvalid = true;
+                    this.vehicleType = vehicle != null ? vehicle.getType().name() : "null";
+                }
+            }
+        } catch (Exception e) {
+            this.captureError = e;
+        }
+        return true;
+    }
+
+    private void captureAttributes(Player player, ModifierFingerprintCache fingerprints, int[] presentIndices) {
+        int count = presentIndices != null ? presentIndices.length : ATTRIBUTES.length;
+        for (int n = 0; n < count; n++) {
+            int i = presentIndices != null ? presentIndices[n] : n;
+            Attribute attr = ATTRIBUTES[i];
+            try {
+                AttributeInstance attrInstance = player.getAttribute(attr);
+                if (attrInstance == null) {
+                    continue;
+                }
+                attributeValue[i] = attrInstance.getValue();
+                attributeBase[i] = attrInstance.getBaseValue();
+                attributeState[i] = ATTR_OK;
+                modifierStart[i] = modifierTotal;
+
+                // 指纹未变化：上次完整遍历已确认健康，跳过遍历
+                if (fingerprints != null) {
+                    int cachedCount = fingerprints.lookup(uuid, i, attributeValue[i], attributeBase[i]);
+                    if (cachedCount >= 0) {
+                        skippedModifierTotal += cachedCount;
+                        continue;
+                    }
+                }
+
+                // 深度检查：遍历修饰符集合，检测 fastutil ObjectOpenHashSet "wrapped is null" 内部损坏
+                long hash = 0L;
+                boolean finite = Double.isFinite(attributeValue[i]) && Double.isFinite(attributeBase[i]);
+                try {
+                    Collection<AttributeModifier> modifiers = attrInstance.getModifiers();
+                    if (modifiers != null) {
+                        for (AttributeModifier modifier : modifiers) {
+                            if (modifier == null) continue;
+                            double amount = modifier.getAmount();
+                            appendModifier(amount);
+                            if (fingerprints != null) {
+                                finite &= Double.isFinite(amount);
+                                hash = ModifierFingerprintCache.mix(hash, modifier, amount);
+                            }
+                        }
+                    }
+                } catch (NullPointerException npe) {
+                    attributeState[i] = ATTR_MODIFIERS_NPE;
+                    attributeError[i] = npe.getMessage();
+                } catch (Exception modifierEx) {
+                    attributeState[i] = ATTR_MODIFIERS_ERROR;
+                    attributeError[i] = modifierEx.getClass().getSimpleName() + " 信息=" + modifierEx.getMessage();
+                }
+                modifierCount[i] = modifierTotal - modifierStart[i];
+                if (fingerprints != null) {
+                    if (attributeState[i] == ATTR_OK && finite) {
+                        fingerprints.record(uuid, i, attributeValue[i], attributeBase[i], modifierCount[i], hash);
+                    } else {
+                        fingerprints.invalidate(uuid, i);
+                    }
+                }
+            } catch (NullPointerException npe) {
+                // 属性实例本身的 NPE（如 getValue() 时内部集合损坏）
+                attributeState[i] = ATTR_INSTANCE_NPE;
+                attributeError[i] = npe.getMessage();
+            } catch (Exception attrEx) {
+                // 部分属性在某些版本可能不支持，视为不存在
+                attributeState[i] = ATTR_ABSENT;
+            }
+        }
+    }
+
+    private void appendModifier(double amount) {
+        if (modifierTotal == modifierAmounts.length) {
+            modifierAmounts = Arrays.copyOf(modifierAmounts, modifierTotal * 2);
+        }
+        modifierAmounts[modifierTotal++] = amount;
+    }
+
+    private void captureEffects(Player player) {
+        for (PotionEffect effect : player.getActivePotionEffects()) {
+            if (effectCount == effectAmplifier.length) {
+                int size = effectCount * 2;
+                effectAmplifier = Arrays.copyOf(effectAmplifier, size);
+                effectDuration = Arrays.copyOf(effectDuration, size);
+                effectName = Arrays.copyOf(effectName, size);
+            }
+            effectAmplifier[effectCount] = effect.getAmplifier();
+            effectDuration[effectCount] = effect.getDuration();
+            effectName[effectCount] = effect.getType().getName();
+            effectCount++;
+        }
+    }
+
+    private void reset() {
+        uuid = null;
+        name = null;
+        subsystems = 0;
+        captureError = null;
+        world = null;
+        worldName = null;
+        x = y = z = 0.0;
+        yaw = pitch = 0.0f;
+        dead = false;
+        health = 0.0;
+        Arrays.fill(attributeState, ATTR_ABSENT);
+        Arrays.fill(modifierCount, 0);
+        Arrays.fill(attributeError, null);
+        modifierTotal = 0;
+        skippedModifierTotal = 0;
+        effectCount = 0;
+        Arrays.fill(effectName, null);
+        inventoryMissing = false;
+        vehicleInvalid = false;
+        vehicleType = null;
+        scratchLocation.setWorld(null); // 不持有已卸载世界的引用
+        if (extras != null) {
+            extras.clear();
+        }
+    }
+
+    public static int getAttributeCount() {
+        return ATTRIBUTES.length;
+    }
+
+    public static Attribute getAttribute(int index) {
+        return ATTRIBUTES[index];
+    }
+
+    public UUID getUniqueId() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSubsystems() {
+        return subsystems;
+    }
+
+    public Throwable getCaptureError() {
+        return captureError;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    public double getHealth() {
+        return health;
+    }
+
+    public byte getAttributeState(int index) {
+        return attributeState[index];
+    }
+
+    public double getAttributeValue(int index) {
+        return attributeValue[index];
+    }
+
+    public double getAttributeBase(int index) {
+        return attributeBase[index];
+    }
+
+    public String getAttributeError(int index) {
+        return attributeError[index];
+    }
+
+    public int getModifierCount(int index) {
+        return modifierCount[index];
+    }
+
+    public double getModifierAmount(int index, int modifier) {
+        return modifierAmounts[modifierStart[index] + modifier];
+    }
+
+    /**
+     * 玩家身上的修饰符总数，包含因指纹未变化而跳过遍历的属性
+     */
+    public int getModifierTotal() {
+        return modifierTotal + skippedModifierTotal;
+    }
+
+    public int getEffectCount() {
+        return effectCount;
+    }
+
+    public int getEffectAmplifier(int index) {
+        return effectAmplifier[index];
+    }
+
+    public int getEffectDuration(int index) {
+        return effectDuration[index];
+    }
+
+    public String getEffectName(int index) {
+        return effectName[index];
+    }
+
+    public boolean isInventoryMissing() {
+        return inventoryMissing;
+    }
+
+    public boolean isVehicleInvalid() {
+        return vehicleInvalid;
+    }
+
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    /**
+     * 存入检查项在 {@link PlayerCheck#capture} 中采集的额外数据
+     * 建议以检查项 ID 作为键的前缀，避免与其他插件冲突
+     */
+    public void putExtra(String key, Object value) {
+        if (extras == null) {
+            extras = new HashMap<>();
+        }
+        extras.put(key, value);
+    }
+
+    public Object getExtra(String key) {
+        return extras == null ? null : extras.get(key);
+    }
+}
@@ -0,0 +1,174 @@
+package com.anticrash;
+
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点路径耗时统计
+ * 各计时点用 {@link #start()} / {@link #stop} 包围，耗时写入对应的 {@link LatencyHistogram}；
+ * 服务端线程（Paper 主线程 / Folia 区域线程）上最外层计时的耗时同时累加到当前 tick，
+ * 由每 tick 执行一次的 {@link #onTick()} 写入 tick 总耗时直方图。
+ * 嵌套计时（例如指令前检查内部的诊断与修复）只计入各自的直方图，不重复累加 tick 总耗时；
+ * 后台判定线程上的计时同样只计入直方图。
+ * 关闭统计时 start() 直接返回 0，计时点只剩一次 volatile 读取
+ */
+public class PluginMetrics {
+
+    private static final IssueType[] ISSUE_TYPES = IssueType.values();
+    // 每个线程当前的计时嵌套深度
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Timer.values().length];
+    private final LatencyHistogram tickTotals = new LatencyHistogram();
+    private final LongAdder tickNanos = new LongAdder();
+    private final LongAdder[] detections = new LongAdder[ISSUE_TYPES.length];
+    private final LongAdder[] repairs = new LongAdder[ISSUE_TYPES.length];
+    private volatile boolean enabled = true;
+    private volatile long since = System.currentTimeMillis();
+
+    /**
+     * 计时点
+     */
+    public enum Timer {
+        DIAGNOSE("diagnose", "诊断 (diagnosePlayer)"),
+        DIAGNOSE_CAPTURE("diagnose.capture", "  采集快照"),
+        DIAGNOSE_CHECKS("diagnose.checks", "  执行检查项"),
+        DIAGNOSE_REPORT("diagnose.report", "  记录结果"),
+        REPAIR("repair", "修复 (handleCorruptedPlayer)"),
+        PACKET_CHECK("packet-check", "属性包触发的修饰符检查"),
+        COMMAND_PREPROCESS("command", "指令拦截 (onCommandPreprocess)");
+
+        private final String id;
+        private final String label;
+
+        Timer(String id, String label) {
+            this.id = id;
+            this.label = label;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public PluginMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < ISSUE_TYPES.length; i++) {
+            detections[i] = new LongAdder();
+            repairs[i] = new LongAdder();
+        }
+    }
+
+    public void applySettings(MonitorSettings settings) {
+        this.enabled = settings.isMetricsEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开始计时，必须与 {@link #stop} 成对调用（放在 finally 中）
+     * @return 开始时间，统计关闭时为 0
+     */
+    public long start() {
+        if (!enabled) {
+            return 0L;
+        }
+        DEPTH.get()[0]++;
+        return System.nanoTime();
+    }
+
+    public void stop(Timer timer, long start) {
+        if (start == 0L) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        histograms[timer.ordinal()].record(nanos);
+        int[] depth = DEPTH.get();
+        if (--depth[0] == 0 && Bukkit.isPrimaryThread()) {
+            tickNanos.add(nanos);
+        }
+    }
+
+    /**
+     * 把上一 tick 累加的耗时写入 tick 总耗时直方图，由全局定时任务每 tick 调用
+     */
+    public void onTick() {
+        long nanos = tickNanos.sumThenReset();
+        if (enabled) {
+            tickTotals.record(nanos);
+        }
+    }
+
+    /**
+     * 按异常类型累计发现次数
+     * @param issueMask 异常类型位掩码，见 {@link Diagnosis#getIssueMask()}
+     */
+    public void recordDetection(int issueMask) {
+        add(detections, issueMask);
+    }
+
+    /**
+     * 按异常类型累计修复次数
+     */
+    public void recordRepair(int issueMask) {
+        add(repairs, issueMask);
+    }
+
+    public LatencyHistogram.Snapshot getSnapshot(Timer timer) {
+        return histograms[timer.ordinal()].snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getTickSnapshot() {
+        return tickTotals.snapshot();
+    }
+
+    public LatencyHistogram getHistogram(Timer timer) {
+        return histograms[timer.ordinal()];
+    }
+
+    public LatencyHistogram getTickHistogram() {
+        return tickTotals;
+    }
+
+    public long getDetections(IssueType type) {
+        return detections[type.ordinal()].sum();
+    }
+
+    public long getRepairs(IssueType type) {
+        return repairs[type.ordinal()].sum();
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        tickTotals.reset();
+        tickNanos.reset();
+        for (int i = 0; i < ISSUE_TYPES.length; i++) {
+            detections[i].reset();
+            repairs[i].reset();
+        }
+        since = System.currentTimeMillis();
+    }
+
+    private static void add(LongAdder[] counters, int issueMask) {
+        for (int i = 0; i < counters.length; i++) {
+            if ((issueMask & (1 << i)) != 0) {
+                counters[i].increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.anticrash;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 玩家风险评分与扫描排期
+ * 每名玩家维护一个随时间指数衰减的风险分，以下信号会抬高分数：
+ * 诊断发现异常、属性修饰符数量变化 (churn)、传送与切换世界；
+ * 此外 MMO 插件挂载的修饰符数量作为不衰减的常驻分数计入。
+ * 风险越高扫描间隔越短，低风险玩家很少被扫描，从而在更早发现高危玩家的同时降低整体开销；
+ * 覆盖时限从上一次扫描开始计算，因此无论风险高低，相邻两次扫描的间隔都不超过 sla-ticks
+ * Folia 上事件来自各区域线程，诊断结果来自后台判定线程，因此所有入口都加锁（锁内只有少量运算）
+ */
+public class RiskTracker implements Listener {
+
+    // 各信号的风险增量
+    private static final double CORRUPTION_SCORE = 60.0;
+    private static final double SEVERE_CORRUPTION_SCORE = 100.0;
+    private static final double TELEPORT_SCORE = 10.0;
+    private static final double WORLD_CHANGE_SCORE = 20.0;
+    private static final double CHURN_SCORE_PER_MODIFIER = 2.0;
+    private static final double CHURN_SCORE_MAX = 40.0;
+    // 常驻分数：每个修饰符计入的分数及上限
+    private static final double LOAD_SCORE_PER_MODIFIER = 0.25;
+    private static final double LOAD_SCORE_MAX = 40.0;
+    // 达到该分数即视为最高风险，按最短间隔扫描
+    private static final double HIGH_RISK_SCORE = 100.0;
+
+    private final LongSupplier tickSource;
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    // 按到期 tick 排序的扫描排期；条目被提前或玩家退出后，旧节点在出队时惰性丢弃
+    private final PriorityQueue<Due> dueQueue = new PriorityQueue<>();
+
+    private long minInterval = 1L;
+    private long maxInterval = 1L;
+    private long slaTicks = 1L;
+    private double decayPerTick;
+
+    private static class Entry {
+        private double score;
+        private long scoreTick;
+        private double loadScore;
+        private int lastModifierTotal = -1;
+        // 上一次派发扫描的 tick（新玩家为开始追踪的 tick），覆盖时限从这里起算
+        private long lastScanTick;
+        // 当前有效的到期 tick，Long.MAX_VALUE 表示未排期
+        private long nextDueTick = Long.MAX_VALUE;
+    }
+
+    private static class Due implements Comparable<Due> {
+        private final long tick;
+        private final UUID uuid;
+
+        private Due(long tick, UUID uuid) {
+            this.tick = tick;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public int compareTo(Due other) {
+            return Long.compare(tick, other.tick);
+        }
+    }
+
+    /**
+     * @param tickSource 巡逻任务的 tick 计数，所有排期与衰减都以它为时间基准
+     */
+    public RiskTracker(LongSupplier tickSource) {
+        this.tickSource = tickSource;
+    }
+
+    /**
+     * 应用配置快照中的风险调度参数
+     * 关闭风险调度时所有玩家都按 check-interval 扫描
+     */
+    public synchronized void applySettings(MonitorSettings settings) {
+        boolean enabled = settings.isRiskEnabled();
+        this.minInterval = enabled ? settings.getRiskMinInterval() : settings.getCheckInterval();
+        this.maxInterval = enabled ? settings.getRiskMaxInterval() : settings.getCheckInterval();
+        this.slaTicks = settings.getSlaTicks();
+        // 半衰期换算为每 tick 的衰减系数
+        this.decayPerTick = Math.pow(0.5, 1.0 / settings.getRiskHalfLifeTicks());
+    }
+
+    /**
+     * 清空分数与排期（tick 计数重置时调用），在线玩家随后通过 {@link #ensureScheduled} 重新排入
+     */
+    public synchronized void clear() {
+        dueQueue.clear();
+        entries.clear();
+    }
+
+    public synchronized void remove(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    /**
+     * 若玩家尚未排期则立即排入（用于重载前已在线或漏排的玩家）
+     */
+    public synchronized void ensureScheduled(UUID uuid, long tick) {
+        Entry entry = getOrCreate(uuid, tick);
+        if (entry.nextDueTick == Long.MAX_VALUE) {
+            schedule(uuid, entry, tick);
+        }
+    }
+
+    /**
+     * 记录玩家在该 tick 被扫描，并按当前风险分数安排下一次扫描
+     * 已有更早的排期时保持不变
+     */
+    public synchronized void scheduleNext(UUID uuid, long tick) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.lastScanTick = tick;
+            schedule(uuid, entry, tick + intervalFor(entry, tick));
+        }
+    }
+
+    /**
+     * 取出所有已到期的玩家，到期后该玩家处于未排期状态，直到下一次 {@link #scheduleNext}
+     * 回调的第二个参数是该玩家的扫描截止 tick：上一次扫描后再过 sla-ticks（已超过时为当前 tick）
+     */
+    public synchronized void pollDue(long tick, ObjLongConsumer<UUID> consumer) {
+        Due due;
+        while ((due = dueQueue.peek()) != null && due.tick <= tick) {
+            dueQueue.poll();
+            Entry entry = entries.get(due.uuid);
+            if (entry == null || entry.nextDueTick != due.tick) {
+                continue; // 已退出或已被提前排期的旧节点
+            }
+            entry.nextDueTick = Long.MAX_VALUE;
+            consumer.accept(due.uuid, Math.max(tick, entry.lastScanTick + slaTicks));
+        }
+    }
+
+    /**
+     * 记录一次诊断结果，发现异常时抬高风险并提前下一次扫描
+     */
+    public synchronized void recordDiagnosis(UUID uuid, boolean hasIssues, boolean severe) {
+        if (hasIssues) {
+            bump(uuid, severe ? SEVERE_CORRUPTION_SCORE : CORRUPTION_SCORE);
+        }
+    }
+
+    /**
+     * 记录采集到的修饰符总数
+     * 与上一次的差值计为 churn 分数，总数本身计为常驻分数
+     */
+    public synchronized void recordModifiers(UUID uuid, int modifierTotal) {
+        long tick = tickSource.getAsLong();
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return;
+        }
+        entry.loadScore = Math.min(LOAD_SCORE_MAX, modifierTotal * LOAD_SCORE_PER_MODIFIER);
+        int previous = entry.lastModifierTotal;
+        entry.lastModifierTotal = modifierTotal;
+        if (previous >= 0 && previous != modifierTotal) {
+            double churn = Math.min(CHURN_SCORE_MAX, Math.abs(modifierTotal - previous) * CHURN_SCORE_PER_MODIFIER);
+            addScore(entry, tick, churn);
+            expedite(uuid, entry, tick);
+        }
+    }
+
+    /**
+     * 获取玩家当前风险（0.0 - 1.0），未追踪的玩家返回 0
+     */
+    public synchronized double getRisk(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry == null ? 0.0 : risk(entry, tickSource.getAsLong());
+    }
+
+    /**
+     * 统计风险达到给定值的玩家数
+     */
+    public synchronized int countAtLeast(double risk) {
+        long tick = tickSource.getAsLong();
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (risk(entry, tick) >= risk) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        synchronized (this) {
+            long tick = tickSource.getAsLong();
+            // 刚进服的玩家数据尚未稳定，按一次传送计分
+            addScore(getOrCreate(event.getPlayer().getUniqueId(), tick), tick, TELEPORT_SCORE);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        synchronized (this) {
+            bump(event.getPlayer().getUniqueId(), TELEPORT_SCORE);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        synchronized (this) {
+            bump(event.getPlayer().getUniqueId(), WORLD_CHANGE_SCORE);
+        }
+    }
+
+    private void bump(UUID uuid, double amount) {
+        long tick = tickSource.getAsLong();
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return;
+        }
+        addScore(entry, tick, amount);
+        expedite(uuid, entry, tick);
+    }
+
+    /**
+     * 风险上升后按新的间隔提前排期（只会提前，不会推迟已有排期）
+     * 未排期的玩家正在扫描队列中，扫描派发时会按新分数重新排期
+     */
+    private void expedite(UUID uuid, Entry entry, long tick) {
+        if (entry.nextDueTick != Long.MAX_VALUE) {
+            schedule(uuid, entry, tick + intervalFor(entry, tick));
+        }
+    }
+
+    private void schedule(UUID uuid, Entry entry, long dueTick) {
+        if (dueTick < entry.nextDueTick) {
+            entry.nextDueTick = dueTick;
+            dueQueue.add(new Due(dueTick, uuid));
+        }
+    }
+
+    private Entry getOrCreate(UUID uuid, long tick) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            entry = new Entry();
+            entry.scoreTick = tick;
+            entry.lastScanTick = tick;
+            entries.put(uuid, entry);
+        }
+        return entry;
+    }
+
+    private void addScore(Entry entry, long tick, double amount) {
+        entry.score = decayedScore(entry, tick) + amount;
+        entry.scoreTick = tick;
+    }
+
+    private double decayedScore(Entry entry, long tick) {
+        long elapsed = tick - entry.scoreTick;
+        if (elapsed <= 0 || entry.score <= 0.0) {
+            return entry.score;
+        }
+        return entry.score * Math.pow(decayPerTick, elapsed);
+    }
+
+    private double risk(Entry entry, long tick) {
+        return Math.min(1.0, (decayedScore(entry, tick) + entry.loadScore) / HIGH_RISK_SCORE);
+    }
+
+    /**
+     * 在最长与最短间隔之间按风险线性插值
+     */
+    private long intervalFor(Entry entry, long tick) {
+        double risk = risk(entry, tick);
+        return Math.max(1L, Math.round(maxInterval - (maxInterval - minInterval) * risk));
+    }
+}
@@ -0,0 +1,60 @@
+package com.anticrash;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 某名接收者在当前 tick 内已收到的属性条目，按实体 ID 与属性键索引，供属性包合并判断重复
+ * 不是线程安全的，调用方持有该对象的锁
+ */
+final class SentAttributeLedger {
+
+    private long tick = -1L;
+    private final Map<Integer, Map<String, Sent>> byEntity = new HashMap<>();
+
+    /**
+     * 记录一个已发出的属性条目，进入新的 tick 时清空上一 tick 的记录
+     */
+    void record(long tick, int entityId, String key, double baseValue, Set<?> modifiers) {
+        if (this.tick != tick) {
+            this.tick = tick;
+            byEntity.clear();
+        }
+        byEntity.computeIfAbsent(entityId, k -> new HashMap<>()).put(key, new Sent(baseValue, modifiers));
+    }
+
+    /**
+     * 本 tick 是否已向该接收者发出过该实体的属性条目
+     */
+    boolean hasSent(long tick, int entityId) {
+        return this.tick == tick && byEntity.containsKey(entityId);
+    }
+
+    /**
+     * 条目与本 tick 已发出的同一属性完全相同：基础值相等，修饰符数量相等且双向包含
+     * 不使用 WrappedAttribute.equals：它只检查对方是否包含自己的修饰符，移除修饰符后的条目会被误判为重复而丢弃
+     */
+    boolean isDuplicate(long tick, int entityId, String key, double baseValue, Set<?> modifiers) {
+        if (this.tick != tick) {
+            return false;
+        }
+        Map<String, Sent> entries = byEntity.get(entityId);
+        Sent sent = entries == null ? null : entries.get(key);
+        return sent != null
+                && Double.compare(sent.baseValue, baseValue) == 0
+                && sent.modifiers.size() == modifiers.size()
+                && sent.modifiers.containsAll(modifiers)
+                && modifiers.containsAll(sent.modifiers);
+    }
+
+    private static final class Sent {
+        private final double baseValue;
+        private final Set<?> modifiers;
+
+        private Sent(double baseValue, Set<?> modifiers) {
+            this.baseValue = baseValue;
+            this.modifiers = modifiers;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.anticrash;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import org.bukkit.entity.Player;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 传送坐标检查
+ * 实体传送包与玩家位置包的坐标为 NaN/Infinity 或超出 repair.thresholds.coordinate-max 时取消数据包；
+ * 目标是接收者自身时回到拥有该玩家的线程执行常规检查，由坐标检查传送到安全位置。
+ * 固定消耗 1 点预算
+ */
+public class TeleportValidator implements PacketValidator {
+
+    private static final Set<PacketType> TYPES = new HashSet<>(List.of(
+            PacketType.Play.Server.ENTITY_TELEPORT,
+            PacketType.Play.Server.POSITION
+    ));
+
+    @Override
+    public String getId() {
+        return "teleport";
+    }
+
+    @Override
+    public Set<PacketType> getPacketTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public int getDefaultBudget() {
+        return 1;
+    }
+
+    @Override
+    public Result validate(PacketContainer packet, Player receiver, ValidationContext context) {
+        if (!context.spend(1)) {
+            return Result.PASS;
+        }
+        double x = packet.getDoubles().read(0);
+        double y = packet.getDoubles().read(1);
+        double z = packet.getDoubles().read(2);
+        double coordinateMax = context.getSettings().getCoordinateMax();
+        if (Double.isFinite(x) && Double.isFinite(y) && Double.isFinite(z)
+                && Math.abs(x) <= coordinateMax && Math.abs(y) <= coordinateMax && Math.abs(z) <= coordinateMax) {
+            return Result.PASS;
+        }
+        boolean self = packet.getType() == PacketType.Play.Server.POSITION
+                || packet.getIntegers().read(0) == receiver.getEntityId();
+        if (self) {
+            context.flagReceiver();
+        }
+        context.report((self ? "自身" : "实体ID=" + packet.getIntegers().read(0)) + " X=" + x + " Y=" + y + " Z=" + z);
+        return Result.CANCELLED;
+    }
+}
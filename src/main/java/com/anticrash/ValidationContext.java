@@ -0,0 +1,75 @@
+package com.anticrash;
+
+/**
+ * 单个数据包、单个检查器的检查上下文
+ * 记录剩余预算、问题描述，以及是否需要回到拥有接收者的线程复查玩家本身
+ * 每个网络线程复用一个实例，检查每个数据包前由 {@link #reset} 重置；检查器不能在 validate 返回后保留该对象
+ */
+public final class ValidationContext {
+
+    private MonitorSettings settings;
+    private int remaining;
+    private boolean exhausted;
+    private boolean receiverFlagged;
+    private String finding;
+
+    ValidationContext() {
+    }
+
+    /**
+     * 为下一个检查器重置全部状态
+     */
+    ValidationContext reset(MonitorSettings settings, int budget) {
+        this.settings = settings;
+        this.remaining = budget;
+        this.exhausted = false;
+        this.receiverFlagged = false;
+        this.finding = null;
+        return this;
+    }
+
+    public MonitorSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * 消耗预算
+     * @return 预算不足时返回 false，检查器应停止检查并保留剩余部分原样
+     */
+    public boolean spend(int units) {
+        if (remaining < units) {
+            exhausted = true;
+            return false;
+        }
+        remaining -= units;
+        return true;
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * 登记问题描述，同一数据包只保留第一条
+     */
+    public void report(String message) {
+        if (finding == null) {
+            finding = message;
+        }
+    }
+
+    public String getFinding() {
+        return finding;
+    }
+
+    /**
+     * 数据包描述的是接收者自身，需要在拥有该玩家的线程上执行一次常规检查修复源数据
+     */
+    public void flagReceiver() {
+        receiverFlagged = true;
+    }
+
+    public boolean isReceiverFlagged() {
+        return receiverFlagged;
+    }
+}
@@ -0,0 +1,30 @@
+package com.anticrash;
+
+/**
+ * 载具状态检查：防止骑乘不存在的实体引发心跳崩溃
+ */
+public class VehicleCheck implements PlayerCheck {
+
+    @Override
+    public String getId() {
+        return "vehicle";
+    }
+
+    @Override
+    public int getSubsystems() {
+        return DirtyTracker.VEHICLE;
+    }
+
+    @Override
+    public boolean isEnabled(MonitorSettings settings) {
+        return settings.isCheckVehicle();
+    }
+
+    @Override
+    public void check(PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        if (snapshot.isVehicleInvalid()) {
+            diagnosis.report(IssueType.GENERAL, true,
+                    "发现异常载具状态: 玩家=" + snapshot.getName() + " Vehicle=" + snapshot.getVehicleType());
+        }
+    }
+}
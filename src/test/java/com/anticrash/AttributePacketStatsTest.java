@@ -0,0 +1,63 @@
+package com.anticrash;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 属性包频率统计：计数器已存在时记录一个数据包不应产生堆分配，实体标签只在归属变化时重建
+ */
+class AttributePacketStatsTest {
+
+    private static final int WARMUP_RUNS = 50_000;
+    private static final int MEASURED_RUNS = 100_000;
+
+    @Test
+    void recordingKnownReceiverDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        AttributePacketStats stats = new AttributePacketStats();
+        UUID receiver = UUID.randomUUID();
+        // 实体 ID 取 Integer 缓存范围内的值，只测量统计本身的分配
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            stats.record(receiver, "Steve", 100, true);
+            stats.record(receiver, "Steve", 101, false);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            stats.record(receiver, "Steve", 100, true);
+            stats.record(receiver, "Steve", 101, false);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        double perRun = (double) allocated / MEASURED_RUNS;
+        assertTrue(perRun < 1.0, "每次记录平均分配 " + perRun + " 字节，共 " + allocated + " 字节");
+    }
+
+    @Test
+    void selfEntityLabelFollowsReceiverName() {
+        AttributePacketStats stats = new AttributePacketStats();
+        UUID receiver = UUID.randomUUID();
+        stats.record(receiver, "Steve", 1000, false);
+        assertEquals("实体#1000", stats.getTopEntities(1).get(0).getLabel());
+
+        stats.record(receiver, "Steve", 1000, true);
+        assertEquals("Steve (实体#1000)", stats.getTopEntities(1).get(0).getLabel());
+
+        stats.record(receiver, "Alex", 1000, true);
+        assertEquals("Alex (实体#1000)", stats.getTopEntities(1).get(0).getLabel());
+        assertEquals(3L, stats.getPackets());
+    }
+}
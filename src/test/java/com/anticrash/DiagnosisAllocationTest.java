@@ -0,0 +1,67 @@
+package com.anticrash;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 诊断热路径的分配量：对正常玩家的快照重复执行内置检查项，不应产生堆分配
+ * 借助 HotSpot 的线程分配计数测量，其他 JVM 上跳过
+ */
+class DiagnosisAllocationTest {
+
+    private static final int WARMUP_RUNS = 50_000;
+    private static final int MEASURED_RUNS = 100_000;
+
+    @Test
+    void cleanSnapshotEvaluationDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        MonitorSettings settings = MonitorSettings.compile(new MemoryConfiguration());
+        // 与 PlayerMonitor.registerBuiltinChecks 相同的检查项与顺序；安全坐标回调不在本测试范围内
+        CheckRegistry registry = new CheckRegistry(null);
+        registry.register(null, new LocationCheck(snapshot -> { }));
+        registry.register(null, new HealthCheck());
+        registry.register(null, new VehicleCheck());
+        registry.register(null, new InventoryCheck());
+        registry.register(null, new EffectCheck());
+        registry.register(null, new AttributeSetCheck(FastutilSetProbe.resolve(Logger.getAnonymousLogger())));
+        registry.register(null, new AttributeCheck());
+
+        PlayerSnapshot snapshot = new PlayerSnapshot();
+        assertTrue(snapshot.capture(new FakePlayer("clean").player(), DirtyTracker.ALL));
+        Diagnosis diagnosis = new Diagnosis();
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            evaluate(registry, snapshot, settings, diagnosis);
+        }
+        assertFalse(diagnosis.hasIssues(), "测试快照应当是正常玩家");
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            evaluate(registry, snapshot, settings, diagnosis);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // 每 1024 次执行重排一次检查顺序，会分配少量临时数组，摊到每次执行不足 1 字节
+        double perRun = (double) allocated / MEASURED_RUNS;
+        assertTrue(perRun < 1.0, "每次诊断平均分配 " + perRun + " 字节，共 " + allocated + " 字节");
+    }
+
+    private static void evaluate(CheckRegistry registry, PlayerSnapshot snapshot, MonitorSettings settings, Diagnosis diagnosis) {
+        diagnosis.reset();
+        registry.run(snapshot, settings, diagnosis);
+    }
+}
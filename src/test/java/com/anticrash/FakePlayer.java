@@ -0,0 +1,167 @@
+package com.anticrash;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 测试用玩家，基于动态代理，只实现巡逻调度与快照采集用到的方法，其余方法返回默认值
+ * 默认是一名站在出生点附近、数据完全正常的玩家
+ */
+final class FakePlayer implements InvocationHandler {
+
+    private final UUID uuid = UUID.randomUUID();
+    private final String name;
+    private final Player proxy;
+    private final World world;
+    private final PlayerInventory inventory;
+    private final Map<Attribute, AttributeInstance> attributes = new EnumMap<>(Attribute.class);
+    boolean online = true;
+    boolean dead;
+    double x = 0.5;
+    double y = 64.0;
+    double z = 0.5;
+    double health = 20.0;
+
+    FakePlayer(String name) {
+        this.name = name;
+        this.proxy = (Player) Proxy.newProxyInstance(FakePlayer.class.getClassLoader(), new Class<?>[]{Player.class}, this);
+        this.world = stub(World.class, "world");
+        this.inventory = stub(PlayerInventory.class, "inventory");
+        attribute(Attribute.GENERIC_MAX_HEALTH, 20.0);
+        attribute(Attribute.GENERIC_MOVEMENT_SPEED, 0.1);
+        attribute(Attribute.GENERIC_ATTACK_DAMAGE, 1.0);
+    }
+
+    /**
+     * 设置属性值（基础值与最终值相同，没有修饰符）
+     */
+    void attribute(Attribute attribute, double value) {
+        attributes.put(attribute, (AttributeInstance) Proxy.newProxyInstance(FakePlayer.class.getClassLoader(),
+                new Class<?>[]{AttributeInstance.class}, (p, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttribute":
+                            return attribute;
+                        case "getValue":
+                        case "getBaseValue":
+                        case "getDefaultValue":
+                            return value;
+                        case "getModifiers":
+                            return Collections.emptyList();
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                }));
+    }
+
+    Player player() {
+        return proxy;
+    }
+
+    UUID uuid() {
+        return uuid;
+    }
+
+    /**
+     * 非玩家实体，只响应 isValid
+     */
+    static Entity entity(boolean valid) {
+        return (Entity) Proxy.newProxyInstance(FakePlayer.class.getClassLoader(), new Class<?>[]{Entity.class},
+                (p, method, args) -> method.getName().equals("isValid") ? valid : defaultValue(method.getReturnType()));
+    }
+
+    @Override
+    public Object invoke(Object p, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getUniqueId":
+                return uuid;
+            case "getName":
+                return name;
+            case "isOnline":
+                return online;
+            case "isValid":
+                return online && !dead;
+            case "isDead":
+                return dead;
+            case "getWorld":
+                return world;
+            case "getLocation":
+                return location(args == null ? null : (Location) args[0]);
+            case "getHealth":
+                return health;
+            case "getAttribute":
+                return attributes.get((Attribute) args[0]);
+            case "getActivePotionEffects":
+                return Collections.emptyList();
+            case "getInventory":
+                return inventory;
+            case "hashCode":
+                return System.identityHashCode(p);
+            case "equals":
+                return p == args[0];
+            case "toString":
+                return "FakePlayer[" + name + "]";
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private Location location(Location target) {
+        if (target == null) {
+            return new Location(world, x, y, z);
+        }
+        target.setWorld(world);
+        target.setX(x);
+        target.setY(y);
+        target.setZ(z);
+        target.setYaw(0.0f);
+        target.setPitch(0.0f);
+        return target;
+    }
+
+    private static <T> T stub(Class<T> type, String name) {
+        return type.cast(Proxy.newProxyInstance(FakePlayer.class.getClassLoader(), new Class<?>[]{type},
+                (p, method, args) -> method.getName().equals("getName") || method.getName().equals("toString")
+                        ? name : defaultValue(method.getReturnType())));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return (byte) 0;
+    }
+}
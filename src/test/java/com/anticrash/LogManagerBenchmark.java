@@ -0,0 +1,103 @@
+package com.anticrash;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+/**
+ * LogManager 吞吐基准（手动运行，不属于 mvn test）
+ * 直接驱动包内构造器 LogManager(File, Logger)，不需要服务端：
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) com.anticrash.LogManagerBenchmark [日志目录]
+ * </pre>
+ * 三个场景：
+ * - sustained：单个生产者，队列将满时自旋等待，测量写入线程的持续吞吐，应无丢弃
+ * - paced：按约 8k 行/秒写入 20k 行，模拟正常负载，应无丢弃
+ * - burst：4 个线程各写 25 万行，超出写入能力，验证队列满时丢弃并计数而不阻塞生产者
+ */
+public final class LogManagerBenchmark {
+
+    private static final String LINE = "属性包检查发现损坏的修饰符集合: 玩家=Steve 属性=GENERIC_MAX_HEALTH #";
+
+    private LogManagerBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File root = args.length > 0 ? new File(args[0]) : Files.createTempDirectory("anticrash-logbench").toFile();
+        Logger logger = Logger.getLogger("LogManagerBenchmark");
+        sustained(new File(root, "sustained"), logger, 2_000_000);
+        paced(new File(root, "paced"), logger, 20_000);
+        burst(new File(root, "burst"), logger, 4, 250_000);
+        System.out.println("日志目录: " + root.getAbsolutePath());
+    }
+
+    private static void sustained(File dir, Logger logger, int lines) throws IOException {
+        LogManager manager = new LogManager(clean(dir), logger);
+        long start = System.nanoTime();
+        for (int i = 0; i < lines; i++) {
+            while (manager.getQueueSize() >= manager.getQueueCapacity() - 1) {
+                Thread.onSpinWait();
+            }
+            manager.log("WARN", LINE + i);
+        }
+        manager.shutdown();
+        long millis = elapsedMillis(start);
+        System.out.printf("sustained: offered=%d written=%d dropped=%d ms=%d => %.0f lines/s%n",
+                lines, manager.getWrittenCount(), manager.getDroppedCount(), millis, manager.getWrittenCount() * 1000.0 / millis);
+    }
+
+    private static void paced(File dir, Logger logger, int lines) throws Exception {
+        LogManager manager = new LogManager(clean(dir), logger);
+        long start = System.nanoTime();
+        for (int i = 0; i < lines; i++) {
+            manager.log("WARN", LINE + i);
+            if (i % 50 == 0) {
+                Thread.sleep(5L);
+            }
+        }
+        manager.shutdown();
+        long millis = elapsedMillis(start);
+        System.out.printf("paced: offered=%d written=%d dropped=%d ms=%d => %.0f lines/s%n",
+                lines, manager.getWrittenCount(), manager.getDroppedCount(), millis, lines * 1000.0 / millis);
+    }
+
+    private static void burst(File dir, Logger logger, int threads, int linesPerThread) throws Exception {
+        LogManager manager = new LogManager(clean(dir), logger);
+        Thread[] producers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            String prefix = LINE.replace("Steve", "Steve" + t);
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < linesPerThread; i++) {
+                    manager.log("WARN", prefix + i);
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long produceMillis = elapsedMillis(start);
+        manager.shutdown();
+        long offered = (long) threads * linesPerThread;
+        System.out.printf("burst: offered=%d written=%d dropped=%d produce_ms=%d total_ms=%d (written+dropped=%d)%n",
+                offered, manager.getWrittenCount(), manager.getDroppedCount(), produceMillis, elapsedMillis(start),
+                manager.getWrittenCount() + manager.getDroppedCount());
+    }
+
+    private static File clean(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        return dir;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return Math.max(1L, (System.nanoTime() - startNanos) / 1_000_000L);
+    }
+}
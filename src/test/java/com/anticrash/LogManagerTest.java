@@ -0,0 +1,54 @@
+package com.anticrash;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 日志队列的丢弃策略：生产者永不阻塞，每一行要么写入文件要么计入丢弃数
+ * 吞吐测量见 {@link LogManagerBenchmark}
+ */
+class LogManagerTest {
+
+    @Test
+    void burstIsEitherWrittenOrCountedAsDropped() throws Exception {
+        File dir = Files.createTempDirectory("anticrash-log").toFile();
+        LogManager manager = new LogManager(dir, Logger.getAnonymousLogger());
+        int threads = 4;
+        int linesPerThread = 50_000;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < linesPerThread; i++) {
+                    manager.log("WARN", "burst line " + i);
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join(10_000L);
+            assertTrue(!producer.isAlive(), "队列已满时生产者不应阻塞");
+        }
+        manager.shutdown();
+
+        assertEquals((long) threads * linesPerThread, manager.getWrittenCount() + manager.getDroppedCount());
+        assertTrue(manager.getWrittenCount() > 0);
+    }
+
+    @Test
+    void linesAfterShutdownAreDropped() throws Exception {
+        File dir = Files.createTempDirectory("anticrash-log").toFile();
+        LogManager manager = new LogManager(dir, Logger.getAnonymousLogger());
+        manager.log("INFO", "before");
+        manager.shutdown();
+        manager.log("INFO", "after");
+
+        assertEquals(1L, manager.getWrittenCount());
+        assertEquals(1L, manager.getDroppedCount());
+    }
+}
@@ -0,0 +1,179 @@
+package com.anticrash;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 巡逻调度与扫描分发：驱动 PlayerMonitor 使用的 {@link PatrolDispatcher}，
+ * 出队的玩家经 {@link PlatformScheduler#runForEntityFromGlobal} 分发到拥有玩家的线程扫描
+ */
+class PatrolDispatchTest {
+
+    private final PatrolScheduler patrol = new PatrolScheduler();
+    private final RiskTracker risk = new RiskTracker(() -> 0L);
+    private final Map<UUID, FakePlayer> online = new HashMap<>();
+    private final List<String> scanned = new ArrayList<>();
+    private final MonitorSettings settings = MonitorSettings.compile(new MemoryConfiguration());
+
+    private FakePlayer join(String name, long deadlineTick) {
+        FakePlayer player = new FakePlayer(name);
+        online.put(player.uuid(), player);
+        patrol.enqueue(player.uuid(), deadlineTick);
+        return player;
+    }
+
+    private PatrolDispatcher dispatcher(StubPlatformScheduler scheduler) {
+        return new PatrolDispatcher(scheduler, patrol, risk, uuid -> {
+            FakePlayer fake = online.get(uuid);
+            return fake == null ? null : fake.player();
+        }, (player, settings, tick) -> scanned.add(player.getName()));
+    }
+
+    private int tick(StubPlatformScheduler scheduler, long tick, long budgetNanos) {
+        return tick(scheduler, dispatcher(scheduler), tick, budgetNanos);
+    }
+
+    private int tick(StubPlatformScheduler scheduler, PatrolDispatcher dispatcher, long tick, long budgetNanos) {
+        scheduler.currentTick = tick;
+        return dispatcher.runTick(tick, budgetNanos, settings);
+    }
+
+    @Test
+    void paperScansInlineOnGlobalTick() {
+        StubPlatformScheduler scheduler = new StubPlatformScheduler(false);
+        join("a", 2L);
+        join("b", 2L);
+
+        tick(scheduler, 1L, Long.MAX_VALUE);
+
+        assertEquals(List.of("a", "b"), scanned);
+        assertEquals(0, scheduler.pendingEntityTasks());
+        assertEquals(0, patrol.getPendingCount());
+    }
+
+    @Test
+    void foliaDefersScanToEntityThread() {
+        StubPlatformScheduler scheduler = new StubPlatformScheduler(true);
+        join("a", 2L);
+        join("b", 2L);
+
+        assertEquals(2, tick(scheduler, 1L, Long.MAX_VALUE));
+        assertTrue(scanned.isEmpty(), "全局线程上不能直接读取玩家数据");
+        assertEquals(2, scheduler.pendingEntityTasks());
+
+        scheduler.runEntityTasks();
+        assertEquals(List.of("a", "b"), scanned);
+    }
+
+    @Test
+    void retiredEntityTaskIsDroppedAndNotRequeued() {
+        StubPlatformScheduler scheduler = new StubPlatformScheduler(true);
+        join("a", 1L);
+        FakePlayer quitting = join("b", 1L);
+        join("c", 1L);
+
+        assertEquals(3, tick(scheduler, 1L, 0L));
+        // 分发之后、区域线程执行之前玩家退出
+        quitting.online = false;
+        scheduler.retire(quitting.player());
+        scheduler.runEntityTasks();
+
+        assertEquals(List.of("a", "c"), scanned);
+        assertEquals(1, scheduler.droppedTasks);
+        assertEquals(0, patrol.getPendingCount());
+        assertEquals(0, tick(scheduler, 2L, Long.MAX_VALUE));
+    }
+
+    @Test
+    void removedPlayerIsSkippedWithoutCountingTowardsTheTick() {
+        StubPlatformScheduler scheduler = new StubPlatformScheduler(false);
+        FakePlayer left = join("a", 5L);
+        join("b", 5L);
+        patrol.remove(left.uuid());
+
+        assertEquals(1, tick(scheduler, 1L, Long.MAX_VALUE));
+        assertEquals(List.of("b"), scanned);
+    }
+
+    @Test
+    void zeroBudgetStillMeetsEveryDeadline() {
+        StubPlatformScheduler scheduler = new StubPlatformScheduler(true);
+        long deadline = 10L;
+        for (int i = 0; i < 100; i++) {
+            join("p" + i, deadline);
+        }
+        for (long tick = 1L; tick <= deadline; tick++) {
+            tick(scheduler, tick, 0L);
+            scheduler.runEntityTasks();
+        }
+        assertEquals(100, scanned.size());
+        assertEquals(0, patrol.getPendingCount());
+    }
+
+    @Test
+    void foliaChargesEstimatedScanCostPerDispatch() {
+        StubPlatformScheduler scheduler = new StubPlatformScheduler(true);
+        PatrolDispatcher dispatcher = dispatcher(scheduler);
+        for (int i = 0; i < 100; i++) {
+            join("p" + i, 1_000L);
+        }
+        // 分发本身几乎不耗时，若只按本线程耗时计算预算，整个队列会在一个 tick 内分发出去
+        long budget = 3 * PatrolDispatcher.INITIAL_SCAN_ESTIMATE_NANOS;
+        int dispatched = tick(scheduler, dispatcher, 1L, budget);
+
+        assertTrue(dispatched <= 3, "分发数量应受预算限制: " + dispatched);
+        assertEquals(dispatched, scheduler.pendingEntityTasks());
+        assertEquals(100 - dispatched, patrol.getPendingCount());
+    }
+
+    @Test
+    void onlyDispatchedPlayersAreCharged() {
+        long hour = 3_600_000_000_000L;
+        for (int i = 0; i < 10; i++) {
+            join("offline" + i, 500L).online = false;
+        }
+        FakePlayer first = join("a", 1_000L);
+        join("b", 1_001L);
+        join("c", 1_002L);
+
+        // 每次分发计费一小时、预算两小时：已离线的玩家不计费，只能分发两名在线玩家
+        List<UUID> dispatched = new ArrayList<>();
+        patrol.runTick(1L, 2 * hour, hour, uuid -> {
+            if (!online.get(uuid).online) {
+                return false;
+            }
+            dispatched.add(uuid);
+            return true;
+        });
+
+        assertEquals(2, dispatched.size());
+        assertEquals(first.uuid(), dispatched.get(0));
+        assertEquals(1, patrol.getPendingCount());
+    }
+
+    @Test
+    void bukkitSchedulerTreatsOfflinePlayersAndInvalidEntitiesAsRetired() {
+        FakePlayer player = new FakePlayer("a");
+        assertFalse(BukkitPlatformScheduler.isRetired(player.player()));
+
+        // 死亡等待重生的玩家仍在线，实体任务照常执行
+        player.dead = true;
+        assertFalse(BukkitPlatformScheduler.isRetired(player.player()));
+
+        player.online = false;
+        assertTrue(BukkitPlatformScheduler.isRetired(player.player()));
+
+        assertFalse(BukkitPlatformScheduler.isRetired(FakePlayer.entity(true)));
+        assertTrue(BukkitPlatformScheduler.isRetired(FakePlayer.entity(false)));
+    }
+}
@@ -0,0 +1,96 @@
+package com.anticrash;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 覆盖时限：风险排期与巡逻调度组合后，每名在线玩家相邻两次扫描的间隔不超过 sla-ticks
+ */
+class PatrolSlaTest {
+
+    private long currentTick;
+
+    private static MonitorSettings settings(long slaTicks, long maxInterval) {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("monitoring.check-interval", 20);
+        config.set("monitoring.scheduler.sla-ticks", slaTicks);
+        config.set("monitoring.risk.min-interval", 5);
+        config.set("monitoring.risk.max-interval", maxInterval);
+        return MonitorSettings.compile(config);
+    }
+
+    @Test
+    void riskIntervalsAreClampedToSla() {
+        MonitorSettings settings = settings(100L, 400L);
+        assertEquals(100L, settings.getRiskMaxInterval());
+
+        settings = settings(20L, 400L);
+        assertEquals(20L, settings.getRiskMaxInterval());
+        assertTrue(settings.getRiskMinInterval() <= settings.getSlaTicks());
+    }
+
+    @Test
+    void everyPlayerIsScannedWithinSlaEvenWithoutBudget() {
+        MonitorSettings settings = settings(200L, 200L);
+        RiskTracker risk = new RiskTracker(() -> currentTick);
+        risk.applySettings(settings);
+        PatrolScheduler patrol = new PatrolScheduler();
+
+        List<UUID> players = new ArrayList<>();
+        Map<UUID, Long> lastScan = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            UUID uuid = UUID.randomUUID();
+            players.add(uuid);
+            // 加入时间错开，使到期与截止时间不随入队顺序单调
+            risk.ensureScheduled(uuid, i * 3L);
+            lastScan.put(uuid, i * 3L);
+        }
+
+        long worstGap = 0L;
+        for (currentTick = 1L; currentTick <= 2000L; currentTick++) {
+            long tick = currentTick;
+            // 周期性抬高部分玩家的风险，让排期在最短与最长间隔之间变化
+            if (tick % 37 == 0) {
+                risk.recordDiagnosis(players.get((int) (tick % players.size())), true, false);
+            }
+            risk.pollDue(tick, patrol::enqueue);
+            patrol.runTick(tick, 0L, uuid -> {
+                lastScan.put(uuid, tick);
+                risk.scheduleNext(uuid, tick);
+                return true;
+            });
+            for (Map.Entry<UUID, Long> entry : lastScan.entrySet()) {
+                worstGap = Math.max(worstGap, tick - entry.getValue());
+            }
+        }
+        assertTrue(worstGap <= settings.getSlaTicks(), "最长扫描间隔 " + worstGap + " 超过覆盖时限");
+    }
+
+    @Test
+    void earlierDeadlineIsScannedFirst() {
+        PatrolScheduler patrol = new PatrolScheduler();
+        UUID late = UUID.randomUUID();
+        UUID middle = UUID.randomUUID();
+        UUID early = UUID.randomUUID();
+        patrol.enqueue(late, 100L);
+        patrol.enqueue(middle, 50L);
+        patrol.enqueue(early, 2L);
+        // 已在队列中的玩家只会把截止时间提前
+        patrol.enqueue(early, 500L);
+        patrol.enqueue(late, 10L);
+
+        List<UUID> order = new ArrayList<>();
+        patrol.runTick(1L, Long.MAX_VALUE, uuid -> order.add(uuid));
+        assertEquals(List.of(early, late, middle), order);
+        assertEquals(0, patrol.getPendingCount());
+    }
+}
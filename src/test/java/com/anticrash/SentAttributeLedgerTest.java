@@ -0,0 +1,66 @@
+package com.anticrash;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 属性包合并的重复判断：只有基础值与修饰符集合完全相同的条目才算重复
+ * 修饰符用字符串代替 WrappedAttributeModifier，判断只依赖集合的 equals
+ */
+class SentAttributeLedgerTest {
+
+    private static final int ENTITY = 42;
+    private static final String SPEED = "minecraft:generic.movement_speed";
+
+    @Test
+    void identicalEntryInSameTickIsDuplicate() {
+        SentAttributeLedger ledger = new SentAttributeLedger();
+        ledger.record(5L, ENTITY, SPEED, 0.1, Set.of("sprint"));
+
+        assertTrue(ledger.hasSent(5L, ENTITY));
+        assertTrue(ledger.isDuplicate(5L, ENTITY, SPEED, 0.1, Set.of("sprint")));
+    }
+
+    @Test
+    void removingModifierInSameTickIsNotDuplicate() {
+        SentAttributeLedger ledger = new SentAttributeLedger();
+        // 开始疾跑：加上速度修饰符并发出
+        ledger.record(5L, ENTITY, SPEED, 0.1, Set.of("sprint"));
+        // 同一 tick 内停止疾跑：修饰符被移除，必须发给客户端
+        assertFalse(ledger.isDuplicate(5L, ENTITY, SPEED, 0.1, Set.of()));
+        ledger.record(5L, ENTITY, SPEED, 0.1, Set.of());
+
+        // 再次发出相同的空修饰符条目才是重复
+        assertTrue(ledger.isDuplicate(5L, ENTITY, SPEED, 0.1, Set.of()));
+        // 重新加上修饰符也不是重复
+        assertFalse(ledger.isDuplicate(5L, ENTITY, SPEED, 0.1, Set.of("sprint")));
+    }
+
+    @Test
+    void replacedModifierOrBaseValueIsNotDuplicate() {
+        SentAttributeLedger ledger = new SentAttributeLedger();
+        ledger.record(5L, ENTITY, SPEED, 0.1, Set.of("sprint"));
+
+        assertFalse(ledger.isDuplicate(5L, ENTITY, SPEED, 0.1, Set.of("slowness")));
+        assertFalse(ledger.isDuplicate(5L, ENTITY, SPEED, 0.1, Set.of("sprint", "slowness")));
+        assertFalse(ledger.isDuplicate(5L, ENTITY, SPEED, 0.2, Set.of("sprint")));
+        assertFalse(ledger.isDuplicate(5L, ENTITY, "minecraft:generic.armor", 0.1, Set.of("sprint")));
+        assertFalse(ledger.isDuplicate(5L, ENTITY + 1, SPEED, 0.1, Set.of("sprint")));
+    }
+
+    @Test
+    void entriesFromPreviousTickAreForgotten() {
+        SentAttributeLedger ledger = new SentAttributeLedger();
+        ledger.record(5L, ENTITY, SPEED, 0.1, Set.of("sprint"));
+
+        assertFalse(ledger.hasSent(6L, ENTITY));
+        assertFalse(ledger.isDuplicate(6L, ENTITY, SPEED, 0.1, Set.of("sprint")));
+
+        ledger.record(6L, ENTITY + 1, SPEED, 0.1, Set.of());
+        assertFalse(ledger.hasSent(6L, ENTITY));
+    }
+}
@@ -0,0 +1,104 @@
+package com.anticrash;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 测试用调度器
+ * 全局任务与延迟任务只登记不执行；实体任务排队，调用 {@link #runEntityTasks()} 时才执行，
+ * 模拟 Folia 实体调度器：执行前已被 {@link #retire} 的实体，其任务直接丢弃
+ */
+final class StubPlatformScheduler implements PlatformScheduler {
+
+    private final boolean folia;
+    private final List<Object[]> entityTasks = new ArrayList<>();
+    private final Set<Entity> retired = Collections.newSetFromMap(new IdentityHashMap<>());
+    long currentTick;
+    int droppedTasks;
+
+    StubPlatformScheduler(boolean folia) {
+        this.folia = folia;
+    }
+
+    /**
+     * 模拟实体被移除（玩家退出、实体卸载）
+     */
+    void retire(Entity entity) {
+        retired.add(entity);
+    }
+
+    int pendingEntityTasks() {
+        return entityTasks.size();
+    }
+
+    /**
+     * 执行所有已排队的实体任务，已被移除的实体的任务不会执行
+     */
+    void runEntityTasks() {
+        List<Object[]> tasks = new ArrayList<>(entityTasks);
+        entityTasks.clear();
+        for (Object[] task : tasks) {
+            if (retired.contains((Entity) task[0])) {
+                droppedTasks++;
+            } else {
+                ((Runnable) task[1]).run();
+            }
+        }
+    }
+
+    @Override
+    public boolean isFolia() {
+        return folia;
+    }
+
+    @Override
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    @Override
+    public TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return new TaskHandle() {
+            private boolean cancelled;
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled;
+            }
+        };
+    }
+
+    @Override
+    public void runGlobalLater(Runnable task, long delayTicks) {
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        entityTasks.add(new Object[]{entity, task});
+    }
+
+    @Override
+    public void runForEntityLater(Entity entity, Runnable task, long delayTicks) {
+        entityTasks.add(new Object[]{entity, task});
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public void teleport(Entity entity, Location target) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.anticrash;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 网络线程复用的检查上下文：重置后不能残留上一个检查器的预算、问题描述与复查标记
+ */
+class ValidationContextTest {
+
+    @Test
+    void resetClearsStateFromPreviousValidator() {
+        MonitorSettings first = MonitorSettings.compile(new MemoryConfiguration());
+        MonitorSettings second = MonitorSettings.compile(new MemoryConfiguration());
+        ValidationContext context = new ValidationContext().reset(first, 1);
+        assertTrue(context.spend(1));
+        assertFalse(context.spend(1));
+        context.report("旧问题");
+        context.flagReceiver();
+
+        assertSame(context, context.reset(second, 2));
+        assertSame(second, context.getSettings());
+        assertFalse(context.isExhausted());
+        assertFalse(context.isReceiverFlagged());
+        assertNull(context.getFinding());
+        assertTrue(context.spend(2));
+        assertFalse(context.spend(1));
+
+        context.reset(first, 0);
+        context.report("新问题");
+        assertEquals("新问题", context.getFinding());
+    }
+}